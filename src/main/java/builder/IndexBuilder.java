@@ -1,30 +1,38 @@
 package builder;
 
 import common.HelperMethods;
+import common.index.IndexInfo;
 import common.pair.Pair;
+import common.tree.CompressedLeafNode;
 import common.tree.IndexNode;
 import common.tree.LeafNode;
+import common.tree.OverflowPage;
+import common.tree.RidListCodec;
 import common.tree.TreeNode;
 import common.tuple.Tuple;
 import common.tuple.TupleReader;
+import common.tuple.TupleWriter;
 import compiler.DBCatalog;
 import io_handler.BinaryHandler;
+import io_handler.BufferPool;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 import net.sf.jsqlparser.schema.Column;
-import operator_node.OperatorNode;
-import operator_node.ScanOperatorNode;
-import operator_node.SortOperatorNode;
+import net.sf.jsqlparser.schema.Table;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import physical_operator.ExternalSortOperator;
 import physical_operator.Operator;
+import physical_operator.ScanOperator;
+import physical_operator.SpillPartitions;
 
 public class IndexBuilder {
 
@@ -37,6 +45,18 @@ public class IndexBuilder {
   private int order;
   private int rootIndex;
   private int numLeaf;
+  private int version;
+
+  // index file being written and the page of the next node
+  private FileChannel fileChannel;
+  private ByteBuffer buffer;
+  private int nodeIndex;
+
+  // overflow pages of version 2, written to a temporary file and appended after the root
+  private File overflowFile;
+  private FileChannel overflowChannel;
+  private int numOverflowPages;
+  private int firstOverflowPage;
 
   /**
    * IndexBuilder constructor
@@ -52,18 +72,7 @@ public class IndexBuilder {
     this.columns = DBCatalog.getInstance().getColumns(tableName);
     this.isClustered = isClustered;
     this.order = order;
-  }
-
-  /**
-   * Build the index tree
-   *
-   * @return A list of TreeNode, ordered by [Leaf Nodes..., Index Nodes..., root]
-   */
-  public List<TreeNode> build() {
-    if (isClustered) {
-      preprocessClusteredIndex();
-    }
-    return buildTree();
+    this.version = DBCatalog.getInstance().getIndexFormatVersion();
   }
 
   /**
@@ -82,7 +91,21 @@ public class IndexBuilder {
     buffer.asIntBuffer().put(offset++, this.numLeaf);
 
     // order or tree
-    buffer.asIntBuffer().put(offset, this.order);
+    buffer.asIntBuffer().put(offset++, this.order);
+
+    // version 1 keeps the original header, readers take the 0 that follows as version 1
+    if (this.version >= 2) {
+      // format version
+      buffer.asIntBuffer().put(offset++, this.version);
+
+      // first overflow page, 0 if none
+      buffer.asIntBuffer().put(offset++, this.firstOverflowPage);
+    }
+
+    // Fill the rest of the page with 0
+    for (int i = offset; i < buffer.capacity() / 4; i++) {
+      buffer.asIntBuffer().put(i, 0);
+    }
   }
 
   /** Sort the data and replace original relation file */
@@ -94,126 +117,441 @@ public class IndexBuilder {
             .findFirst()
             .orElse(null);
 
-    OperatorNode operatorNode = new ScanOperatorNode(attributeColumn.getTable());
-    operatorNode = new SortOperatorNode(operatorNode, Collections.singletonList(attributeColumn));
-
-    // get physical operator
-    PhysicalPlanBuilder physicalPlanBuilder = new PhysicalPlanBuilder();
-    operatorNode.accept(physicalPlanBuilder);
-    Operator operator = physicalPlanBuilder.getResult();
+    // The sort is built directly: the plan builder would skip it if the previous build of the
+    // index is still up to date
+    ScanOperator scanOperator = new ScanOperator(attributeColumn.getTable());
+    Operator operator =
+        new ExternalSortOperator(
+            scanOperator.getOutputSchema(),
+            scanOperator,
+            Collections.singletonList(attributeColumn),
+            DBCatalog.getInstance().getSortBufferPageNumber());
 
     // output the data
+    operator.open();
     try {
       File outfile = DBCatalog.getInstance().getFileForTable(this.tableName);
       outfile.createNewFile();
       operator.dump(new BinaryHandler(outfile));
     } catch (IOException e) {
       logger.error(e.getMessage());
+    } finally {
+      operator.close();
     }
   }
 
   /**
-   * Get all entries in the table
+   * Stream the data entries of the table as (key, page, tuple) tuples sorted on all three, so the
+   * rids of a key are in file order. A clustered index reads the data file, already sorted on the
+   * key, the other indexes sort the entries externally within the sort buffer.
    *
-   * @return TreeMap<Integer, List<Pair<Integer, Integer>>>
+   * @return operator of the sorted data entries
    */
-  private TreeMap<Integer, List<Pair<Integer, Integer>>> getAllEntries() {
-    TreeMap<Integer, List<Pair<Integer, Integer>>> treeMap = new TreeMap<>();
-    TupleReader tupleReader = new BinaryHandler(this.tableName);
-    Map<String, Integer> columnIndexMap = HelperMethods.mapColumnIndex(columns);
-
-    Pair<Tuple, Pair<Integer, Integer>> tupleWithRid;
-    while ((tupleWithRid = tupleReader.readNextTupleAndRid()) != null) {
-      int attributeIndex = columnIndexMap.get(tableName + "." + attributeName);
-      int key = tupleWithRid.getLeft().getElementAtIndex(attributeIndex);
-      if (!treeMap.containsKey(key)) {
-        treeMap.put(key, new ArrayList<>());
-      }
-      treeMap.get(key).add(tupleWithRid.getRight());
+  private Operator getSortedEntries() {
+    Table table = new Table(tableName);
+    ArrayList<Column> entrySchema =
+        new ArrayList<>(
+            List.of(
+                new Column(table, "key"),
+                new Column(table, "pageIndex"),
+                new Column(table, "tupleIndex")));
+    int attributeIndex = HelperMethods.mapColumnIndex(columns).get(tableName + "." + attributeName);
+
+    Operator entries =
+        new Operator(entrySchema) {
+          private TupleReader tupleReader = new BinaryHandler(tableName);
+
+          @Override
+          public Tuple getNextTuple() {
+            Pair<Tuple, Pair<Integer, Integer>> tupleWithRid = tupleReader.readNextTupleAndRid();
+            if (tupleWithRid == null) {
+              return null;
+            }
+            return new Tuple(
+                new int[] {
+                  tupleWithRid.getLeft().getElementAtIndex(attributeIndex),
+                  tupleWithRid.getRight().getLeft(),
+                  tupleWithRid.getRight().getRight()
+                });
+          }
+
+          @Override
+          public void reset() {
+            tupleReader.reset();
+          }
+
+          @Override
+          protected void onClose() {
+            tupleReader.close();
+          }
+        };
+    if (isClustered) {
+      return entries;
     }
-    return treeMap;
+    return new ExternalSortOperator(
+        entrySchema, entries, entrySchema, DBCatalog.getInstance().getSortBufferPageNumber());
   }
 
   /**
-   * build tree in the order by using the treemap
+   * Number of keys or children of the next node of a layer. A node is filled up, but when the rest
+   * of the layer would leave the last node below the minimum, the last two nodes split it evenly.
    *
-   * @return A list of TreeNode, ordered by [Leaf Nodes..., Index Nodes..., root]
+   * @param remaining number of keys or children left in the layer
+   * @param maxSize maximum number of keys or children in a node
+   * @param minSize minimum number of keys or children in a node
+   * @return number of keys or children of the next node
    */
-  private List<TreeNode> buildTree() {
-    List<Entry<Integer, List<Pair<Integer, Integer>>>> entryList =
-        new ArrayList<>(getAllEntries().entrySet());
-    List<TreeNode> nodes = new ArrayList<>();
-    int nodeIndex = 1;
-
-    int childIndex = 0;
-    int childCount = entryList.size();
-
-    while (childIndex < childCount) {
-      int numIter;
-      if (2 * order < childCount - childIndex && childCount - childIndex < 3 * order) {
-        // split them into half
-        numIter = (childCount - childIndex) / 2;
-      } else {
-        // iterate at most 2*order times, or the number left.
-        numIter = Math.min(2 * order, childCount - childIndex);
-      }
+  private static int getNodeSize(int remaining, int maxSize, int minSize) {
+    if (maxSize < remaining && remaining - maxSize < minSize) {
+      // split them into half
+      return remaining / 2;
+    }
+    return Math.min(maxSize, remaining);
+  }
 
-      // create a new LeafNode, add the data entries.
-      LeafNode node = new LeafNode();
+  /**
+   * Write a node at its page of the index file.
+   *
+   * @param node tree node
+   */
+  private void writeNode(TreeNode node) throws IOException {
+    node.serialize(buffer);
+    fileChannel.write(buffer, (long) node.index * buffer.capacity());
+  }
 
-      // assign index, then increment
-      node.index = nodeIndex++;
-      while (numIter > 0) {
-        Entry<Integer, List<Pair<Integer, Integer>>> entry = entryList.get(childIndex);
-        node.setEntry(entry);
-        numIter--;
-        childIndex++;
-      }
-      nodes.add(node);
-    }
+  /**
+   * Write the leaves from the sorted data entries, keeping only the leaf being filled. The first
+   * key and the page of every leaf go to a temporary file, which is the input of the layer above.
+   *
+   * @return file of the (first key, page) of the leaves
+   */
+  private File buildLeaves() throws IOException {
+    Operator entries = getSortedEntries();
+    entries.open();
+    try {
 
-    this.numLeaf = nodes.size();
-
-    /*
-     * At this point, we have parsed all the leaf nodes.
-     * Continue to build all index nodes using the leaf nodes we have.
-     */
-    childIndex = 0;
-    // if current layer is more than 2*order + 1, that means we need to have
-    // additional layers before setting the root.
-    while (nodes.size() - childIndex > 2 * order + 1) {
-      childCount = nodes.size();
-      while (childIndex < childCount) {
-        int numIter;
-        if (2 * order + 1 < childCount - childIndex && childCount - childIndex < 3 * order + 2) {
-          numIter = (childCount - childIndex) / 2;
-        } else {
-          numIter = Math.min(2 * order + 1, childCount - childIndex);
+      // One pass to count the keys, so the leaves are sized without holding the entries
+      int numKeys = 0;
+      Integer lastKey = null;
+      Tuple tuple;
+      while ((tuple = entries.getNextTuple()) != null) {
+        if (lastKey == null || tuple.getElementAtIndex(0) != lastKey) {
+          lastKey = tuple.getElementAtIndex(0);
+          numKeys++;
         }
+      }
+      entries.reset();
 
-        IndexNode node = new IndexNode();
+      File layerFile = SpillPartitions.createTempFile("index.temp");
+      TupleWriter layerWriter = new BinaryHandler(layerFile);
+      tuple = entries.getNextTuple();
+      int remaining = numKeys;
+      while (remaining > 0) {
+        int numIter = getNodeSize(remaining, 2 * order, order);
+        remaining -= numIter;
+
+        // create a new LeafNode, add the data entries.
+        LeafNode node = new LeafNode();
         node.index = nodeIndex++;
         while (numIter > 0) {
-          TreeNode child = nodes.get(childIndex);
-          node.setChild(child);
+          int key = tuple.getElementAtIndex(0);
+          List<Pair<Integer, Integer>> rids = new ArrayList<>();
+          while (tuple != null && tuple.getElementAtIndex(0) == key) {
+            rids.add(new Pair<>(tuple.getElementAtIndex(1), tuple.getElementAtIndex(2)));
+            tuple = entries.getNextTuple();
+          }
+          node.setEntry(Map.entry(key, rids));
           numIter--;
-          childIndex++;
         }
-        nodes.add(node);
+        writeNode(node);
+        layerWriter.writeNextTuple(new Tuple(new int[] {node.getFirstKey(), node.index}));
+      }
+      layerWriter.close();
+      this.numLeaf = nodeIndex - 1;
+      return layerFile;
+    } finally {
+      entries.close();
+    }
+  }
+
+  /**
+   * Write the compressed leaves (version 2) from the sorted data entries. A leaf takes entries
+   * while they fit in its page. The rids of a key stay inline in the leaf up to a quarter of a
+   * page, so a leaf always holds a few keys; a longer rid list is moved to consecutive overflow
+   * pages.
+   *
+   * @return file of the (first key, page) of the leaves
+   */
+  private File buildCompressedLeaves() throws IOException {
+    Operator entries = getSortedEntries();
+    entries.open();
+    try {
+      File layerFile = SpillPartitions.createTempFile("index.temp");
+      TupleWriter layerWriter = new BinaryHandler(layerFile);
+      this.overflowFile = SpillPartitions.createTempFile("index.temp");
+      FileOutputStream overflowOutputStream = new FileOutputStream(overflowFile);
+      this.overflowChannel = overflowOutputStream.getChannel();
+
+      int pageSize = buffer.capacity();
+      ByteBuffer inlineRids = ByteBuffer.allocate(pageSize / 4);
+      RidListCodec codec = new RidListCodec();
+      OverflowPage overflowPage = new OverflowPage(pageSize);
+      CompressedLeafNode node = new CompressedLeafNode(pageSize);
+
+      Tuple tuple = entries.getNextTuple();
+      while (tuple != null) {
+        int key = tuple.getElementAtIndex(0);
+        int ridCount = 0;
+        int ridOverflowPage = -1;
+        inlineRids.clear();
+        codec.reset();
+        while (tuple != null && tuple.getElementAtIndex(0) == key) {
+          int pageIndex = tuple.getElementAtIndex(1);
+          int tupleIndex = tuple.getElementAtIndex(2);
+          if (ridOverflowPage == -1 && !codec.put(inlineRids, pageIndex, tupleIndex)) {
+            // the rids do not fit inline, move the ones coded so far to overflow pages
+            ridOverflowPage = numOverflowPages;
+            inlineRids.flip();
+            RidListCodec decoder = new RidListCodec();
+            for (int i = 0; i < ridCount; i++) {
+              long rid = decoder.get(inlineRids);
+              writeOverflowRid(overflowPage, (int) (rid >>> 32), (int) rid);
+            }
+          }
+          if (ridOverflowPage != -1) {
+            writeOverflowRid(overflowPage, pageIndex, tupleIndex);
+          }
+          ridCount++;
+          tuple = entries.getNextTuple();
+        }
+        // the overflow pages of a key are not shared with the next key
+        if (!overflowPage.isEmpty()) {
+          writeOverflowPage(overflowPage);
+        }
+
+        inlineRids.flip();
+        if (!node.addEntry(key, ridCount, ridOverflowPage, inlineRids)) {
+          writeLeaf(node, layerWriter);
+          node = new CompressedLeafNode(pageSize);
+          node.addEntry(key, ridCount, ridOverflowPage, inlineRids);
+        }
+      }
+      if (!node.isEmpty()) {
+        writeLeaf(node, layerWriter);
+      }
+      layerWriter.close();
+      overflowOutputStream.close();
+      this.numLeaf = nodeIndex - 1;
+      return layerFile;
+    } finally {
+      entries.close();
+    }
+  }
+
+  /**
+   * Write a leaf at the next page and record its first key and page for the layer above.
+   *
+   * @param node leaf node
+   * @param layerWriter writer of the (first key, page) of the leaves
+   */
+  private void writeLeaf(TreeNode node, TupleWriter layerWriter) throws IOException {
+    node.index = nodeIndex++;
+    writeNode(node);
+    layerWriter.writeNextTuple(new Tuple(new int[] {node.getFirstKey(), node.index}));
+  }
+
+  /**
+   * Add a rid to the overflow page, writing the page out first when it is full.
+   *
+   * @param overflowPage overflow page being filled
+   * @param pageIndex page of the rid
+   * @param tupleIndex tuple of the rid
+   */
+  private void writeOverflowRid(OverflowPage overflowPage, int pageIndex, int tupleIndex)
+      throws IOException {
+    if (!overflowPage.put(pageIndex, tupleIndex)) {
+      writeOverflowPage(overflowPage);
+      overflowPage.put(pageIndex, tupleIndex);
+    }
+  }
+
+  /**
+   * Write the overflow page at the end of the overflow file and empty it.
+   *
+   * @param overflowPage overflow page
+   */
+  private void writeOverflowPage(OverflowPage overflowPage) throws IOException {
+    overflowPage.serialize(buffer);
+    overflowChannel.write(buffer);
+    overflowPage.clear();
+    numOverflowPages++;
+  }
+
+  /**
+   * Build the index bottom-up and write it to the index file. The data entries are streamed through
+   * a sort, each node is written as soon as it is full, and every layer of index nodes is built
+   * from the first keys of the layer below, kept in a temporary file. Memory is bounded by the sort
+   * buffer and one node, whatever the size of the table.
+   *
+   * @param indexFile index file
+   */
+  public void build(File indexFile) {
+    if (isClustered) {
+      preprocessClusteredIndex();
+    }
+
+    try (FileOutputStream fileOutputStream = new FileOutputStream(indexFile)) {
+      this.fileChannel = fileOutputStream.getChannel();
+      this.buffer = ByteBuffer.allocate(DBCatalog.getInstance().getBufferCapacity());
+      this.nodeIndex = 1;
+
+      File layerFile = version == 2 ? buildCompressedLeaves() : buildLeaves();
+      int layerSize = numLeaf;
+
+      // if current layer is more than 2*order + 1, that means we need to have
+      // additional layers before setting the root.
+      while (layerSize > 2 * order + 1) {
+        TupleReader layerReader = new BinaryHandler(layerFile);
+        File nextLayerFile = SpillPartitions.createTempFile("index.temp");
+        TupleWriter nextLayerWriter = new BinaryHandler(nextLayerFile);
+        int remaining = layerSize;
+        layerSize = 0;
+        while (remaining > 0) {
+          int numIter = getNodeSize(remaining, 2 * order + 1, order + 1);
+          remaining -= numIter;
+
+          IndexNode node = new IndexNode();
+          node.index = nodeIndex++;
+          while (numIter > 0) {
+            Tuple child = layerReader.readNextTuple();
+            node.setChild(child.getElementAtIndex(0), child.getElementAtIndex(1));
+            numIter--;
+          }
+          writeNode(node);
+          nextLayerWriter.writeNextTuple(new Tuple(new int[] {node.getFirstKey(), node.index}));
+          layerSize++;
+        }
+        nextLayerWriter.close();
+        layerReader.close();
+        BufferPool.getInstance().delete(layerFile);
+        layerFile = nextLayerFile;
+      }
+
+      // set the root
+      IndexNode root = new IndexNode();
+      root.index = nodeIndex;
+      this.rootIndex = nodeIndex;
+      TupleReader layerReader = new BinaryHandler(layerFile);
+      Tuple child;
+      while ((child = layerReader.readNextTuple()) != null) {
+        root.setChild(child.getElementAtIndex(0), child.getElementAtIndex(1));
       }
+      layerReader.close();
+      BufferPool.getInstance().delete(layerFile);
+      writeNode(root);
+
+      // the overflow pages follow the root
+      if (overflowFile != null) {
+        if (numOverflowPages > 0) {
+          this.firstOverflowPage = rootIndex + 1;
+          try (FileChannel overflowReader = FileChannel.open(overflowFile.toPath())) {
+            fileChannel.transferFrom(
+                overflowReader,
+                (long) firstOverflowPage * buffer.capacity(),
+                (long) numOverflowPages * buffer.capacity());
+          }
+        }
+        BufferPool.getInstance().delete(overflowFile);
+      }
+
+      // the header is written last, once the root is known
+      writeHeader(buffer);
+      fileChannel.write(buffer, 0);
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      return;
     }
 
-    // set the root
-    IndexNode node = new IndexNode();
-    node.index = nodeIndex;
-    this.rootIndex = nodeIndex;
-    while (childIndex < nodes.size()) {
-      TreeNode child = nodes.get(childIndex);
-      node.setChild(child);
-      childIndex++;
+    try {
+      Files.writeString(getFingerprintFile(indexFile).toPath(), getFingerprint(indexFile));
+    } catch (IOException e) {
+      logger.error(e.getMessage());
     }
-    nodes.add(node);
+  }
 
-    return nodes;
+  /**
+   * Check if the index file was built by this builder from the relation file as it is now, so it
+   * does not need to be built again.
+   *
+   * @param indexFile index file
+   * @return true if the fingerprint written by the last build is still the same
+   */
+  public boolean isUpToDate(File indexFile) {
+    File fingerprintFile = getFingerprintFile(indexFile);
+    if (!indexFile.exists() || !fingerprintFile.exists()) {
+      return false;
+    }
+    try {
+      return Files.readString(fingerprintFile.toPath()).equals(getFingerprint(indexFile));
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Check if the relation file is sorted on the key of a clustered index: the index was built as a
+   * clustered one, and neither the relation file nor the build parameters changed since, per its
+   * fingerprint. The catalog alone is not enough, as the indexes may not have been built.
+   *
+   * @param tableName relation name
+   * @param attributeName attribute of the index
+   * @return true if the relation file is sorted on the attribute
+   */
+  public static boolean isSortedOnClusteredIndex(String tableName, String attributeName) {
+    DBCatalog catalog = DBCatalog.getInstance();
+    IndexInfo indexInfo = catalog.getIndexInfo(tableName);
+    if (indexInfo == null || !indexInfo.attributes.containsKey(attributeName)) {
+      return false;
+    }
+    Pair<Boolean, Integer> attributeInfo = indexInfo.attributes.get(attributeName);
+    return attributeInfo.getLeft()
+        && new IndexBuilder(tableName, attributeName, true, attributeInfo.getRight())
+            .isUpToDate(catalog.getFileForIndex(tableName, attributeName));
+  }
+
+  /**
+   * Describe what an index file is built from: the format version, clustering, order and page size
+   * of the index, the size and last modification time of the relation file, and the size of the
+   * index file. Sorting the relation for a clustered index happens before the fingerprint is taken,
+   * so it does not make the index look out of date.
+   *
+   * @param indexFile index file
+   * @return the fingerprint as one line
+   */
+  private String getFingerprint(File indexFile) {
+    File dataFile = DBCatalog.getInstance().getFileForTable(tableName);
+    return version
+        + " "
+        + (isClustered ? 1 : 0)
+        + " "
+        + order
+        + " "
+        + DBCatalog.getInstance().getBufferCapacity()
+        + " "
+        + dataFile.length()
+        + " "
+        + dataFile.lastModified()
+        + " "
+        + indexFile.length()
+        + "\n";
+  }
+
+  /**
+   * @param indexFile index file
+   * @return the file next to the index that keeps its fingerprint
+   */
+  private static File getFingerprintFile(File indexFile) {
+    return new File(indexFile.getPath() + ".meta");
   }
 }
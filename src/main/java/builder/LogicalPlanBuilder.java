@@ -17,21 +17,28 @@ import java.util.Map.Entry;
 import java.util.Set;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
 import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
 import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
 import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.AllColumns;
 import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import operator_node.AggregateOperatorNode;
 import operator_node.DuplicateEliminationOperatorNode;
 import operator_node.EmptyOperatorNode;
 import operator_node.JoinOperatorNode;
+import operator_node.LimitOperatorNode;
 import operator_node.OperatorNode;
 import operator_node.ProjectOperatorNode;
 import operator_node.ScanOperatorNode;
@@ -63,8 +70,18 @@ public class LogicalPlanBuilder {
       operatorNode = buildSingleTablePlan(whereExpression, table);
     }
 
-    // select * does not require projection, we can skip that.
-    if (plainSelect.getSelectItems().size() > 1
+    // aggregation outputs the select items itself, select * does not require projection either.
+    if (isAggregateQuery(plainSelect)) {
+      List<Column> groupByColumns = new ArrayList<>();
+      if (plainSelect.getGroupBy() != null) {
+        for (Expression expression :
+            plainSelect.getGroupBy().getGroupByExpressionList().getExpressions()) {
+          groupByColumns.add((Column) expression);
+        }
+      }
+      operatorNode =
+          new AggregateOperatorNode(operatorNode, groupByColumns, plainSelect.getSelectItems());
+    } else if (plainSelect.getSelectItems().size() > 1
         || !(plainSelect.getSelectItems().getFirst() instanceof AllColumns)) {
       operatorNode = new ProjectOperatorNode(operatorNode, plainSelect.getSelectItems());
     }
@@ -81,20 +98,114 @@ public class LogicalPlanBuilder {
       operatorNode = new DuplicateEliminationOperatorNode(operatorNode);
     }
 
+    if (plainSelect.getLimit() != null || plainSelect.getOffset() != null) {
+      operatorNode = buildLimitPlan(plainSelect, operatorNode);
+    }
+
     return new Pair<>(operatorNode, operatorNode.print());
   }
 
   /**
-   * Build a query plan for a single table
+   * A query aggregates if it has a GROUP BY clause or a function among its select items.
+   *
+   * @param plainSelect the query
+   * @return true if the query needs an aggregate operator
+   */
+  private static boolean isAggregateQuery(PlainSelect plainSelect) {
+    if (plainSelect.getGroupBy() != null) {
+      return true;
+    }
+    for (SelectItem item : plainSelect.getSelectItems()) {
+      if (item instanceof SelectExpressionItem expressionItem
+          && expressionItem.getExpression() instanceof Function) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Add the LIMIT and OFFSET of the query on top of the plan. Both LIMIT n OFFSET m and LIMIT m, n
+   * are supported; LIMIT ALL and LIMIT NULL do not limit.
+   *
+   * @param plainSelect the query
+   * @param operatorNode the root of the query plan
+   * @return the new root of the query plan
+   */
+  private static OperatorNode buildLimitPlan(PlainSelect plainSelect, OperatorNode operatorNode) {
+    long limit = Long.MAX_VALUE;
+    long offset = 0;
+    Limit limitClause = plainSelect.getLimit();
+    if (limitClause != null) {
+      if (limitClause.getRowCount() instanceof LongValue rowCount) {
+        limit = rowCount.getValue();
+      }
+      if (limitClause.getOffset() instanceof LongValue limitOffset) {
+        offset = limitOffset.getValue();
+      }
+    }
+    if (plainSelect.getOffset() != null
+        && plainSelect.getOffset().getOffset() instanceof LongValue offsetValue) {
+      offset = offsetValue.getValue();
+    }
+
+    if (limit == Long.MAX_VALUE && offset == 0) {
+      return operatorNode;
+    }
+    return new LimitOperatorNode(operatorNode, limit, offset);
+  }
+
+  /**
+   * Build a query plan for a single table. The comparisons with a value bound the columns the same
+   * way as in a join, and the cheapest index, if any, scans the range of its column. The
+   * comparisons the range covers are dropped, the others stay in a selection above the scan.
    *
    * @param whereExpression the where expression from the query
    * @param table the table to build the plan for
    * @return the root of the query plan
    */
   private static OperatorNode buildSingleTablePlan(Expression whereExpression, Table table) {
-    OperatorNode operatorNode = new ScanOperatorNode(table);
-    if (whereExpression != null) {
-      operatorNode = new SelectOperatorNode(operatorNode, whereExpression);
+    if (whereExpression == null) {
+      return new ScanOperatorNode(table);
+    }
+
+    ArrayList<ComparisonOperator> flattened = HelperMethods.flattenExpression(whereExpression);
+    ComparisonEvaluator comparisonEvaluator = new ComparisonEvaluator();
+    for (ComparisonOperator comparisonOperator : flattened) {
+      comparisonEvaluator.visit(comparisonOperator);
+    }
+    Set<UnionFindElement> unionFindElements = comparisonEvaluator.getResult();
+    Pair<String, Boolean> scanIndex = chooseScanIndex(unionFindElements, table);
+    if (scanIndex == null) {
+      return new SelectOperatorNode(new ScanOperatorNode(table), whereExpression);
+    }
+
+    Alias alias = table.getAlias();
+    String aliasName = alias != null ? alias.getName() : table.getName();
+    String index = scanIndex.getLeft();
+    Pair<Integer, Integer> indexBounds = getBounds(unionFindElements, aliasName + "." + index);
+    OperatorNode operatorNode =
+        new ScanOperatorNode(
+            table, index, indexBounds.getLeft(), indexBounds.getRight(), scanIndex.getRight());
+
+    // A comparison of the index column with a value holds for every tuple in the range
+    Expression residual = null;
+    for (ComparisonOperator comparisonOperator : flattened) {
+      Expression leftExpression = comparisonOperator.getLeftExpression();
+      Expression rightExpression = comparisonOperator.getRightExpression();
+      if (!(comparisonOperator instanceof NotEqualsTo)
+          && leftExpression instanceof Column != rightExpression instanceof Column) {
+        Column column =
+            leftExpression instanceof Column ? (Column) leftExpression : (Column) rightExpression;
+        if (column.getColumnName().equals(index)) {
+          continue;
+        }
+      }
+      residual =
+          residual == null ? comparisonOperator : new AndExpression(residual, comparisonOperator);
+    }
+    if (residual != null) {
+      operatorNode = new SelectOperatorNode(operatorNode, residual);
     }
     return operatorNode;
   }
@@ -157,7 +268,8 @@ public class LogicalPlanBuilder {
       String aliasName = alias != null ? alias.getName() : table.getName();
       aliasNames.add(aliasName);
 
-      String index = chooseScanIndex(unionFindElements, table);
+      Pair<String, Boolean> scanIndex = chooseScanIndex(unionFindElements, table);
+      String index = scanIndex == null ? null : scanIndex.getLeft();
       Expression expression =
           createComparisonExpressionForTable(unionFindElements, aliasName, index);
 
@@ -165,7 +277,8 @@ public class LogicalPlanBuilder {
       if (index != null) {
         Pair<Integer, Integer> indexBounds = getBounds(unionFindElements, aliasName + "." + index);
         operatorNode =
-            new ScanOperatorNode(table, index, indexBounds.getLeft(), indexBounds.getRight());
+            new ScanOperatorNode(
+                table, index, indexBounds.getLeft(), indexBounds.getRight(), scanIndex.getRight());
       } else {
         operatorNode = new ScanOperatorNode(table);
       }
@@ -209,9 +322,10 @@ public class LogicalPlanBuilder {
    *
    * @param unionFindElements set of union find elements
    * @param table table to choose index for
-   * @return the index to scan
+   * @return the index to scan and whether to fetch its tuples in rid order, or null for a full scan
    */
-  private static String chooseScanIndex(Set<UnionFindElement> unionFindElements, Table table) {
+  private static Pair<String, Boolean> chooseScanIndex(
+      Set<UnionFindElement> unionFindElements, Table table) {
     String tableName = table.getName();
     Map<String, Double> reductionFactor = computeReductionFactor(unionFindElements, table);
     IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(tableName);
@@ -224,7 +338,7 @@ public class LogicalPlanBuilder {
             DBCatalog.getInstance().getBufferCapacity());
 
     double minCost = numPages;
-    String selectedIndex = null;
+    Pair<String, Boolean> selectedIndex = null;
     for (Entry<String, Double> entry : reductionFactor.entrySet()) {
       String attribute = entry.getKey();
       Double r = entry.getValue();
@@ -232,6 +346,7 @@ public class LogicalPlanBuilder {
       // if no index on current column, continue
       if (!indexInfo.attributes.containsKey(attribute)) continue;
       double cost;
+      boolean sortRids = false;
       // If p is the number of pages in the relation, t the number of tuples, r the reduction factor
       // and l the
       // number of leaves in the index, the cost for a clustered index is 3 + p ∗ r while for an
@@ -243,16 +358,39 @@ public class LogicalPlanBuilder {
       } else {
         int numLeaves = IndexDeserializer.getNumLeaves(indexInfo.relationName, attribute);
         cost = 0 + numLeaves * r + numTuples * r;
+        double sortedCost = numLeaves * r + estimateRidOrderPages(numPages, numTuples * r);
+        if (sortedCost < cost) {
+          cost = sortedCost;
+          sortRids = true;
+        }
       }
 
       if (cost < minCost) {
         minCost = cost;
-        selectedIndex = attribute;
+        selectedIndex = new Pair<>(attribute, sortRids);
       }
     }
     return selectedIndex;
   }
 
+  /**
+   * Estimate the data pages read when fetching rids in rid order. The rids are sorted a chunk at a
+   * time, and the k rids of a chunk spread uniformly over p pages touch p * (1 - (1 - 1/p)^k)
+   * distinct pages, each read once.
+   *
+   * @param numPages number of pages in the relation
+   * @param numRids number of rids in the range
+   * @return estimated number of data pages read
+   */
+  private static double estimateRidOrderPages(int numPages, double numRids) {
+    if (numPages <= 0 || numRids <= 0) {
+      return 0;
+    }
+    double numChunks = Math.ceil(numRids / IndexDeserializer.getRidChunkCapacity());
+    double ridsPerChunk = numRids / numChunks;
+    return numChunks * numPages * (1 - Math.pow(1 - 1.0 / numPages, ridsPerChunk));
+  }
+
   /**
    * Compute the reduction factor for a given table
    *
@@ -274,6 +412,11 @@ public class LogicalPlanBuilder {
         if (column.getTable().getName().equals(aliasName)) {
           String columnName = column.getColumnName();
           Pair<Integer, Integer> tupleBound = info.columnStats.get(columnName);
+          if (tupleBound == null) {
+            // without stats, every tuple may match
+            reductionFactors.put(columnName, 1.0);
+            continue;
+          }
           long upperBound = Math.min(element.upperBound, tupleBound.getRight());
           long lowerBound = Math.max(element.lowerBound, tupleBound.getLeft());
           long totalRange = tupleBound.getRight() - tupleBound.getLeft();
@@ -1,20 +1,31 @@
 package builder;
 
+import common.AggregateFunction;
+import common.HelperMethods;
+import common.index.IndexDeserializer;
+import common.index.IndexInfo;
 import common.pair.Pair;
+import common.stats.StatsInfo;
 import compiler.DBCatalog;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
 import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import operator_node.AggregateOperatorNode;
 import operator_node.DuplicateEliminationOperatorNode;
 import operator_node.EmptyOperatorNode;
 import operator_node.JoinOperatorNode;
+import operator_node.LimitOperatorNode;
 import operator_node.OperatorNode;
 import operator_node.OperatorNodeVisitor;
 import operator_node.ProjectOperatorNode;
@@ -25,12 +36,23 @@ import physical_operator.BNLJOperator;
 import physical_operator.DuplicateEliminationOperator;
 import physical_operator.EmptyOperator;
 import physical_operator.ExternalSortOperator;
+import physical_operator.GraceHashJoinOperator;
+import physical_operator.HashAggregateOperator;
+import physical_operator.HashDuplicateEliminationOperator;
+import physical_operator.HashJoinOperator;
+import physical_operator.IndexNestedLoopJoinOperator;
+import physical_operator.IndexOnlyScanOperator;
 import physical_operator.IndexScanOperator;
+import physical_operator.LimitOperator;
+import physical_operator.MaterializeOperator;
 import physical_operator.Operator;
 import physical_operator.ProjectOperator;
 import physical_operator.SMJOperator;
 import physical_operator.ScanOperator;
 import physical_operator.SelectOperator;
+import physical_operator.SortAggregateOperator;
+import physical_operator.SpillPartitions;
+import physical_operator.TopNSortOperator;
 
 /**
  * PhysicalPlanBuilder is a class to build the physical query plan based on relational algebra query
@@ -52,20 +74,46 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
   @Override
   public void visit(DuplicateEliminationOperatorNode node) {
     node.getChildNode().accept(this);
+    int sortBufferPageNumber = DBCatalog.getInstance().getSortBufferPageNumber();
 
-    // Use sort to process distinct, if the child is not SortOperator, we create a
-    // sort node.
-    if (!(node.getChildNode() instanceof SortOperatorNode)) {
+    // A sorted child is deduplicated by comparing neighbours, as is a child already sorted on every
+    // column by a clustered index. Otherwise, either sort it first or deduplicate it with a hash
+    // set, whichever is cheaper.
+    if (!(node.getChildNode() instanceof SortOperatorNode)
+        && !HelperMethods.isSortedOn(operator.getSortOrder(), operator.getOutputSchema())) {
+      if (useHashDistinct(operator, sortBufferPageNumber)) {
+        operator =
+            new HashDuplicateEliminationOperator(
+                node.getOutputSchema(), operator, sortBufferPageNumber);
+        return;
+      }
       operator =
           new ExternalSortOperator(
-              node.getOutputSchema(),
-              operator,
-              new ArrayList<>(),
-              DBCatalog.getInstance().getSortBufferPageNumber());
+              node.getOutputSchema(), operator, new ArrayList<>(), sortBufferPageNumber);
     }
     operator = new DuplicateEliminationOperator(node.getOutputSchema(), operator);
   }
 
+  /**
+   * Choose between hash and sort DISTINCT. When the input fits in the sort buffer the sort runs in
+   * memory, so it is kept for its sorted output. Otherwise hashing wins when the distinct tuples
+   * need fewer partitioning passes than the sort needs merge passes.
+   *
+   * @param child the operator to deduplicate
+   * @param bufferPageNumber number of buffer pages B
+   * @return true to use hash DISTINCT
+   */
+  private static boolean useHashDistinct(Operator child, int bufferPageNumber) {
+    int columnNum = child.getOutputSchema().size();
+    long inputPages = estimatePageCount(estimateTupleCount(child), columnNum);
+    if (inputPages <= bufferPageNumber) {
+      return false;
+    }
+    long distinctPages = estimatePageCount(estimateDistinctCount(child), columnNum);
+    return estimateHashDistinctCost(inputPages, distinctPages, bufferPageNumber)
+        <= estimateSortCost(inputPages, bufferPageNumber);
+  }
+
   /**
    * @param node
    */
@@ -117,20 +165,64 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
         }
       }
 
-      String join = "BNLJ";
       Pair<Column, Column> columnPair = null;
       for (Column cLeft : left.getOutputSchema()) {
         for (Column cRight : right.getOutputSchema()) {
           String leftName = cLeft.getName(true);
           String rightName = cRight.getName(true);
           if (equalityJoinMap.contains(new Pair<>(leftName, rightName))) {
-            join = "SMJ";
             columnPair = new Pair<>(cLeft, cRight);
           }
         }
       }
 
-      // choose which to join here :)
+      // A block nested loop join reads the right input once per block of the left input. An
+      // equi-join can also hash the smaller input when its estimated size fits in the join buffer,
+      // partition both inputs, sort both inputs, or look up the outer keys in the index of the
+      // inner table: take the cheapest in I/O.
+      int joinBufferPageNumber = DBCatalog.getInstance().getJoinBufferPageNumber();
+      int leftTupleCount = estimateTupleCount(left);
+      int rightTupleCount = estimateTupleCount(right);
+      boolean buildLeft = leftTupleCount < rightTupleCount;
+      long leftPages = estimatePageCount(leftTupleCount, left.getOutputSchema().size());
+      long rightPages = estimatePageCount(rightTupleCount, right.getOutputSchema().size());
+      long buildPages = buildLeft ? leftPages : rightPages;
+      String join = "BNLJ";
+      long joinCost = leftPages + Math.ceilDiv(leftPages, joinBufferPageNumber) * rightPages;
+      ScanOperator indexedScan = null;
+      if (columnPair != null) {
+        int sortBufferPageNumber = DBCatalog.getInstance().getSortBufferPageNumber();
+        long smjCost =
+            estimateJoinInputCost(
+                    left, columnPair.getLeft(), leftPages, sortBufferPageNumber, false)
+                + estimateJoinInputCost(
+                    right, columnPair.getRight(), rightPages, sortBufferPageNumber, true)
+                + leftPages
+                + rightPages;
+        if (smjCost <= joinCost) {
+          join = "SMJ";
+          joinCost = smjCost;
+        }
+
+        long graceHashJoinCost =
+            estimateGraceHashJoinCost(buildPages, leftPages + rightPages, joinBufferPageNumber);
+        if (buildPages <= joinBufferPageNumber && leftPages + rightPages <= joinCost) {
+          join = "HashJoin";
+          joinCost = leftPages + rightPages;
+        } else if (graceHashJoinCost <= joinCost) {
+          join = "GraceHashJoin";
+          joinCost = graceHashJoinCost;
+        }
+
+        indexedScan = getIndexedScan(right, columnPair.getRight());
+        if (indexedScan != null
+            && leftPages
+                    + estimateIndexLookupCost(
+                        leftTupleCount, indexedScan.getTable(), columnPair.getRight())
+                < joinCost) {
+          join = "IndexNLJ";
+        }
+      }
 
       if (join.equals("BNLJ")) {
         left =
@@ -140,20 +232,43 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
                 right,
                 DBCatalog.getInstance().getJoinBufferPageNumber(),
                 reverse);
-      } else {
-        // get equality condition, extract left and right columns
-        Operator leftSortOperator =
-            new ExternalSortOperator(
-                left.getOutputSchema(),
+      } else if (join.equals("HashJoin")) {
+        left =
+            new HashJoinOperator(
+                outputSchema,
                 left,
-                Collections.singletonList(columnPair.getLeft()),
-                DBCatalog.getInstance().getSortBufferPageNumber());
-        Operator rightSortOperator =
-            new ExternalSortOperator(
-                right.getOutputSchema(),
                 right,
-                Collections.singletonList(columnPair.getRight()),
-                DBCatalog.getInstance().getSortBufferPageNumber());
+                columnPair.getLeft(),
+                columnPair.getRight(),
+                reverse,
+                buildLeft,
+                Math.min(leftTupleCount, rightTupleCount));
+      } else if (join.equals("IndexNLJ")) {
+        left =
+            new IndexNestedLoopJoinOperator(
+                outputSchema,
+                left,
+                indexedScan.getTable(),
+                right instanceof SelectOperator select ? select.getWhereExpression() : null,
+                columnPair.getLeft(),
+                columnPair.getRight(),
+                joinBufferPageNumber,
+                reverse);
+      } else if (join.equals("GraceHashJoin")) {
+        left =
+            new GraceHashJoinOperator(
+                outputSchema,
+                left,
+                right,
+                columnPair.getLeft(),
+                columnPair.getRight(),
+                reverse,
+                buildLeft,
+                joinBufferPageNumber);
+      } else {
+        // get equality condition, extract left and right columns
+        Operator leftSortOperator = buildJoinInput(left, columnPair.getLeft(), false);
+        Operator rightSortOperator = buildJoinInput(right, columnPair.getRight(), true);
 
         left =
             new SMJOperator(
@@ -181,9 +296,10 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
 
           Pair<String, String> columnNamePair = new Pair<>(leftColumnName, rightColumnName);
 
-          Pair<String, String> smjColumnNamePair =
+          // The equi-join condition is already applied by every join but BNLJ
+          Pair<String, String> joinColumnNamePair =
               new Pair<>(columnPair.getLeft().getName(true), columnPair.getRight().getName(true));
-          if (columnNamePair.equals(smjColumnNamePair)) continue;
+          if (!join.equals("BNLJ") && columnNamePair.equals(joinColumnNamePair)) continue;
         }
 
         if (expression == null) {
@@ -202,15 +318,514 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
     operator = left;
   }
 
+  /**
+   * Estimate the number of tuples an operator outputs, based on StatsInfo. A selection keeps the
+   * fraction of the value range of each column it compares to a constant, and an equality of two
+   * columns, in a selection or a join, keeps 1 / max(V(R, A), V(S, B)) of the tuples, where V is
+   * the number of values in the range of the column. Values are assumed uniform and independent.
+   *
+   * @param operator operator to estimate
+   * @return estimated number of tuples, capped at Integer.MAX_VALUE
+   */
+  private static int estimateTupleCount(Operator operator) {
+    DBCatalog catalog = DBCatalog.getInstance();
+    long count;
+    if (operator instanceof ScanOperator) {
+      count = catalog.getStatsInfo(operator.getOutputSchema().get(0).getTable().getName()).count;
+    } else if (operator instanceof IndexScanOperator indexScan) {
+      count =
+          estimateRangeCount(
+              catalog.getStatsInfo(indexScan.table.getName()),
+              indexScan.attributeName,
+              indexScan.lowKey,
+              indexScan.highKey);
+    } else if (operator instanceof IndexOnlyScanOperator indexScan) {
+      count =
+          estimateRangeCount(
+              catalog.getStatsInfo(indexScan.table.getName()),
+              indexScan.attributeName,
+              indexScan.lowKey,
+              indexScan.highKey);
+    } else if (operator instanceof SelectOperator select) {
+      Operator child = select.getChildOperator();
+      count =
+          Math.round(
+              estimateTupleCount(child)
+                  * estimateSelectivity(select.getWhereExpression(), getIndexedAttribute(child)));
+    } else if (operator instanceof ProjectOperator project) {
+      count = estimateTupleCount(project.getChildOperator());
+    } else if (operator instanceof HashAggregateOperator aggregate) {
+      count =
+          aggregate.getGroupByColumns().isEmpty()
+              ? 1
+              : estimateTupleCount(aggregate.getChildOperator());
+    } else if (operator instanceof SortAggregateOperator aggregate) {
+      count = estimateTupleCount(aggregate.getChildOperator());
+    } else if (operator instanceof BNLJOperator join) {
+      count =
+          (long) estimateTupleCount(join.getLeftOperator())
+              * estimateTupleCount(join.getRightOperator());
+    } else if (operator instanceof SMJOperator join) {
+      count =
+          estimateEquiJoinCount(
+              (long) estimateTupleCount(join.getLeftOperator())
+                  * estimateTupleCount(join.getRightOperator()),
+              join,
+              join.leftColumnName,
+              join.rightColumnName);
+    } else if (operator instanceof HashJoinOperator join) {
+      count =
+          estimateEquiJoinCount(
+              (long) estimateTupleCount(join.getLeftOperator())
+                  * estimateTupleCount(join.getRightOperator()),
+              join,
+              join.leftColumnName,
+              join.rightColumnName);
+    } else if (operator instanceof IndexNestedLoopJoinOperator join) {
+      double rightSelectivity = estimateSelectivity(join.getRightExpression(), null);
+      count =
+          estimateEquiJoinCount(
+              (long)
+                  (estimateTupleCount(join.getLeftOperator())
+                      * catalog.getStatsInfo(join.getRightTable().getName()).count
+                      * rightSelectivity),
+              join,
+              join.leftColumnName,
+              join.rightColumnName);
+    } else if (operator instanceof GraceHashJoinOperator join) {
+      count =
+          estimateEquiJoinCount(
+              (long) estimateTupleCount(join.getLeftOperator())
+                  * estimateTupleCount(join.getRightOperator()),
+              join,
+              join.leftColumnName,
+              join.rightColumnName);
+    } else {
+      count = Integer.MAX_VALUE;
+    }
+    return (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Estimate the fraction of tuples that satisfy a selection.
+   *
+   * @param expression selection, or null for none
+   * @param indexedAttribute column whose range the child already applied, or null
+   * @return estimated fraction of tuples kept
+   */
+  private static double estimateSelectivity(Expression expression, String indexedAttribute) {
+    double selectivity = 1;
+    for (ComparisonOperator comparison : HelperMethods.flattenExpression(expression)) {
+      Expression leftExpression = comparison.getLeftExpression();
+      Expression rightExpression = comparison.getRightExpression();
+      if (leftExpression instanceof Column leftColumn
+          && rightExpression instanceof Column rightColumn) {
+        if (comparison instanceof EqualsTo) {
+          selectivity /= Math.max(getValueCount(leftColumn), getValueCount(rightColumn));
+        }
+        continue;
+      }
+      Column column = null;
+      if (leftExpression instanceof Column leftColumn) {
+        column = leftColumn;
+      } else if (rightExpression instanceof Column rightColumn) {
+        column = rightColumn;
+      }
+      if (column == null || column.getColumnName().equals(indexedAttribute)) {
+        continue;
+      }
+      Pair<Integer, Integer> bounds = getColumnBounds(column);
+      if (bounds != null) {
+        Pair<Integer, Integer> range = HelperMethods.evaluateComparison(comparison);
+        selectivity *= estimateRangeFraction(bounds, range.getLeft(), range.getRight());
+      }
+    }
+    return selectivity;
+  }
+
+  /**
+   * @param operator child of a selection
+   * @return the column an index scan child already restricted to its range, or null
+   */
+  private static String getIndexedAttribute(Operator operator) {
+    if (operator instanceof IndexScanOperator indexScan) {
+      return indexScan.attributeName;
+    }
+    if (operator instanceof IndexOnlyScanOperator indexScan) {
+      return indexScan.attributeName;
+    }
+    return null;
+  }
+
+  /**
+   * Estimate the output of an equi-join from the size of the cross product of its inputs.
+   *
+   * @param crossCount number of tuples of the cross product
+   * @param join the join, whose output has both join columns
+   * @param leftColumnName name of the left join column
+   * @param rightColumnName name of the right join column
+   * @return estimated number of tuples
+   */
+  private static long estimateEquiJoinCount(
+      long crossCount, Operator join, String leftColumnName, String rightColumnName) {
+    long leftValueCount = 1;
+    long rightValueCount = 1;
+    for (Column column : join.getOutputSchema()) {
+      if (column.getName(true).equals(leftColumnName)) {
+        leftValueCount = getValueCount(column);
+      } else if (column.getName(true).equals(rightColumnName)) {
+        rightValueCount = getValueCount(column);
+      }
+    }
+    return crossCount / Math.max(leftValueCount, rightValueCount);
+  }
+
+  /**
+   * @param column column of a base table
+   * @return the lowest and highest values of the column in StatsInfo, or null if it has no stats
+   */
+  private static Pair<Integer, Integer> getColumnBounds(Column column) {
+    if (column.getTable() == null) {
+      return null;
+    }
+    StatsInfo statsInfo = DBCatalog.getInstance().getStatsInfo(column.getTable().getName());
+    if (statsInfo == null) {
+      return null;
+    }
+    return statsInfo.columnStats.get(column.getColumnName());
+  }
+
+  /**
+   * @param column column of a base table
+   * @return number of values in the range of the column, 1 if it has no stats
+   */
+  private static long getValueCount(Column column) {
+    Pair<Integer, Integer> bounds = getColumnBounds(column);
+    return bounds == null ? 1 : (long) bounds.getRight() - bounds.getLeft() + 1;
+  }
+
+  /**
+   * @param bounds lowest and highest values of a column
+   * @param lowKey low key of the range
+   * @param highKey high key of the range
+   * @return fraction of the values of the column in the range
+   */
+  private static double estimateRangeFraction(
+      Pair<Integer, Integer> bounds, int lowKey, int highKey) {
+    long low = Math.max(bounds.getLeft(), lowKey);
+    long high = Math.min(bounds.getRight(), highKey);
+    long range = (long) bounds.getRight() - bounds.getLeft() + 1;
+    return Math.max(0, high - low + 1) / (double) range;
+  }
+
+  /**
+   * Estimate the number of tuples of a table in a range of a column, assuming uniform values.
+   *
+   * @param statsInfo stats of the table
+   * @param attributeName column name
+   * @param lowKey low key of the range
+   * @param highKey high key of the range
+   * @return estimated number of tuples, every tuple of the table if the column has no stats
+   */
+  private static long estimateRangeCount(
+      StatsInfo statsInfo, String attributeName, int lowKey, int highKey) {
+    Pair<Integer, Integer> bounds = statsInfo.columnStats.get(attributeName);
+    if (bounds == null) {
+      return statsInfo.count;
+    }
+    return Math.round(estimateRangeFraction(bounds, lowKey, highKey) * statsInfo.count);
+  }
+
+  /**
+   * Find the base table under an inner join child that can be probed through an index on the join
+   * column: a scan, possibly under a selection, of a table indexed on the column.
+   *
+   * @param operator inner child of the join
+   * @param column inner join column
+   * @return the scan of the indexed table, or null if the index cannot be used
+   */
+  private static ScanOperator getIndexedScan(Operator operator, Column column) {
+    if (operator instanceof SelectOperator select) {
+      operator = select.getChildOperator();
+    }
+    if (!(operator instanceof ScanOperator scan)) {
+      return null;
+    }
+    IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(scan.getTable().getName());
+    if (indexInfo == null || !indexInfo.attributes.containsKey(column.getColumnName())) {
+      return null;
+    }
+    return scan;
+  }
+
+  /**
+   * Estimate the I/O of looking up every outer tuple in the index of the inner table. The inner
+   * nodes of the tree stay in the buffer pool, so a lookup reads a leaf, then the pages of the
+   * matching tuples: a page per tuple for an unclustered index, consecutive pages of the sorted
+   * data file for a clustered one. Without stats on the column, every lookup is assumed to match
+   * the whole table.
+   *
+   * @param outerTupleCount number of tuples of the outer child
+   * @param table indexed inner table
+   * @param column inner join column
+   * @return number of page reads
+   */
+  private static long estimateIndexLookupCost(long outerTupleCount, Table table, Column column) {
+    DBCatalog catalog = DBCatalog.getInstance();
+    StatsInfo statsInfo = catalog.getStatsInfo(table.getName());
+    Pair<Integer, Integer> bounds = statsInfo.columnStats.get(column.getColumnName());
+    long range = bounds == null ? 1 : (long) bounds.getRight() - bounds.getLeft() + 1;
+    boolean isClustered =
+        catalog.getIndexInfo(table.getName()).attributes.get(column.getColumnName()).getLeft();
+    long matchPages =
+        isClustered
+            ? Math.ceilDiv(estimatePageCount(statsInfo.count, statsInfo.columnStats.size()), range)
+            : Math.ceilDiv(statsInfo.count, range);
+    return outerTupleCount * (1 + matchPages);
+  }
+
+  /**
+   * Estimate the number of distinct tuples of an operator: the product of the value ranges of its
+   * columns in the stats, capped by its number of tuples.
+   *
+   * @param operator operator to estimate
+   * @return estimated number of distinct tuples
+   */
+  private static long estimateDistinctCount(Operator operator) {
+    DBCatalog catalog = DBCatalog.getInstance();
+    long count = estimateTupleCount(operator);
+    long product = 1;
+    for (Column column : operator.getOutputSchema()) {
+      if (column.getTable() == null) {
+        return count;
+      }
+      StatsInfo statsInfo = catalog.getStatsInfo(column.getTable().getName());
+      if (statsInfo == null || !statsInfo.columnStats.containsKey(column.getColumnName())) {
+        return count;
+      }
+      Pair<Integer, Integer> bounds = statsInfo.columnStats.get(column.getColumnName());
+      product *= (long) bounds.getRight() - bounds.getLeft() + 1;
+      if (product >= count) {
+        return count;
+      }
+    }
+    return product;
+  }
+
+  /**
+   * Estimate the I/O of a hash DISTINCT: every partitioning pass writes and reads the input, and
+   * each pass divides the distinct tuples by B - 1 until they fit in memory.
+   *
+   * @param inputPages number of pages of the input
+   * @param distinctPages number of pages of the distinct tuples
+   * @param bufferPageNumber number of buffer pages B
+   * @return number of page reads and writes
+   */
+  private static long estimateHashDistinctCost(
+      long inputPages, long distinctPages, int bufferPageNumber) {
+    int passes = 0;
+    while (distinctPages > bufferPageNumber) {
+      distinctPages = (distinctPages + bufferPageNumber - 2) / (bufferPageNumber - 1);
+      passes++;
+    }
+    return 2 * inputPages * passes;
+  }
+
+  /**
+   * Estimate the number of pages to store tuples in a binary file.
+   *
+   * @param tupleCount number of tuples
+   * @param columnNum number of columns of each tuple
+   * @return number of pages
+   */
+  private static long estimatePageCount(long tupleCount, int columnNum) {
+    // Each page starts with 2 integers: the number of columns and the number of tuples
+    long tuplesPerPage = (DBCatalog.getInstance().getBufferCapacity() / 4 - 2) / columnNum;
+    return Math.max(1, (tupleCount + tuplesPerPage - 1) / tuplesPerPage);
+  }
+
+  /**
+   * Prepare an input of a sort merge join: sort it on the join column, unless it is already sorted
+   * on it, like a scan or an index scan of a relation clustered on the column. The right input is
+   * also reset to the first tuple of each group of equal keys. A scan or a clustered index scan
+   * does it on the data file, another sorted input is materialized once instead of sorted.
+   *
+   * @param operator input of the join
+   * @param column join column of the input
+   * @param isRight true for the right input
+   * @return the input sorted on the column
+   */
+  private static Operator buildJoinInput(Operator operator, Column column, boolean isRight) {
+    if (!HelperMethods.isSortedOn(operator.getSortOrder(), List.of(column))) {
+      return new ExternalSortOperator(
+          operator.getOutputSchema(),
+          operator,
+          Collections.singletonList(column),
+          DBCatalog.getInstance().getSortBufferPageNumber());
+    }
+    if (!isRight || operator instanceof ScanOperator || operator instanceof IndexScanOperator) {
+      return operator;
+    }
+    return new MaterializeOperator(operator.getOutputSchema(), operator);
+  }
+
+  /**
+   * Estimate the I/O buildJoinInput adds to an input of a sort merge join: nothing if it is already
+   * sorted, one write if it is materialized, an external sort otherwise.
+   *
+   * @param operator input of the join
+   * @param column join column of the input
+   * @param pages number of pages of the input
+   * @param bufferPageNumber number of buffer pages B
+   * @param isRight true for the right input
+   * @return number of page reads and writes
+   */
+  private static long estimateJoinInputCost(
+      Operator operator, Column column, long pages, int bufferPageNumber, boolean isRight) {
+    if (!HelperMethods.isSortedOn(operator.getSortOrder(), List.of(column))) {
+      return estimateSortCost(pages, bufferPageNumber);
+    }
+    if (!isRight || operator instanceof ScanOperator || operator instanceof IndexScanOperator) {
+      return 0;
+    }
+    return pages;
+  }
+
+  /**
+   * Estimate the I/O of an external sort: every pass reads and writes every page, and each merge
+   * pass divides the number of runs by B - 1.
+   *
+   * @param pages number of pages to sort
+   * @param bufferPageNumber number of buffer pages B
+   * @return number of page reads and writes
+   */
+  private static long estimateSortCost(long pages, int bufferPageNumber) {
+    long runs = (pages + bufferPageNumber - 1) / bufferPageNumber;
+    int passes = 1;
+    while (runs > 1) {
+      runs = (runs + bufferPageNumber - 2) / (bufferPageNumber - 1);
+      passes++;
+    }
+    return 2 * pages * passes;
+  }
+
+  /**
+   * Estimate the I/O of a Grace hash join: every partitioning pass reads and writes both inputs,
+   * and each pass divides the build partitions by the B - 1 partitions of GraceHashJoinOperator
+   * until they fit in the B pages of memory. The final join reads both inputs once. Partitions the
+   * operator keeps in memory during the first pass are ignored: they are at most a few pages once
+   * the build input is larger than 2 * (B - 1) pages.
+   *
+   * @param buildPages number of pages of the build input
+   * @param totalPages number of pages of both inputs
+   * @param bufferPageNumber number of buffer pages B
+   * @return number of page reads and writes
+   */
+  private static long estimateGraceHashJoinCost(
+      long buildPages, long totalPages, int bufferPageNumber) {
+    int partitionNum = SpillPartitions.getPartitionNum(bufferPageNumber);
+    int passes = 0;
+    while (buildPages > bufferPageNumber) {
+      buildPages = Math.ceilDiv(buildPages, partitionNum);
+      passes++;
+    }
+    return 2 * totalPages * passes + totalPages;
+  }
+
   /**
    * @param node
    */
   @Override
   public void visit(ProjectOperatorNode node) {
-    node.getChildNode().accept(this);
+    operator = buildIndexOnlyScan(node.getChildNode(), node.getOutputSchema());
+    if (operator == null) {
+      node.getChildNode().accept(this);
+    }
     operator = new ProjectOperator(node.getOutputSchema(), operator);
   }
 
+  /**
+   * Build an index-only scan for a single table plan whose projection and selection only use one
+   * column, when the table has an index on it and reading the leaves in the range costs less than
+   * reading the data file. The selection is kept above the scan.
+   *
+   * @param node child of the projection or aggregation: a scan, possibly under a selection
+   * @param columns columns used above the child
+   * @return the index-only scan, or null if the index does not cover the query
+   */
+  private static Operator buildIndexOnlyScan(OperatorNode node, List<Column> columns) {
+    Expression whereExpression = null;
+    if (node instanceof SelectOperatorNode selectNode) {
+      whereExpression = selectNode.getWhereExpression();
+      node = selectNode.getChildNode();
+    }
+    if (!(node instanceof ScanOperatorNode scanNode)) {
+      return null;
+    }
+
+    // Every column used must be the same one, its bounds are taken from the selection
+    Table table = scanNode.getTable();
+    List<ComparisonOperator> comparisons = HelperMethods.flattenExpression(whereExpression);
+    Set<String> columnNames = new HashSet<>();
+    String attributeName = scanNode.getIndexAttribute();
+    if (attributeName != null) {
+      columnNames.add(attributeName);
+    }
+    for (Column column : columns) {
+      columnNames.add(column.getColumnName());
+    }
+    for (ComparisonOperator comparison : comparisons) {
+      for (Expression expression :
+          List.of(comparison.getLeftExpression(), comparison.getRightExpression())) {
+        if (expression instanceof Column column) {
+          columnNames.add(column.getColumnName());
+        }
+      }
+    }
+    if (columnNames.size() != 1) {
+      return null;
+    }
+    attributeName = columnNames.iterator().next();
+    DBCatalog catalog = DBCatalog.getInstance();
+    IndexInfo indexInfo = catalog.getIndexInfo(table.getName());
+    if (indexInfo == null || !indexInfo.attributes.containsKey(attributeName)) {
+      return null;
+    }
+
+    int lowKey =
+        scanNode.getIndexAttribute() == null ? Integer.MIN_VALUE : scanNode.getLowerBound();
+    int highKey =
+        scanNode.getIndexAttribute() == null ? Integer.MAX_VALUE : scanNode.getUpperBound();
+    for (ComparisonOperator comparison : comparisons) {
+      if (comparison.getLeftExpression() instanceof Column
+          != comparison.getRightExpression() instanceof Column) {
+        Pair<Integer, Integer> bounds = HelperMethods.evaluateComparison(comparison);
+        lowKey = Math.max(lowKey, bounds.getLeft());
+        highKey = Math.min(highKey, bounds.getRight());
+      }
+    }
+
+    // The index can not be read
+    int numLeaves = IndexDeserializer.getNumLeaves(indexInfo.relationName, attributeName);
+    if (numLeaves < 1) {
+      return null;
+    }
+
+    // The leaves of the range against every page of the data file
+    StatsInfo statsInfo = catalog.getStatsInfo(table.getName());
+    long rangeCount = estimateRangeCount(statsInfo, attributeName, lowKey, highKey);
+    long leafPages = Math.ceilDiv((long) numLeaves * rangeCount, Math.max(1, statsInfo.count));
+    if (leafPages >= estimatePageCount(statsInfo.count, statsInfo.columnStats.size())) {
+      return null;
+    }
+
+    Operator operator = new IndexOnlyScanOperator(lowKey, highKey, table, attributeName);
+    if (whereExpression != null) {
+      operator = new SelectOperator(operator.getOutputSchema(), operator, whereExpression);
+    }
+    return operator;
+  }
+
   /**
    * @param node
    */
@@ -224,7 +839,8 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
               node.getLowerBound(),
               node.getUpperBound(),
               node.getTable(),
-              node.getIndexAttribute());
+              node.getIndexAttribute(),
+              node.isSortRids());
     }
   }
 
@@ -234,6 +850,9 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
   @Override
   public void visit(SortOperatorNode node) {
     node.getChildNode().accept(this);
+    if (isOrderedBy(operator, node)) {
+      return;
+    }
     operator =
         new ExternalSortOperator(
             node.getOutputSchema(),
@@ -259,6 +878,141 @@ public class PhysicalPlanBuilder implements OperatorNodeVisitor {
     operator = new EmptyOperator();
   }
 
+  /**
+   * Build GROUP BY and aggregates. When the child is already sorted on the GROUP BY columns (a
+   * sort, a clustered index scan or a sort merge join on them), the groups are aggregated as they
+   * stream by without a hash table. Otherwise they are hashed.
+   *
+   * @param node
+   */
+  @Override
+  public void visit(AggregateOperatorNode node) {
+    List<Column> columns = new ArrayList<>(node.getGroupByColumns());
+    for (AggregateFunction aggregate : node.getAggregates()) {
+      if (aggregate.column() != null) {
+        columns.add(aggregate.column());
+      }
+    }
+    operator = buildIndexOnlyScan(node.getChildNode(), columns);
+    if (operator == null) {
+      node.getChildNode().accept(this);
+    }
+    if (!node.getGroupByColumns().isEmpty()
+        && HelperMethods.isSortedOn(
+            operator.getSortOrder(),
+            getJoinEquivalentColumns(operator, node.getGroupByColumns()))) {
+      operator =
+          new SortAggregateOperator(
+              node.getOutputSchema(),
+              operator,
+              node.getGroupByColumns(),
+              node.getAggregates(),
+              node.getOutputSources());
+      return;
+    }
+    operator =
+        new HashAggregateOperator(
+            node.getOutputSchema(),
+            operator,
+            node.getGroupByColumns(),
+            node.getAggregates(),
+            node.getOutputSources(),
+            DBCatalog.getInstance().getSortBufferPageNumber());
+  }
+
+  /**
+   * A sort merge join outputs its rows in the order of its left input, where the right join column
+   * equals the left one. Replace each column that is a right join column of a sort merge join below
+   * the operator by its left join column, so that the columns can be checked against the sort
+   * order.
+   *
+   * @param operator operator whose rows are checked
+   * @param columns columns to replace
+   * @return the columns with right join columns replaced, without duplicates
+   */
+  private static List<Column> getJoinEquivalentColumns(Operator operator, List<Column> columns) {
+    Map<String, String> leftColumnNames = new HashMap<>();
+    while (operator != null) {
+      if (operator instanceof SelectOperator select) {
+        operator = select.getChildOperator();
+      } else if (operator instanceof ProjectOperator project) {
+        operator = project.getChildOperator();
+      } else if (operator instanceof SMJOperator join) {
+        leftColumnNames.put(join.rightColumnName, join.leftColumnName);
+        operator = join.getLeftOperator();
+      } else {
+        operator = null;
+      }
+    }
+
+    List<Column> equivalentColumns = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (Column column : columns) {
+      String name = column.getName(true);
+      while (leftColumnNames.containsKey(name)) {
+        name = leftColumnNames.get(name);
+      }
+      if (names.add(name)) {
+        equivalentColumns.add(new Column(name));
+      }
+    }
+    return equivalentColumns;
+  }
+
+  /**
+   * Build LIMIT / OFFSET. ORDER BY ... LIMIT n only needs the first n tuples in sort order, so the
+   * sort is replaced by a Top-N sort when n tuples fit in the sort buffer.
+   *
+   * @param node
+   */
+  @Override
+  public void visit(LimitOperatorNode node) {
+    // Tuples to read from the child, saturating when LIMIT + OFFSET does not fit in a long
+    long n;
+    try {
+      n = Math.addExact(node.getLimit(), node.getOffset());
+    } catch (ArithmeticException e) {
+      n = Long.MAX_VALUE;
+    }
+    if (node.getChildNode() instanceof SortOperatorNode sortNode
+        && n <= getSortBufferTupleNumber(sortNode.getOutputSchema().size())) {
+      sortNode.getChildNode().accept(this);
+      if (!isOrderedBy(operator, sortNode)) {
+        operator =
+            new TopNSortOperator(
+                sortNode.getOutputSchema(), operator, sortNode.getOrders(), (int) n);
+      }
+    } else {
+      node.getChildNode().accept(this);
+    }
+    operator =
+        new LimitOperator(node.getOutputSchema(), operator, node.getLimit(), node.getOffset());
+  }
+
+  /**
+   * Check if an operator already outputs its tuples in the order of a sort, like a scan of a
+   * relation clustered on the first ORDER BY column. The sort breaks ties on the other columns, so
+   * its whole order must match, not only the ORDER BY columns.
+   *
+   * @param operator child of the sort
+   * @param node the sort
+   * @return true if the sort can be skipped
+   */
+  private static boolean isOrderedBy(Operator operator, SortOperatorNode node) {
+    return HelperMethods.startsWith(
+        operator.getSortOrder(),
+        HelperMethods.getSortOrder(node.getOrders(), node.getOutputSchema()));
+  }
+
+  /**
+   * @param columnNum number of columns of a tuple
+   * @return number of tuples that fit in the sort buffer
+   */
+  private static long getSortBufferTupleNumber(int columnNum) {
+    DBCatalog catalog = DBCatalog.getInstance();
+    return (long) catalog.getSortBufferPageNumber() * catalog.getBufferCapacity() / 4 / columnNum;
+  }
+
   /**
    * @return the operator
    */
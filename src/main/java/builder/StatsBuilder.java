@@ -35,16 +35,17 @@ public class StatsBuilder {
     Arrays.fill(minArray, Integer.MAX_VALUE);
     Arrays.fill(maxArray, Integer.MIN_VALUE);
 
+    scanOperator.open();
     while ((tuple = scanOperator.getNextTuple()) != null) {
-      List<Integer> tupleList = tuple.getAllElements();
       numTuples++;
 
-      for (int i = 0; i < tupleList.size(); i++) {
-        int value = tupleList.get(i);
+      for (int i = 0; i < tuple.getSize(); i++) {
+        int value = tuple.getElementAtIndex(i);
         minArray[i] = Math.min(minArray[i], value);
         maxArray[i] = Math.max(maxArray[i], value);
       }
     }
+    scanOperator.close();
 
     // Write to stats.txt
     sb.append(table).append("\s");
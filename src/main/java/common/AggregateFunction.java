@@ -0,0 +1,100 @@
+package common;
+
+import java.util.List;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.AllColumns;
+
+/**
+ * An aggregate function of the SELECT clause: COUNT, SUM, MIN, MAX or AVG over one column, or
+ * COUNT(*). Values are integers, so AVG is the floor of the average.
+ *
+ * @param type kind of aggregate
+ * @param column column to aggregate, null for COUNT(*)
+ * @param name name of the output column, like "SUM(Sailors.A)"
+ */
+public record AggregateFunction(Type type, Column column, String name) {
+
+  /** Kind of aggregate function */
+  public enum Type {
+    COUNT,
+    SUM,
+    MIN,
+    MAX,
+    AVG;
+
+    /**
+     * @return value of the accumulator of a group with no rows
+     */
+    public long initialValue() {
+      return switch (this) {
+        case MIN -> Long.MAX_VALUE;
+        case MAX -> Long.MIN_VALUE;
+        default -> 0;
+      };
+    }
+
+    /**
+     * @param accumulator current value of the accumulator
+     * @param value value of the column in a new row
+     * @return value of the accumulator with the row added
+     */
+    public long accumulate(long accumulator, long value) {
+      return switch (this) {
+        case SUM, AVG -> accumulator + value;
+        case MIN -> Math.min(accumulator, value);
+        case MAX -> Math.max(accumulator, value);
+        case COUNT -> accumulator;
+      };
+    }
+
+    /**
+     * @param accumulator final value of the accumulator
+     * @param count number of rows of the group
+     * @return the aggregate of the group
+     */
+    public int result(long accumulator, long count) {
+      return (int)
+          switch (this) {
+            case COUNT -> count;
+            case SUM -> accumulator;
+            case AVG -> count == 0 ? 0 : Math.floorDiv(accumulator, count);
+            case MIN, MAX -> count == 0 ? 0 : accumulator;
+          };
+    }
+  }
+
+  /**
+   * Build an aggregate from a parsed function call.
+   *
+   * @param function function of the SELECT clause
+   * @return the aggregate
+   * @throws IllegalArgumentException if the function is not a supported aggregate
+   */
+  public static AggregateFunction fromFunction(Function function) {
+    Type type;
+    try {
+      type = Type.valueOf(function.getName().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported function: " + function);
+    }
+    if (function.isDistinct()) {
+      throw new IllegalArgumentException("Unsupported DISTINCT aggregate: " + function);
+    }
+
+    List<Expression> parameters =
+        function.getParameters() == null ? List.of() : function.getParameters().getExpressions();
+    if (function.isAllColumns()
+        || (parameters.size() == 1 && parameters.getFirst() instanceof AllColumns)) {
+      if (type != Type.COUNT) {
+        throw new IllegalArgumentException("Only COUNT accepts *: " + function);
+      }
+      return new AggregateFunction(type, null, function.toString());
+    }
+    if (parameters.size() != 1 || !(parameters.getFirst() instanceof Column column)) {
+      throw new IllegalArgumentException("Aggregates take one column: " + function);
+    }
+    return new AggregateFunction(type, column, function.toString());
+  }
+}
@@ -192,6 +192,74 @@ public class HelperMethods {
     return new Pair<>(leftTableName, rightTableName);
   }
 
+  /**
+   * The order of tuples sorted by getTupleComparator: the ORDER BY columns, then the other columns
+   * of the schema.
+   *
+   * @param orders list of columns in ORDER BY elements
+   * @param outputSchema list of all columns
+   * @return columns of the sort order, most significant first
+   */
+  public static List<Column> getSortOrder(List<Column> orders, List<Column> outputSchema) {
+    List<Column> sortOrder = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (Column column : orders) {
+      if (names.add(column.getName(true))) {
+        sortOrder.add(column);
+      }
+    }
+    for (Column column : outputSchema) {
+      if (names.add(column.getName(true))) {
+        sortOrder.add(column);
+      }
+    }
+    return sortOrder;
+  }
+
+  /**
+   * Check if tuples in a sort order have equal values on some columns in consecutive runs, that is
+   * if the columns are the first columns of the sort order, in any order.
+   *
+   * @param sortOrder columns of the sort order, most significant first
+   * @param columns columns to check
+   * @return true if the sort order starts with the columns
+   */
+  public static boolean isSortedOn(List<Column> sortOrder, List<Column> columns) {
+    if (sortOrder.size() < columns.size()) {
+      return false;
+    }
+    Set<String> names = new HashSet<>();
+    for (Column column : columns) {
+      names.add(column.getName(true));
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      if (!names.contains(sortOrder.get(i).getName(true))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if tuples in a sort order are also in another sort order, that is if the other order is
+   * the first columns of the sort order, in the same sequence.
+   *
+   * @param sortOrder columns of the sort order, most significant first
+   * @param prefix columns of the other sort order, most significant first
+   * @return true if the sort order starts with the other one
+   */
+  public static boolean startsWith(List<Column> sortOrder, List<Column> prefix) {
+    if (sortOrder.size() < prefix.size()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.size(); i++) {
+      if (!sortOrder.get(i).getName(true).equals(prefix.get(i).getName(true))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * A comparator that sorts the tuples based on the column specified in the orders list. Then by
    * the tuples based on the subsequent columns to break ties.
@@ -204,6 +272,17 @@ public class HelperMethods {
   public static <T> Comparator<T> getTupleComparator(
       List<Column> orders, List<Column> outputSchema) {
     Map<String, Integer> columnIndexMap = HelperMethods.mapColumnIndex(outputSchema);
+
+    // Resolve the column indexes once: the ORDER BY columns first, then every column of the
+    // schema to break ties.
+    int[] indexes = new int[orders.size() + outputSchema.size()];
+    for (int i = 0; i < orders.size(); i++) {
+      indexes[i] = columnIndexMap.get(orders.get(i).getName(true));
+    }
+    for (int i = 0; i < outputSchema.size(); i++) {
+      indexes[orders.size() + i] = columnIndexMap.get(outputSchema.get(i).getName(true));
+    }
+
     return new Comparator<T>() {
       @Override
       public int compare(T a, T b) {
@@ -228,8 +307,7 @@ public class HelperMethods {
           return -1;
         }
 
-        for (Column column : orders) {
-          int index = columnIndexMap.get(column.getName(true));
+        for (int index : indexes) {
           int compare = Integer.compare(t1.getElementAtIndex(index), t2.getElementAtIndex(index));
 
           // if the attributes are not equal, return the comparison result
@@ -237,18 +315,6 @@ public class HelperMethods {
             return compare;
           }
         }
-
-        // if the attributes are equal, traverse columnIndexMap to compare the next
-        // non-equal column
-        for (Column column : outputSchema) {
-          String key = column.getName(true);
-          if (t1.getElementAtIndex(columnIndexMap.get(key))
-              != t2.getElementAtIndex(columnIndexMap.get(key))) {
-            return Integer.compare(
-                t1.getElementAtIndex(columnIndexMap.get(key)),
-                t2.getElementAtIndex(columnIndexMap.get(key)));
-          }
-        }
         return 0;
       }
     };
@@ -264,7 +330,12 @@ public class HelperMethods {
     StringBuilder sb = new StringBuilder();
     for (int i = 0; i < list.size(); i++) {
       Column column = list.get(i);
-      sb.append(getAliasName(column) + "." + column.getColumnName());
+      // computed columns, like aggregates, have no table
+      if (column.getTable() == null) {
+        sb.append(column.getColumnName());
+      } else {
+        sb.append(getAliasName(column) + "." + column.getColumnName());
+      }
       if (i != list.size() - 1) {
         sb.append(", ");
       }
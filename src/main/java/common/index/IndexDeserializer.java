@@ -1,28 +1,30 @@
 package common.index;
 
-import common.pair.Pair;
+import common.tree.RidListCodec;
 import common.tuple.Tuple;
 import common.tuple.TupleReader;
 import compiler.DBCatalog;
 import io_handler.BinaryHandler;
+import io_handler.BufferPool;
 import java.io.File;
-import java.io.FileInputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 public class IndexDeserializer {
   private TupleReader tupleReader;
 
   private boolean isClustered;
   private boolean isLoaded = false;
-  private final int bufferCapacity;
   private final int attributeIndex;
-  private final int lowKey;
-  private final int highKey;
+  private int lowKey;
+  private int highKey;
 
   private File file;
-  private FileInputStream fileInputStream;
-  private FileChannel fileChannel;
+  private IndexNodeCache indexNodeCache;
+  // the leaf being read and the overflow page of its current entry, pinned in the buffer pool
+  private final BufferPool bufferPool;
+  private int leafFrameId = -1;
+  private int overflowFrameId = -1;
   private ByteBuffer byteBuffer;
 
   private int offset;
@@ -32,6 +34,25 @@ public class IndexDeserializer {
   private int ridCount;
   private int leafNodeNum;
 
+  // Version 2 leaves: the end of the current entry in bytes, and where its rids are
+  private int version;
+  private int firstOverflowPage;
+  private int entryEnd;
+  private int overflowPage;
+  private int overflowRidCount;
+  private ByteBuffer overflowBuffer;
+  private final RidListCodec ridListCodec = new RidListCodec();
+
+  // rids of the range packed as page << 32 | tuple, sorted by page, when fetching in rid order
+  private long[] ridChunk;
+  private int ridChunkSize;
+  private int ridChunkIndex;
+
+  // first rid of the range in a clustered index, -1 until it is read, and tuples per data page
+  private final File dataFile;
+  private long firstRid = -1;
+  private int tuplesPerPage;
+
   /**
    * IndexDeserializer constructor
    *
@@ -45,126 +66,82 @@ public class IndexDeserializer {
       String attributeName,
       boolean isClustered,
       int attributeIndex) {
+    this(lowKey, highKey, relationName, attributeName, isClustered, attributeIndex, false);
+  }
+
+  /**
+   * IndexDeserializer constructor
+   *
+   * @param lowKey low key of the range
+   * @param highKey high key of the range
+   * @param sortRids true to fetch the tuples of an unclustered index in rid order: the rids of the
+   *     range are collected a chunk at a time and sorted by page, so each data page of a chunk is
+   *     read once. The tuples are no longer in key order.
+   */
+  public IndexDeserializer(
+      int lowKey,
+      int highKey,
+      String relationName,
+      String attributeName,
+      boolean isClustered,
+      int attributeIndex,
+      boolean sortRids) {
     this.isClustered = isClustered;
+    if (sortRids && !isClustered) {
+      this.ridChunk = new long[getRidChunkCapacity()];
+    }
     this.tupleReader = new BinaryHandler(relationName);
+    this.dataFile = DBCatalog.getInstance().getFileForTable(relationName);
     this.file = DBCatalog.getInstance().getFileForIndex(relationName, attributeName);
-    this.bufferCapacity = DBCatalog.getInstance().getBufferCapacity();
-    this.byteBuffer = ByteBuffer.allocate(bufferCapacity);
+    this.bufferPool = BufferPool.getInstance();
     this.lowKey = lowKey;
     this.highKey = highKey;
     this.attributeIndex = attributeIndex;
-    loadNodeById(loadHeaderNode());
+    this.indexNodeCache = IndexNodeCache.getInstance(file);
+    this.leafNodeNum = indexNodeCache.getNumLeaves();
+    this.version = indexNodeCache.getVersion();
+    this.firstOverflowPage = indexNodeCache.getFirstOverflowPage();
+    loadNodeById(indexNodeCache.findLeaf(lowKey));
   }
 
-  public static int getNumLeaves(String relationName, String attributeName) {
-    try {
-      File file = DBCatalog.getInstance().getFileForIndex(relationName, attributeName);
-      FileInputStream fileInputStream = new FileInputStream(file);
-
-      FileChannel fileChannel = fileInputStream.getChannel();
-      fileChannel.position(0);
-
-      ByteBuffer byteBuffer = ByteBuffer.allocate(8);
-      byteBuffer.clear();
-      fileChannel.read(byteBuffer);
-      byteBuffer.flip();
-      int numLeaves = byteBuffer.asIntBuffer().get(1);
-
-      fileChannel.close();
-      fileInputStream.close();
-      return numLeaves;
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return -1;
+  /**
+   * The rids of a chunk fill the sort buffer, two integers per rid.
+   *
+   * @return number of rids sorted at a time when fetching in rid order
+   */
+  public static int getRidChunkCapacity() {
+    DBCatalog catalog = DBCatalog.getInstance();
+    return Math.max(1, catalog.getSortBufferPageNumber() * catalog.getBufferCapacity() / 8);
   }
 
   /**
-   * Load 3 integers in header node:
-   *
-   * <p>Address of the root
-   *
-   * <p>Number of leaf nodes
-   *
-   * <p>Tree order: number of keys in the node
+   * @param relationName name of the relation
+   * @param attributeName name of the indexed attribute
+   * @return number of leaves of the index, -1 if the index can not be read
    */
-  private int loadHeaderNode() {
-    try {
-      if (this.fileInputStream == null) {
-        this.fileInputStream = new FileInputStream(file);
-        this.fileChannel = fileInputStream.getChannel();
-      }
-      this.fileChannel.position(0);
-      this.byteBuffer.clear();
-      this.fileChannel.read(byteBuffer);
-      this.byteBuffer.flip();
-
-      this.leafNodeNum = this.byteBuffer.asIntBuffer().get(1);
-      return this.byteBuffer.asIntBuffer().get(0);
-      // this.treeOrder = this.byteBuffer.asIntBuffer().get(2);
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return -1;
+  public static int getNumLeaves(String relationName, String attributeName) {
+    File file = DBCatalog.getInstance().getFileForIndex(relationName, attributeName);
+    IndexNodeCache indexNodeCache = IndexNodeCache.getInstance(file);
+    return indexNodeCache == null ? -1 : indexNodeCache.getNumLeaves();
   }
 
   /**
-   * Load a new node from the index file
+   * Load a leaf from the index file. The index nodes above it are never read, the descent to the
+   * leaf runs on the IndexNodeCache.
    *
-   * <p>Flag to indicate if index or leaf node
+   * @param nodeId address of the leaf
    */
   private void loadNodeById(int nodeId) {
     try {
-      this.byteBuffer.clear();
-      this.fileChannel.position(nodeId * bufferCapacity);
-      this.fileChannel.read(byteBuffer);
-      this.byteBuffer.flip();
+      this.leafFrameId = repin(this.leafFrameId, file, nodeId);
+      this.byteBuffer = bufferPool.getPage(this.leafFrameId);
       this.nodeId = nodeId;
-      // isIndexNode-- 1: index node, 0: leaf node
-      if (this.byteBuffer.asIntBuffer().get(0) == 1) {
-        loadIndexNode();
-      } else {
-        loadLeafNode();
-      }
+      loadLeafNode();
     } catch (Exception e) {
       e.printStackTrace();
     }
   }
 
-  /**
-   * Load the index node:
-   *
-   * <p>Number of keys in the node
-   *
-   * <p>actual keys in the node, in order
-   *
-   * <p>Address of the child nodes
-   */
-  private void loadIndexNode() {
-    int numKeys = this.byteBuffer.asIntBuffer().get(1);
-
-    // find the key in the index node
-    int left = 2;
-    int right = 2 + numKeys;
-
-    while (left < right) {
-      int mid = left + (right - left) / 2;
-      int key = this.byteBuffer.asIntBuffer().get(mid);
-
-      // if lowKey is valid, find the leftmost key that is greater than or equal to
-      // lowKey
-      if (key <= this.lowKey) {
-        left = mid + 1;
-      } else {
-        right = mid;
-      }
-    }
-
-    // find the address of the child and load the child node
-    // left - 1 + numKeys + 1 = left + numKeys
-    loadNodeById(this.byteBuffer.asIntBuffer().get(left + numKeys));
-  }
-
   /**
    * Load the leaf node:
    *
@@ -178,42 +155,159 @@ public class IndexDeserializer {
     this.numKeys = this.byteBuffer.asIntBuffer().get(1);
     this.offset = 2;
     this.ridCount = 0;
+    // version 2 keys are deltas from 0 at the start of each leaf
+    this.entryKey = 0;
+    this.entryEnd = 8;
   }
 
-  /** After loaded the leaf node, load the next entry list from the leaf node */
+  /**
+   * After loaded the leaf node, load the next entry list from the leaf node. An entry below the low
+   * key is skipped and leaves ridCount at 0.
+   */
   private void loadNextEntry() {
-    while (this.numKeys > 0) {
-      this.entryKey = this.byteBuffer.asIntBuffer().get(offset++);
-      this.ridCount = this.byteBuffer.asIntBuffer().get(offset++);
-      this.numKeys--;
+    if (this.version >= 2) {
+      loadNextCompressedEntry();
+      return;
+    }
+    this.entryKey = this.byteBuffer.asIntBuffer().get(offset++);
+    this.ridCount = this.byteBuffer.asIntBuffer().get(offset++);
+    this.numKeys--;
 
-      if (this.entryKey >= lowKey) {
-        return;
-      }
+    if (this.entryKey < lowKey) {
       // go to next entry's offset
       this.offset += this.ridCount * 2;
+      this.ridCount = 0;
+    }
+  }
+
+  /**
+   * Load the next entry of a version 2 leaf. The rids of the entry are decoded as they are read, so
+   * skipping an entry or its rids only moves to the end of the entry.
+   */
+  private void loadNextCompressedEntry() {
+    this.byteBuffer.position(this.entryEnd);
+    this.entryKey += RidListCodec.unzigzag(RidListCodec.getVarInt(this.byteBuffer));
+    this.ridCount = RidListCodec.getVarInt(this.byteBuffer);
+    int location = RidListCodec.getVarInt(this.byteBuffer);
+    this.numKeys--;
+
+    this.ridListCodec.reset();
+    if (location % 2 == 1) {
+      this.overflowPage = this.firstOverflowPage + location / 2;
+      this.overflowRidCount = 0;
+      this.entryEnd = this.byteBuffer.position();
+    } else {
+      this.overflowPage = 0;
+      this.entryEnd = this.byteBuffer.position() + location / 2;
+    }
+    if (this.entryKey < lowKey) {
+      this.ridCount = 0;
+    }
+  }
+
+  /**
+   * Read the next rid of the current entry, from the leaf or from its overflow pages.
+   *
+   * @return the rid packed as page << 32 | tuple
+   */
+  private long readRid() {
+    if (this.version < 2) {
+      long pageIndex = this.byteBuffer.asIntBuffer().get(offset++);
+      long tupleIndex = this.byteBuffer.asIntBuffer().get(offset++);
+      return pageIndex << 32 | tupleIndex;
+    }
+    if (this.overflowPage == 0) {
+      return this.ridListCodec.get(this.byteBuffer);
     }
+
+    // the overflow pages of an entry are consecutive, each codes its rids from the start
+    if (this.overflowRidCount == 0) {
+      this.overflowFrameId = repin(this.overflowFrameId, file, this.overflowPage++);
+      this.overflowBuffer = bufferPool.getPage(this.overflowFrameId);
+      this.overflowRidCount = this.overflowBuffer.asIntBuffer().get(1);
+      this.overflowBuffer.position(8);
+      this.ridListCodec.reset();
+    }
+    this.overflowRidCount--;
+    return this.ridListCodec.get(this.overflowBuffer);
   }
 
+  /** Start over from the low key of the range. */
   public void reset() {
-    try {
-      // Reset the file position to the start of the file
-      fileChannel.position(0);
+    this.tupleReader.reset();
+    seek(lowKey, highKey);
+  }
 
-      // Clear the byteBuffer to make it ready for new data
-      this.byteBuffer.clear();
+  /**
+   * Go back to the i-th tuple of the range of a clustered index. The range is a run of the sorted
+   * data file, so the tuple is i tuples after the first rid of the range, and every data page but
+   * the last holds as many tuples as the first one.
+   *
+   * @param i index of the tuple in the range
+   */
+  public void reset(int i) {
+    if (this.firstRid == -1) {
+      reset();
+      if (!loadNextRid()) {
+        return;
+      }
+      this.ridCount--;
+      this.firstRid = readRid();
+    }
+    if (this.tuplesPerPage == 0) {
+      int frameId = repin(-1, dataFile, 0);
+      this.tuplesPerPage = bufferPool.getPage(frameId).asIntBuffer().get(1);
+      bufferPool.unpin(frameId);
+    }
+    this.isLoaded = true;
+    this.tupleReader.reset((int) (firstRid >>> 32) * tuplesPerPage + (int) firstRid + i);
+  }
 
-      // reset tuple reader
-      this.tupleReader.reset();
+  /**
+   * Search the tree again for a new range, so that a single deserializer can look up many keys
+   * without reopening the index. The nodes on the way are usually in the buffer pool already.
+   *
+   * @param lowKey low key of the new range
+   * @param highKey high key of the new range
+   */
+  public void seek(int lowKey, int highKey) {
+    this.lowKey = lowKey;
+    this.highKey = highKey;
+    this.isLoaded = false;
+    this.ridCount = 0;
+    this.ridChunkSize = 0;
+    this.ridChunkIndex = 0;
+    this.firstRid = -1;
+    loadNodeById(indexNodeCache.findLeaf(lowKey));
+  }
 
-      // Reset the offset
-      this.offset = 0;
+  /** Close the data file, and unpin the index pages. */
+  public void close() {
+    this.tupleReader.close();
+    this.leafFrameId = repin(this.leafFrameId, null, -1);
+    this.overflowFrameId = repin(this.overflowFrameId, null, -1);
+  }
 
-      // Load header node
-      loadNodeById(loadHeaderNode());
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+  /**
+   * Pin a page in the buffer pool in place of a page pinned before.
+   *
+   * @param frameId frame of the page pinned before, or -1 if none
+   * @param file file of the new page, or null to only unpin
+   * @param pageIndex index of the new page in the file
+   * @return frame of the new page, -1 if there is none
+   */
+  private int repin(int frameId, File file, int pageIndex) {
+    if (frameId != -1) {
+      bufferPool.unpin(frameId);
+    }
+    if (file == null) {
+      return -1;
     }
+    int newFrameId = bufferPool.pin(file, pageIndex);
+    if (newFrameId == -1) {
+      throw new IllegalStateException("Cannot read page " + pageIndex + " of " + file);
+    }
+    return newFrameId;
   }
 
   /**
@@ -222,25 +316,24 @@ public class IndexDeserializer {
    * @return the next tuple
    */
   public Tuple next() {
+    if (this.ridChunk != null) {
+      return nextInRidOrder();
+    }
+
     // For non-Clustered index, retrieve tuple from the data file
     // For Clustered index, scan the sorted data file sequentially
     if (!this.isClustered || !this.isLoaded) {
-      if (this.numKeys == 0 && this.ridCount == 0) {
-        if (this.nodeId == leafNodeNum) return null;
-        loadNodeById(this.nodeId + 1);
-      }
-      if (this.ridCount == 0) {
-        loadNextEntry();
+      if (!loadNextRid()) {
+        return null;
       }
       this.ridCount--;
+      long rid = readRid();
 
-      Pair<Integer, Integer> pair =
-          new Pair<>(
-              this.byteBuffer.asIntBuffer().get(offset++),
-              this.byteBuffer.asIntBuffer().get(offset++));
-
+      if (this.isClustered) {
+        this.firstRid = rid;
+      }
       this.isLoaded = true;
-      this.tupleReader.reset(pair.getLeft(), pair.getRight());
+      this.tupleReader.reset((int) (rid >>> 32), (int) rid);
     }
     Tuple tuple = this.tupleReader.readNextTuple();
 
@@ -251,6 +344,73 @@ public class IndexDeserializer {
     return tuple;
   }
 
+  /**
+   * Get the next tuple of the current chunk of sorted rids, collecting the next chunk when it is
+   * used up. Consecutive rids on the same page do not read the page again.
+   *
+   * @return the next tuple, or null at the end of the range
+   */
+  private Tuple nextInRidOrder() {
+    if (this.ridChunkIndex == this.ridChunkSize && !loadRidChunk()) {
+      return null;
+    }
+    long rid = this.ridChunk[this.ridChunkIndex++];
+    this.tupleReader.reset((int) (rid >>> 32), (int) rid);
+    return this.tupleReader.readNextTuple();
+  }
+
+  /**
+   * Collect the next chunk of rids in the range and sort it by page and tuple.
+   *
+   * @return true if the chunk has at least one rid, false at the end of the range
+   */
+  private boolean loadRidChunk() {
+    this.ridChunkSize = 0;
+    this.ridChunkIndex = 0;
+    while (this.ridChunkSize < this.ridChunk.length && loadNextRid()) {
+      this.ridCount--;
+      this.ridChunk[this.ridChunkSize++] = readRid();
+    }
+    Arrays.sort(this.ridChunk, 0, this.ridChunkSize);
+    return this.ridChunkSize > 0;
+  }
+
+  /**
+   * Get the key of the next data entry in the range from the leaves alone, without reading the data
+   * file. A key is returned once per tuple that has it.
+   *
+   * @return the next key, or null at the end of the range
+   */
+  public Integer nextKey() {
+    if (!loadNextRid()) {
+      return null;
+    }
+    this.ridCount--;
+    // version 2 moves to the end of the entry when the next one is loaded
+    this.offset += 2;
+    return this.entryKey;
+  }
+
+  /**
+   * Move to the next rid of the range, loading the next entry and the next leaf as needed.
+   *
+   * @return true if offset is at a rid of an entry within the range, false at the end of the range
+   */
+  private boolean loadNextRid() {
+    while (this.ridCount == 0) {
+      if (this.numKeys > 0) {
+        loadNextEntry();
+      } else if (this.nodeId == leafNodeNum) {
+        return false;
+      } else {
+        loadNodeById(this.nodeId + 1);
+      }
+    }
+
+    // The range ends before the first entry past the high key, skip reading its tuple
+    return this.entryKey <= highKey;
+  }
+
   /**
    * Get the attribute index
    *
@@ -40,4 +40,18 @@ public class IndexInfo {
   public Map<String, Pair<Boolean, Integer>> getAttributes() {
     return attributes;
   }
+
+  /**
+   * Get the attribute of the clustered index, whose key orders the data file
+   *
+   * @return name of the attribute, or null if no index is clustered
+   */
+  public String getClusteredAttribute() {
+    for (Map.Entry<String, Pair<Boolean, Integer>> entry : attributes.entrySet()) {
+      if (entry.getValue().getLeft()) {
+        return entry.getKey();
+      }
+    }
+    return null;
+  }
 }
@@ -0,0 +1,135 @@
+package common.index;
+
+import io_handler.BufferPool;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decoded header and index nodes of an index file, read once per process and shared by every
+ * IndexDeserializer of the index. The index nodes are written after the leaves and are few, so they
+ * are all decoded on first use: a descent from the root is then only binary searches in memory, and
+ * only the leaf is read from the file. The cache of a file must be invalidated when the file is
+ * written again.
+ */
+public class IndexNodeCache {
+  private static final Logger logger = LogManager.getLogger();
+  private static final Map<String, IndexNodeCache> caches = new HashMap<>();
+
+  private final int rootIndex;
+  private final int numLeaves;
+  private final int version;
+  private final int firstOverflowPage;
+  // keys and child addresses of the index nodes, indexed by address - numLeaves - 1
+  private final int[][] nodeKeys;
+  private final int[][] nodeChildren;
+
+  /**
+   * Read the header and decode every index node of the file.
+   *
+   * @param file index file
+   * @param header header page of the file
+   */
+  private IndexNodeCache(File file, ByteBuffer header) {
+    IntBuffer intBuffer = header.asIntBuffer();
+    this.rootIndex = intBuffer.get(0);
+    this.numLeaves = intBuffer.get(1);
+    this.version = intBuffer.get(3);
+    this.firstOverflowPage = intBuffer.get(4);
+
+    int numNodes = rootIndex - numLeaves;
+    this.nodeKeys = new int[numNodes][];
+    this.nodeChildren = new int[numNodes][];
+    BufferPool bufferPool = BufferPool.getInstance();
+    for (int i = 0; i < numNodes; i++) {
+      int frameId = bufferPool.pin(file, numLeaves + 1 + i);
+      intBuffer = bufferPool.getPage(frameId).asIntBuffer();
+      int numKeys = intBuffer.get(1);
+      nodeKeys[i] = new int[numKeys];
+      intBuffer.get(2, nodeKeys[i]);
+      nodeChildren[i] = new int[numKeys + 1];
+      intBuffer.get(2 + numKeys, nodeChildren[i]);
+      bufferPool.unpin(frameId);
+    }
+  }
+
+  /**
+   * Get the cache of an index file, decoding the file on first use.
+   *
+   * @param file index file
+   * @return the cache of the file, or null if the file cannot be read
+   */
+  public static synchronized IndexNodeCache getInstance(File file) {
+    String path = file.getAbsolutePath();
+    IndexNodeCache cache = caches.get(path);
+    if (cache == null) {
+      BufferPool bufferPool = BufferPool.getInstance();
+      int frameId = bufferPool.pin(file, 0);
+      if (frameId == -1) {
+        logger.error("Cannot read the index file " + path);
+        return null;
+      }
+      cache = new IndexNodeCache(file, bufferPool.getPage(frameId));
+      bufferPool.unpin(frameId);
+      caches.put(path, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Drop the cache of an index file. Must be called before the file is written again.
+   *
+   * @param file index file that changes
+   */
+  public static synchronized void invalidate(File file) {
+    caches.remove(file.getAbsolutePath());
+  }
+
+  /**
+   * Descend from the root to the leaf where the keys not below a key start. In each index node, the
+   * child taken is the one left of the first key greater than the key.
+   *
+   * @param key key to search
+   * @return address of the leaf
+   */
+  public int findLeaf(int key) {
+    int nodeId = rootIndex;
+    while (nodeId > numLeaves) {
+      int[] keys = nodeKeys[nodeId - numLeaves - 1];
+      int left = 0;
+      int right = keys.length;
+      while (left < right) {
+        int mid = left + (right - left) / 2;
+        if (keys[mid] <= key) {
+          left = mid + 1;
+        } else {
+          right = mid;
+        }
+      }
+      nodeId = nodeChildren[nodeId - numLeaves - 1][left];
+    }
+    return nodeId;
+  }
+
+  public int getNumLeaves() {
+    return numLeaves;
+  }
+
+  /**
+   * @return format version, 0 in version 1 files, whose header stops at the order
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return address of the first overflow page, version 2 only
+   */
+  public int getFirstOverflowPage() {
+    return firstOverflowPage;
+  }
+}
@@ -0,0 +1,92 @@
+package common.tree;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Leaf node of the compressed index format (version 2). The flag and the number of entries are ints
+ * as in LeafNode, then each entry is written as varints: the key as a zigzag delta from the
+ * previous key of the leaf, the number of rids, and where the rids are: 2 * their length in bytes
+ * if they follow inline, so a reader can skip them, or 2 * p + 1 if they start at the p-th overflow
+ * page. Inline rids are delta coded by RidListCodec. The leaf takes entries while they fit in the
+ * page.
+ */
+public class CompressedLeafNode extends TreeNode {
+  private final NodeType nodeType = NodeType.LEAF_NODE;
+  private final ByteBuffer entryBuffer;
+  private int lastKey;
+
+  /**
+   * CompressedLeafNode constructor
+   *
+   * @param pageSize size of a page in bytes
+   */
+  public CompressedLeafNode(int pageSize) {
+    // the flag and the number of entries come first
+    this.entryBuffer = ByteBuffer.allocate(pageSize - 8);
+  }
+
+  /**
+   * Add a data entry if it fits in the leaf.
+   *
+   * @param key key of the entry
+   * @param ridCount number of rids of the key
+   * @param overflowPage first of the overflow pages of the rids, counted from the first overflow
+   *     page of the index, or -1 if the rids are inline
+   * @param rids coded rids to copy from position to limit, if inline
+   * @return true if the entry was added, false if the leaf is full
+   */
+  public boolean addEntry(int key, int ridCount, int overflowPage, ByteBuffer rids) {
+    int keyCode = RidListCodec.zigzag(key - lastKey);
+    int location = overflowPage == -1 ? 2 * rids.remaining() : 2 * overflowPage + 1;
+    int size =
+        RidListCodec.sizeOf(keyCode)
+            + RidListCodec.sizeOf(ridCount)
+            + RidListCodec.sizeOf(location)
+            + (overflowPage == -1 ? rids.remaining() : 0);
+    if (entryBuffer.remaining() < size) {
+      return false;
+    }
+    RidListCodec.putVarInt(entryBuffer, keyCode);
+    RidListCodec.putVarInt(entryBuffer, ridCount);
+    RidListCodec.putVarInt(entryBuffer, location);
+    if (overflowPage == -1) {
+      entryBuffer.put(rids);
+    }
+    this.keys.add(key);
+    this.lastKey = key;
+    return true;
+  }
+
+  public boolean isEmpty() {
+    return keys.isEmpty();
+  }
+
+  @Override
+  public int getFirstKey() {
+    return keys.getFirst();
+  }
+
+  @Override
+  public List<Integer> getActualKeys() {
+    return this.keys;
+  }
+
+  /** dump to buffer */
+  @Override
+  public void serialize(ByteBuffer buffer) {
+    buffer.clear();
+
+    // the integer 0 as a flag to indicate this is a leaf node
+    buffer.asIntBuffer().put(0, this.nodeType.Value);
+
+    // the number of entries in the node
+    buffer.asIntBuffer().put(1, this.keys.size());
+
+    // the coded entries, then 0 for the rest of the page
+    buffer.put(8, entryBuffer, 0, entryBuffer.position());
+    for (int i = 8 + entryBuffer.position(); i < buffer.capacity(); i++) {
+      buffer.put(i, (byte) 0);
+    }
+  }
+}
@@ -6,12 +6,22 @@ import java.util.List;
 
 public class IndexNode extends TreeNode {
   private List<Integer> keys = new ArrayList<>();
-  private List<TreeNode> children = new ArrayList<>();
+  private List<Integer> childIndexes = new ArrayList<>();
   private final NodeType nodeType = NodeType.INDEX_NODE;
 
   public void setChild(TreeNode child) {
-    this.keys.add(child.getFirstKey());
-    this.children.add(child);
+    setChild(child.getFirstKey(), child.index);
+  }
+
+  /**
+   * Add a child by its first key and page, without holding the child node.
+   *
+   * @param firstKey first key of the child
+   * @param childIndex page of the child in the index file
+   */
+  public void setChild(int firstKey, int childIndex) {
+    this.keys.add(firstKey);
+    this.childIndexes.add(childIndex);
   }
 
   @Override
@@ -24,8 +34,8 @@ public class IndexNode extends TreeNode {
     return this.keys.subList(1, this.keys.size());
   }
 
-  public List<TreeNode> getChildren() {
-    return children;
+  public List<Integer> getChildIndexes() {
+    return childIndexes;
   }
 
   private int getActualKeySize() {
@@ -50,8 +60,8 @@ public class IndexNode extends TreeNode {
     }
 
     // the addresses of all the children of the node, in order
-    for (TreeNode child : getChildren()) {
-      buffer.asIntBuffer().put(offset++, child.index);
+    for (int childIndex : getChildIndexes()) {
+      buffer.asIntBuffer().put(offset++, childIndex);
     }
 
     // Fill the rest of the page with 0
@@ -0,0 +1,62 @@
+package common.tree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Overflow page of the compressed index format (version 2), holding part of a rid list too long to
+ * be inline in its leaf: the flag 2 and the number of rids as ints, then the rids coded by
+ * RidListCodec from the start of the page. The pages of a rid list are consecutive.
+ */
+public class OverflowPage {
+  private final TreeNode.NodeType nodeType = TreeNode.NodeType.OVERFLOW_NODE;
+  private final ByteBuffer ridBuffer;
+  private final RidListCodec codec = new RidListCodec();
+  private int ridCount;
+
+  /**
+   * OverflowPage constructor
+   *
+   * @param pageSize size of a page in bytes
+   */
+  public OverflowPage(int pageSize) {
+    // the flag and the number of rids come first
+    this.ridBuffer = ByteBuffer.allocate(pageSize - 8);
+  }
+
+  /**
+   * Add a rid if it fits in the page.
+   *
+   * @param pageIndex page of the rid
+   * @param tupleIndex tuple of the rid
+   * @return true if the rid was added, false if the page is full
+   */
+  public boolean put(int pageIndex, int tupleIndex) {
+    if (!codec.put(ridBuffer, pageIndex, tupleIndex)) {
+      return false;
+    }
+    ridCount++;
+    return true;
+  }
+
+  public boolean isEmpty() {
+    return ridCount == 0;
+  }
+
+  /** Empty the page for the next rids. */
+  public void clear() {
+    ridBuffer.clear();
+    codec.reset();
+    ridCount = 0;
+  }
+
+  /** dump to buffer */
+  public void serialize(ByteBuffer buffer) {
+    buffer.clear();
+    buffer.asIntBuffer().put(0, this.nodeType.Value);
+    buffer.asIntBuffer().put(1, this.ridCount);
+    buffer.put(8, ridBuffer, 0, ridBuffer.position());
+    for (int i = 8 + ridBuffer.position(); i < buffer.capacity(); i++) {
+      buffer.put(i, (byte) 0);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package common.tree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Varint and delta coding of the compressed index format. A rid list sorted by page then tuple is
+ * written as the page delta from the previous rid, then the tuple index, or its delta from the
+ * previous tuple when the page is the same. Small numbers take one byte instead of four.
+ */
+public class RidListCodec {
+  private int lastPage;
+  private int lastTuple;
+
+  public RidListCodec() {
+    reset();
+  }
+
+  /** Start a new rid list, the first rid is coded against page 0. */
+  public final void reset() {
+    this.lastPage = 0;
+    this.lastTuple = -1;
+  }
+
+  /**
+   * Write the next rid of the list.
+   *
+   * @param buffer buffer to write at its position
+   * @param pageIndex page of the rid, not below the page of the previous rid
+   * @param tupleIndex tuple of the rid, above the previous tuple if on the same page
+   * @return true if the rid was written, false if it does not fit in the buffer
+   */
+  public boolean put(ByteBuffer buffer, int pageIndex, int tupleIndex) {
+    int pageDelta = pageIndex - lastPage;
+    int tupleCode = pageDelta == 0 ? tupleIndex - lastTuple - 1 : tupleIndex;
+    if (buffer.remaining() < sizeOf(pageDelta) + sizeOf(tupleCode)) {
+      return false;
+    }
+    putVarInt(buffer, pageDelta);
+    putVarInt(buffer, tupleCode);
+    lastPage = pageIndex;
+    lastTuple = tupleIndex;
+    return true;
+  }
+
+  /**
+   * Read the next rid of the list.
+   *
+   * @param buffer buffer to read at its position
+   * @return the rid packed as page << 32 | tuple
+   */
+  public long get(ByteBuffer buffer) {
+    int pageDelta = getVarInt(buffer);
+    int tupleCode = getVarInt(buffer);
+    lastTuple = pageDelta == 0 ? lastTuple + 1 + tupleCode : tupleCode;
+    lastPage += pageDelta;
+    return (long) lastPage << 32 | lastTuple;
+  }
+
+  /**
+   * @param value value to write, read as unsigned
+   * @return number of bytes of the varint
+   */
+  public static int sizeOf(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Write a varint: 7 bits per byte, low bits first, the high bit set on every byte but the last.
+   *
+   * @param buffer buffer to write at its position
+   * @param value value to write, read as unsigned
+   */
+  public static void putVarInt(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  /**
+   * @param buffer buffer to read at its position
+   * @return the varint read
+   */
+  public static int getVarInt(ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  /**
+   * Map a signed value to an unsigned one with a small varint when it is close to 0: 0, -1, 1, -2
+   * become 0, 1, 2, 3.
+   *
+   * @param value signed value
+   * @return zigzag code of the value
+   */
+  public static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  /**
+   * @param code zigzag code
+   * @return the signed value of the code
+   */
+  public static int unzigzag(int code) {
+    return (code >>> 1) ^ -(code & 1);
+  }
+}
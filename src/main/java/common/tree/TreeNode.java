@@ -7,7 +7,8 @@ import java.util.List;
 public abstract class TreeNode {
   enum NodeType {
     LEAF_NODE(0),
-    INDEX_NODE(1);
+    INDEX_NODE(1),
+    OVERFLOW_NODE(2);
 
     public final int Value;
 
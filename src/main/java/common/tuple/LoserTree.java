@@ -0,0 +1,101 @@
+package common.tuple;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tournament tree of losers that merges sorted TupleReaders. Each internal node remembers the loser
+ * of the match played there, so replacing the winner replays only the path from its leaf to the
+ * root: log2(k) comparisons per tuple, with no boxing or allocation per tuple.
+ */
+public class LoserTree {
+  private final List<TupleReader> readers;
+  private final Comparator<Tuple> comparator;
+  private final Tuple[] heads;
+  // tree[0] is the overall winner, tree[1..k-1] are the losers of the internal nodes
+  private final int[] tree;
+  private final int k;
+
+  /**
+   * Build the tree from the first tuple of every reader.
+   *
+   * @param readers sorted inputs
+   * @param comparator order of the inputs
+   */
+  public LoserTree(List<TupleReader> readers, Comparator<Tuple> comparator) {
+    this.readers = readers;
+    this.comparator = comparator;
+    this.k = readers.size();
+    this.heads = new Tuple[k];
+    this.tree = new int[Math.max(k, 1)];
+
+    for (int i = 0; i < k; i++) {
+      heads[i] = readers.get(i).readNextTuple();
+    }
+
+    // Leaves are the nodes k..2k-1, play every match bottom up
+    int[] winners = new int[2 * k];
+    for (int i = 0; i < k; i++) {
+      winners[k + i] = i;
+    }
+    for (int node = k - 1; node >= 1; node--) {
+      int a = winners[2 * node];
+      int b = winners[2 * node + 1];
+      if (beats(a, b)) {
+        winners[node] = a;
+        tree[node] = b;
+      } else {
+        winners[node] = b;
+        tree[node] = a;
+      }
+    }
+    if (k > 0) {
+      tree[0] = winners[1];
+    }
+  }
+
+  /**
+   * Get the smallest tuple of all inputs and advance its input.
+   *
+   * @return the next tuple in order, or null if every input is exhausted
+   */
+  public Tuple next() {
+    if (k == 0) {
+      return null;
+    }
+    int winner = tree[0];
+    Tuple tuple = heads[winner];
+    if (tuple == null) {
+      return null;
+    }
+
+    heads[winner] = readers.get(winner).readNextTuple();
+    for (int node = (winner + k) / 2; node >= 1; node /= 2) {
+      if (beats(tree[node], winner)) {
+        int loser = winner;
+        winner = tree[node];
+        tree[node] = loser;
+      }
+    }
+    tree[0] = winner;
+    return tuple;
+  }
+
+  /**
+   * Whether input a wins against input b. An exhausted input loses, ties go to the lower index.
+   *
+   * @param a index of an input
+   * @param b index of another input
+   * @return true if the head of a comes first
+   */
+  private boolean beats(int a, int b) {
+    if (heads[a] == null) {
+      return false;
+    }
+    if (heads[b] == null) {
+      return true;
+    }
+    int compare = comparator.compare(heads[a], heads[b]);
+    return compare < 0 || (compare == 0 && a < b);
+  }
+}
@@ -1,12 +1,14 @@
 package common.tuple;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * Class to encapsulate functionality about a database tuple. A tuple is an ArrayList of integers.
+ * Class to encapsulate functionality about a database tuple. A tuple is an immutable array of
+ * primitive integers, so reading, concatenating and comparing tuples never boxes a value.
  */
 public class Tuple {
-  ArrayList<Integer> tupleArray;
+  private final int[] tupleArray;
 
   /**
    * Creates a tuple using string representation of the tuple. Delimiter between the columns is a
@@ -15,9 +17,10 @@ public class Tuple {
    * @param s String representation of the tuple.
    */
   public Tuple(String s) {
-    tupleArray = new ArrayList<Integer>();
-    for (String attribute : s.split(",")) {
-      tupleArray.add(Integer.parseInt(attribute));
+    String[] attributes = s.split(",");
+    tupleArray = new int[attributes.length];
+    for (int i = 0; i < attributes.length; i++) {
+      tupleArray[i] = Integer.parseInt(attributes[i]);
     }
   }
 
@@ -27,20 +30,20 @@ public class Tuple {
    * @param elements ArrayList with elements of the tuple, in order
    */
   public Tuple(ArrayList<Integer> elements) {
-    tupleArray = new ArrayList<Integer>();
-    tupleArray.addAll(elements);
+    tupleArray = new int[elements.size()];
+    for (int i = 0; i < elements.size(); i++) {
+      tupleArray[i] = elements.get(i);
+    }
   }
 
   /**
-   * Creates a tuple using an array of integers.
+   * Creates a tuple using an array of integers. The array is not copied: the tuple takes ownership
+   * of it, so the caller must not modify it afterwards.
    *
    * @param elements Array with elements of the tuple, in order
    */
   public Tuple(int[] elements) {
-    this.tupleArray = new ArrayList<Integer>();
-    for (int element : elements) {
-      tupleArray.add(element);
-    }
+    this.tupleArray = elements;
   }
 
   /**
@@ -50,7 +53,7 @@ public class Tuple {
    * @return Element at index i in the tuple.
    */
   public int getElementAtIndex(int i) {
-    return tupleArray.get(i);
+    return tupleArray[i];
   }
 
   /**
@@ -59,7 +62,11 @@ public class Tuple {
    * @return ArrayList containing the elements in the tuple.
    */
   public ArrayList<Integer> getAllElements() {
-    return new ArrayList<Integer>(tupleArray);
+    ArrayList<Integer> elements = new ArrayList<>(tupleArray.length);
+    for (int element : tupleArray) {
+      elements.add(element);
+    }
+    return elements;
   }
 
   /**
@@ -68,11 +75,17 @@ public class Tuple {
    * @return Array containing the elements in the tuple.
    */
   public int[] getAllElementsAsArray() {
-    int[] elements = new int[tupleArray.size()];
-    for (int i = 0; i < tupleArray.size(); i++) {
-      elements[i] = tupleArray.get(i);
-    }
-    return elements;
+    return tupleArray.clone();
+  }
+
+  /**
+   * Copies the elements of the tuple into dest starting at destPos, without allocating.
+   *
+   * @param dest destination array
+   * @param destPos first index of dest to write to
+   */
+  public void copyTo(int[] dest, int destPos) {
+    System.arraycopy(tupleArray, 0, dest, destPos, tupleArray.length);
   }
 
   /**
@@ -83,16 +96,28 @@ public class Tuple {
   @Override
   public String toString() {
     StringBuilder stringRepresentation = new StringBuilder();
-    for (int i = 0; i < tupleArray.size() - 1; i++) {
-      stringRepresentation.append(tupleArray.get(i)).append(",");
+    for (int i = 0; i < tupleArray.length - 1; i++) {
+      stringRepresentation.append(tupleArray[i]).append(",");
     }
-    stringRepresentation.append(tupleArray.get(tupleArray.size() - 1));
+    stringRepresentation.append(tupleArray[tupleArray.length - 1]);
     return stringRepresentation.toString();
   }
 
+  /**
+   * Hash the column values directly, so hashing a tuple allocates nothing. Each value is mixed into
+   * all the bits of the hash: a polynomial hash like Arrays.hashCode maps tuples of small values to
+   * a few thousand codes, and hashed sets of them degrade to long chains.
+   *
+   * @return hash code of the tuple's values
+   */
   @Override
   public int hashCode() {
-    return this.toString().hashCode();
+    int hash = 0;
+    for (int value : tupleArray) {
+      hash = (hash ^ value) * 0x9E3779B9;
+      hash ^= hash >>> 16;
+    }
+    return hash;
   }
 
   /**
@@ -101,13 +126,14 @@ public class Tuple {
    */
   @Override
   public boolean equals(Object obj) {
-
-    Tuple temp = (Tuple) obj;
-    if (temp == null) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof Tuple)) {
       return false;
     }
 
-    return temp.toString().equals(this.toString());
+    return Arrays.equals(tupleArray, ((Tuple) obj).tupleArray);
   }
 
   /**
@@ -118,14 +144,29 @@ public class Tuple {
    * @return Return a new concatenated tuple.
    */
   public Tuple concat(Tuple tuple) {
-    ArrayList<Integer> tupleArray = new ArrayList<>();
-    tupleArray.addAll(this.getAllElements());
-    tupleArray.addAll(tuple.getAllElements());
+    int[] elements = new int[this.tupleArray.length + tuple.tupleArray.length];
+    System.arraycopy(this.tupleArray, 0, elements, 0, this.tupleArray.length);
+    System.arraycopy(
+        tuple.tupleArray, 0, elements, this.tupleArray.length, tuple.tupleArray.length);
 
-    return new Tuple(tupleArray);
+    return new Tuple(elements);
+  }
+
+  /**
+   * Build a new tuple from the elements at the given indexes, in order.
+   *
+   * @param indexes indexes of the elements to keep
+   * @return Return a new projected tuple.
+   */
+  public Tuple project(int[] indexes) {
+    int[] elements = new int[indexes.length];
+    for (int i = 0; i < indexes.length; i++) {
+      elements[i] = tupleArray[indexes[i]];
+    }
+    return new Tuple(elements);
   }
 
   public int getSize() {
-    return tupleArray.size();
+    return tupleArray.length;
   }
 }
@@ -0,0 +1,135 @@
+package common.tuple;
+
+/**
+ * Class to encapsulate a batch of tuples in columnar form. Each column is a primitive int array, so
+ * operators can process a whole batch per call instead of one Tuple object per call.
+ */
+public class TupleBatch {
+  private final int[][] columns;
+  private final int capacity;
+  private int size;
+
+  /**
+   * Creates an empty batch.
+   *
+   * @param columnNum number of columns of every row in the batch
+   * @param capacity maximum number of rows in the batch
+   */
+  public TupleBatch(int columnNum, int capacity) {
+    this.columns = new int[columnNum][capacity];
+    this.capacity = capacity;
+    this.size = 0;
+  }
+
+  /**
+   * Creates a batch over existing column vectors. The arrays are not copied: the batch takes
+   * ownership of them, so the caller must not modify them afterwards.
+   *
+   * @param columns column vectors, all of the same length
+   * @param size number of valid rows in the column vectors
+   */
+  public TupleBatch(int[][] columns, int size) {
+    this.columns = columns;
+    this.capacity = columns.length == 0 ? size : columns[0].length;
+    this.size = size;
+  }
+
+  /**
+   * Get the number of rows in the batch.
+   *
+   * @return number of rows
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Get the number of columns of every row in the batch.
+   *
+   * @return number of columns
+   */
+  public int getColumnNum() {
+    return columns.length;
+  }
+
+  /**
+   * @return true if no more rows can be appended
+   */
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Get the column vector at index i. Only the first getSize() values are valid.
+   *
+   * @param i index of the column
+   * @return column vector
+   */
+  public int[] getColumn(int i) {
+    return columns[i];
+  }
+
+  /**
+   * Get a single value of the batch.
+   *
+   * @param column index of the column
+   * @param row index of the row
+   * @return value at (row, column)
+   */
+  public int getValue(int column, int row) {
+    return columns[column][row];
+  }
+
+  /**
+   * Build the tuple of one row of the batch.
+   *
+   * @param row index of the row
+   * @return a new tuple holding the row
+   */
+  public Tuple getTuple(int row) {
+    int[] elements = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      elements[i] = columns[i][row];
+    }
+    return new Tuple(elements);
+  }
+
+  /**
+   * Append a tuple as the last row of the batch.
+   *
+   * @param tuple tuple to append, must have getColumnNum() elements
+   */
+  public void append(Tuple tuple) {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i][size] = tuple.getElementAtIndex(i);
+    }
+    size++;
+  }
+
+  /**
+   * Append one row of another batch with the same columns.
+   *
+   * @param batch batch to copy the row from
+   * @param row index of the row in batch
+   */
+  public void appendRow(TupleBatch batch, int row) {
+    for (int i = 0; i < columns.length; i++) {
+      columns[i][size] = batch.columns[i][row];
+    }
+    size++;
+  }
+
+  /**
+   * Build a batch that shares the given columns of this batch, in order. No values are copied.
+   *
+   * @param indexes indexes of the columns to keep
+   * @return a new batch over the projected column vectors
+   */
+  public TupleBatch project(int[] indexes) {
+    int[][] projected = new int[indexes.length][];
+    for (int i = 0; i < indexes.length; i++) {
+      projected[i] = columns[indexes[i]];
+    }
+    return new TupleBatch(projected, size);
+  }
+}
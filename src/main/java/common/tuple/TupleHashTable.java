@@ -0,0 +1,148 @@
+package common.tuple;
+
+import java.util.Arrays;
+
+/**
+ * Hash table of tuples keyed by one int column. Entries are chained through primitive arrays
+ * instead of boxed map entries, so inserting and probing allocate nothing per tuple.
+ *
+ * <p>Entries with the same key are walked with: {@code for (int e = table.first(key); e != -1; e =
+ * table.next(e, key))}.
+ */
+public class TupleHashTable {
+  private int[] buckets;
+  private int[] keys;
+  private int[] nextEntries;
+  private Tuple[] tuples;
+  private int size;
+  private final int seed;
+
+  /**
+   * Creates an empty table.
+   *
+   * @param expectedSize expected number of tuples, used to size the buckets
+   */
+  public TupleHashTable(int expectedSize) {
+    this(expectedSize, 0);
+  }
+
+  /**
+   * Creates an empty table whose hash function is mixed with a seed, so that tables built over the
+   * same keys with different seeds spread them differently.
+   *
+   * @param expectedSize expected number of tuples, used to size the buckets
+   * @param seed seed of the hash function
+   */
+  public TupleHashTable(int expectedSize, int seed) {
+    int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+    this.buckets = new int[capacity];
+    Arrays.fill(buckets, -1);
+    this.keys = new int[capacity];
+    this.nextEntries = new int[capacity];
+    this.tuples = new Tuple[capacity];
+    this.size = 0;
+    this.seed = seed;
+  }
+
+  /**
+   * Hash a key into 32 well mixed bits.
+   *
+   * @param key key to hash
+   * @param seed seed of the hash function
+   * @return hash of the key
+   */
+  public static int hash(int key, int seed) {
+    int h = (key ^ seed) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Insert a tuple.
+   *
+   * @param key join key of the tuple
+   * @param tuple tuple to insert
+   */
+  public void put(int key, Tuple tuple) {
+    if (size == tuples.length) {
+      grow();
+    }
+    int bucket = hash(key, seed) & (buckets.length - 1);
+    keys[size] = key;
+    tuples[size] = tuple;
+    nextEntries[size] = buckets[bucket];
+    buckets[bucket] = size;
+    size++;
+  }
+
+  /**
+   * Find the first entry with the given key.
+   *
+   * @param key key to look up
+   * @return index of the entry, or -1 if there is none
+   */
+  public int first(int key) {
+    return skip(buckets[hash(key, seed) & (buckets.length - 1)], key);
+  }
+
+  /**
+   * Find the next entry with the same key.
+   *
+   * @param entry current entry returned by first() or next()
+   * @param key key to look up
+   * @return index of the next entry, or -1 if there is none
+   */
+  public int next(int entry, int key) {
+    return skip(nextEntries[entry], key);
+  }
+
+  /**
+   * @param entry index of the entry
+   * @return tuple stored in the entry
+   */
+  public Tuple getTuple(int entry) {
+    return tuples[entry];
+  }
+
+  /**
+   * @return number of tuples in the table
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /** Remove every tuple, keeping the allocated arrays. */
+  public void clear() {
+    Arrays.fill(buckets, -1);
+    Arrays.fill(tuples, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Follow a bucket chain until an entry with the key.
+   *
+   * @param entry first entry of the chain to check
+   * @param key key to look up
+   * @return index of the entry, or -1 if there is none
+   */
+  private int skip(int entry, int key) {
+    while (entry != -1 && keys[entry] != key) {
+      entry = nextEntries[entry];
+    }
+    return entry;
+  }
+
+  /** Double the entries and the buckets, then rehash the chains. */
+  private void grow() {
+    int capacity = tuples.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    nextEntries = Arrays.copyOf(nextEntries, capacity);
+    tuples = Arrays.copyOf(tuples, capacity);
+    buckets = new int[capacity];
+    Arrays.fill(buckets, -1);
+    for (int i = 0; i < size; i++) {
+      int bucket = hash(keys[i], seed) & (capacity - 1);
+      nextEntries[i] = buckets[bucket];
+      buckets[bucket] = i;
+    }
+  }
+}
@@ -8,6 +8,26 @@ public interface TupleReader {
 
   public Tuple readNextTuple();
 
+  /**
+   * Read up to maxSize tuples into a columnar batch. Readers that can decode pages directly into
+   * column vectors should override this; the default reads one tuple at a time.
+   *
+   * @param maxSize maximum number of tuples in the batch
+   * @return the batch, or null if there are no more tuples
+   */
+  public default TupleBatch readNextBatch(int maxSize) {
+    Tuple tuple = readNextTuple();
+    if (tuple == null) {
+      return null;
+    }
+    TupleBatch batch = new TupleBatch(tuple.getSize(), maxSize);
+    batch.append(tuple);
+    while (!batch.isFull() && (tuple = readNextTuple()) != null) {
+      batch.append(tuple);
+    }
+    return batch;
+  }
+
   public Pair<Tuple, Pair<Integer, Integer>> readNextTupleAndRid();
 
   public ArrayList<Tuple> readAllTuples();
@@ -5,6 +5,18 @@ public interface TupleWriter {
 
   public void writeNextTuple(Tuple tuple);
 
+  /**
+   * Write every row of a columnar batch. Writers that can encode column vectors directly should
+   * override this; the default writes one tuple at a time.
+   *
+   * @param batch batch to write
+   */
+  public default void writeNextBatch(TupleBatch batch) {
+    for (int i = 0; i < batch.getSize(); i++) {
+      writeNextTuple(batch.getTuple(i));
+    }
+  }
+
   public void close();
 
   public void reset();
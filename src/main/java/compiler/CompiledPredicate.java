@@ -0,0 +1,28 @@
+package compiler;
+
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+
+/**
+ * A WHERE expression compiled by PredicateCompiler. Column indexes are resolved at compile time, so
+ * testing a row neither allocates nor looks up column names.
+ */
+public interface CompiledPredicate {
+
+  /**
+   * Evaluate the predicate on a tuple.
+   *
+   * @param tuple tuple to test
+   * @return true if the tuple satisfies the predicate
+   */
+  boolean test(Tuple tuple);
+
+  /**
+   * Evaluate the predicate on one row of a batch.
+   *
+   * @param batch batch holding the row
+   * @param row index of the row in the batch
+   * @return true if the row satisfies the predicate
+   */
+  boolean test(TupleBatch batch, int row);
+}
@@ -4,15 +4,13 @@ import builder.IndexBuilder;
 import builder.QueryPlanBuilder;
 import builder.StatsBuilder;
 import common.index.IndexInfo;
+import common.index.IndexNodeCache;
 import common.pair.Pair;
-import common.tree.TreeNode;
 import io_handler.BinaryHandler;
+import io_handler.BufferPool;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -24,6 +22,7 @@ import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.Statements;
 import org.apache.logging.log4j.*;
+import physical_operator.ExternalSortOperator;
 import physical_operator.Operator;
 
 /**
@@ -68,22 +67,31 @@ public class Compiler {
             physicalPlanWriter.write(physicalPlanTree.toString());
           }
 
-          if (outputToFiles) {
-            File outfile = new File(outputDir + "/query" + counter);
-            outfile.createNewFile();
-            long time;
-            System.out.println(time = System.currentTimeMillis());
-            // System.out.println(System.currentTimeMillis());
-            plan.dump(new BinaryHandler(outfile));
-            // System.out.println(System.currentTimeMillis());
-            System.out.println(time - System.currentTimeMillis());
-          } else {
-            plan.dump(System.out);
+          plan.open();
+          try {
+            if (outputToFiles) {
+              File outfile = new File(outputDir + "/query" + counter);
+              outfile.createNewFile();
+              long start = System.currentTimeMillis();
+              plan.dump(new BinaryHandler(outfile));
+              logger.info(
+                  "Query " + counter + " ran in " + (System.currentTimeMillis() - start) + " ms");
+            } else {
+              plan.dump(System.out);
+            }
+          } finally {
+            plan.close();
           }
         } catch (Exception e) {
           logger.error(e.getMessage());
         }
-        System.out.println("------------------------");
+        BufferPool bufferPool = BufferPool.getInstance();
+        logger.info(
+            "Buffer pool hits: "
+                + bufferPool.getHitCount()
+                + ", misses: "
+                + bufferPool.getMissCount());
+        bufferPool.resetCounters();
         ++counter;
       }
     } catch (Exception e) {
@@ -95,44 +103,33 @@ public class Compiler {
     }
   }
 
+  /**
+   * Build the indexes whose relation file or parameters changed since they were last built. The
+   * clustered index of a relation is built first: sorting the relation file moves the rids the
+   * other indexes point to, and changes the file they are fingerprinted against.
+   */
   private static void buildIndex() {
     for (IndexInfo indexInfo : DBCatalog.getInstance().getAllIndexInfo()) {
-      for (Entry<String, Pair<Boolean, Integer>> attributeInfo : indexInfo.attributes.entrySet()) {
+      List<Entry<String, Pair<Boolean, Integer>>> attributeInfos =
+          new ArrayList<>(indexInfo.attributes.entrySet());
+      attributeInfos.sort(
+          (a, b) -> Boolean.compare(b.getValue().getLeft(), a.getValue().getLeft()));
+      for (Entry<String, Pair<Boolean, Integer>> attributeInfo : attributeInfos) {
         String attributeName = attributeInfo.getKey();
         boolean isClustered = attributeInfo.getValue().getLeft();
         int order = attributeInfo.getValue().getRight();
 
         IndexBuilder ib =
             new IndexBuilder(indexInfo.relationName, attributeName, isClustered, order);
-        List<TreeNode> nodes = ib.build();
-        try {
-          // Initialize file and file channel
-          File indexFile =
-              new File(inputDir + "/db/indexes/" + indexInfo.relationName + "." + attributeName);
-          indexFile.createNewFile();
-          FileOutputStream fileOutputStream = new FileOutputStream(indexFile);
-          FileChannel fileChannel = fileOutputStream.getChannel();
-          ByteBuffer byteBuffer = ByteBuffer.allocate(DBCatalog.getInstance().getBufferCapacity());
-
-          // write header
-          ib.writeHeader(byteBuffer);
-          fileChannel.write(byteBuffer);
-
-          // write nodes
-          for (TreeNode node : nodes) {
-            node.serialize(byteBuffer);
-            fileChannel.write(byteBuffer);
-          }
-
-          fileChannel.close();
-          fileOutputStream.close();
-        } catch (Exception e) {
-          for (StackTraceElement ste : e.getStackTrace()) {
-            System.out.println(ste + "\n");
-          }
-          System.err.println("Exception occurred in interpreter" + e.getCause());
-          logger.error(e.getMessage());
+        File indexFile =
+            new File(inputDir + "/db/indexes/" + indexInfo.relationName + "." + attributeName);
+        if (ib.isUpToDate(indexFile)) {
+          logger.info("Index " + indexFile.getName() + " is up to date");
+          continue;
         }
+        BufferPool.getInstance().invalidate(indexFile);
+        IndexNodeCache.invalidate(indexFile);
+        ib.build(indexFile);
       }
     }
   }
@@ -176,5 +173,6 @@ public class Compiler {
     if (DBCatalog.getInstance().getIsEvaluateSQL()) {
       evaluateSQL();
     }
+    ExternalSortOperator.shutdownSortExecutor();
   }
 }
@@ -27,7 +27,11 @@ public class DBCatalog {
   private final Logger logger = LogManager.getLogger();
   private final HashMap<String, ArrayList<Column>> tables;
   private static DBCatalog db;
+  private static final int DEFAULT_BUFFER_POOL_FRAME_NUMBER = 1024;
+  private static final int DEFAULT_SORT_THREAD_NUMBER = 1;
+  private static final int DEFAULT_INDEX_FORMAT_VERSION = 1;
   private final int bufferCapacity = 4096;
+  private final int batchSize = 1024;
 
   // For Interpreter Config
   private String inputDir;
@@ -35,6 +39,9 @@ public class DBCatalog {
   private String outputDir;
   private boolean isBuildIndex = true;
   private boolean isEvaluateSQL = true;
+  private int bufferPoolFrameNumber = DEFAULT_BUFFER_POOL_FRAME_NUMBER;
+  private int sortThreadNumber = DEFAULT_SORT_THREAD_NUMBER;
+  private int indexFormatVersion = DEFAULT_INDEX_FORMAT_VERSION;
 
   // For Plan Builder Config
   private String joinMethod;
@@ -68,11 +75,18 @@ public class DBCatalog {
 
   /**
    * Read the configuration file and parse input directory, output directory, temporary directory,
-   * isBuildIndex, and isEvaluateSQL.
+   * isBuildIndex, isEvaluateSQL, the number of buffer pool frames, the number of sort threads and
+   * the format version of the indexes to build. The lines after the third are optional, a missing
+   * line keeps its default.
    *
    * @param directory
    */
   public void setInterpreterConfig(String directory) {
+    isBuildIndex = true;
+    isEvaluateSQL = true;
+    bufferPoolFrameNumber = DEFAULT_BUFFER_POOL_FRAME_NUMBER;
+    sortThreadNumber = DEFAULT_SORT_THREAD_NUMBER;
+    indexFormatVersion = DEFAULT_INDEX_FORMAT_VERSION;
     try {
       BufferedReader br = new BufferedReader(new FileReader(directory));
       String line;
@@ -85,6 +99,8 @@ public class DBCatalog {
             setDataDirectory(inputDir + "/db/schema.txt");
             //            setPlanBuilderConfig(inputDir + "/plan_builder_config.txt");
             setIndexDirectory(inputDir + "/db/index_info.txt");
+            // stats are read again from the new database on first use
+            statsInfoMap = null;
             break;
           case 1:
             outputDir = tokens[0];
@@ -92,12 +108,21 @@ public class DBCatalog {
           case 2:
             tempDir = tokens[0];
             break;
-            //          case 3:
-            //            isBuildIndex = tokens[0].equals("1");
-            //            break;
-            //          case 4:
-            //            isEvaluateSQL = tokens[0].equals("1");
-            //            break;
+          case 3:
+            isBuildIndex = tokens[0].equals("1");
+            break;
+          case 4:
+            isEvaluateSQL = tokens[0].equals("1");
+            break;
+          case 5:
+            bufferPoolFrameNumber = Integer.parseInt(tokens[0]);
+            break;
+          case 6:
+            sortThreadNumber = Integer.parseInt(tokens[0]);
+            break;
+          case 7:
+            indexFormatVersion = Integer.parseInt(tokens[0]);
+            break;
         }
         index++;
       }
@@ -352,10 +377,53 @@ public class DBCatalog {
     //    return this.sortBufferPageNumber;
   }
 
+  /**
+   * Get the number of threads that sort and write runs in parallel during an external sort, from
+   * the seventh line of the interpreter config. Each thread holds a block of B sort buffer pages,
+   * so a sort uses up to this many times B pages. 1, the default, generates the runs on the calling
+   * thread.
+   *
+   * @return number of sort threads
+   */
+  public int getSortThreadNumber() {
+    return this.sortThreadNumber;
+  }
+
   public int getBufferCapacity() {
     return this.bufferCapacity;
   }
 
+  /**
+   * Get the maximum number of tuples in a batch for batch execution.
+   *
+   * @return batch size
+   */
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  /**
+   * Get the number of pages the shared buffer pool can hold, from the sixth line of the interpreter
+   * config file. Defaults to 1024.
+   *
+   * @return number of buffer pool frames
+   */
+  public int getBufferPoolFrameNumber() {
+    return this.bufferPoolFrameNumber;
+  }
+
+  /**
+   * Get the format of the index files to build, from the eighth line of the interpreter config: 1
+   * writes every key and rid as an int, 2 compresses the leaves and moves long rid lists to
+   * overflow pages. Both formats can be read. Version 1 is the default, it is the format of the
+   * original index files.
+   *
+   * @return index file format version
+   */
+  public int getIndexFormatVersion() {
+    return this.indexFormatVersion;
+  }
+
   /**
    * Get use index from plan_builder_config.txt.
    *
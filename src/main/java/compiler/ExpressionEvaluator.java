@@ -1,6 +1,7 @@
 package compiler;
 
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
 import java.util.Map;
 import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
 import net.sf.jsqlparser.expression.LongValue;
@@ -18,6 +19,8 @@ import net.sf.jsqlparser.schema.Column;
 /** Expression evaluator that evaluates the comparison and return a boolean result. */
 public class ExpressionEvaluator extends ExpressionVisitorAdapter {
   private Tuple tuple;
+  private TupleBatch batch;
+  private int row;
   private Map<String, Integer> columnIndexMap;
   private boolean result;
   private int value;
@@ -33,6 +36,19 @@ public class ExpressionEvaluator extends ExpressionVisitorAdapter {
     this.columnIndexMap = columnIndexMap;
   }
 
+  /**
+   * constructor of ExpressionEvaluator for one row of a batch
+   *
+   * @param batch current batch
+   * @param row index of the current row in the batch
+   * @param columnIndexMap columnIndexMap that use column names for keys and column index for values
+   */
+  public ExpressionEvaluator(TupleBatch batch, int row, Map<String, Integer> columnIndexMap) {
+    this.batch = batch;
+    this.row = row;
+    this.columnIndexMap = columnIndexMap;
+  }
+
   public ExpressionEvaluator() {}
 
   /**
@@ -62,7 +78,7 @@ public class ExpressionEvaluator extends ExpressionVisitorAdapter {
   @Override
   public void visit(Column column) {
     int index = columnIndexMap.get(column.getName(true));
-    value = tuple.getElementAtIndex(index);
+    value = tuple != null ? tuple.getElementAtIndex(index) : batch.getValue(index, row);
   }
 
   /**
@@ -0,0 +1,280 @@
+package compiler;
+
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import java.util.Map;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.conditional.XorExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Compiles a WHERE expression into a tree of CompiledPredicate nodes. The expression is visited
+ * once: column names are resolved to indexes and every comparison becomes a node specialized for
+ * its operand kinds, so evaluating a row is a few array reads and integer comparisons.
+ */
+public class PredicateCompiler extends ExpressionVisitorAdapter {
+  private final Map<String, Integer> columnIndexMap;
+  private CompiledPredicate result;
+
+  /**
+   * @param columnIndexMap columnIndexMap that use column names for keys and column index for values
+   */
+  private PredicateCompiler(Map<String, Integer> columnIndexMap) {
+    this.columnIndexMap = columnIndexMap;
+  }
+
+  /**
+   * Compile an expression against a schema.
+   *
+   * @param expression WHERE expression
+   * @param columnIndexMap columnIndexMap that use column names for keys and column index for values
+   * @return the compiled predicate
+   */
+  public static CompiledPredicate compile(
+      Expression expression, Map<String, Integer> columnIndexMap) {
+    PredicateCompiler compiler = new PredicateCompiler(columnIndexMap);
+    return compiler.compile(expression);
+  }
+
+  /**
+   * Compile a nested expression. Expressions without a specialized node fall back to
+   * ExpressionEvaluator.
+   *
+   * @param expression expression to compile
+   * @return the compiled predicate
+   */
+  private CompiledPredicate compile(Expression expression) {
+    result = null;
+    expression.accept(this);
+    if (result == null) {
+      return new InterpretedPredicate(expression, columnIndexMap);
+    }
+    return result;
+  }
+
+  @Override
+  public void visit(AndExpression andExpression) {
+    CompiledPredicate left = compile(andExpression.getLeftExpression());
+    CompiledPredicate right = compile(andExpression.getRightExpression());
+    result = new AndPredicate(left, right);
+  }
+
+  @Override
+  public void visit(OrExpression orExpression) {
+    CompiledPredicate left = compile(orExpression.getLeftExpression());
+    CompiledPredicate right = compile(orExpression.getRightExpression());
+    result = new OrPredicate(left, right);
+  }
+
+  @Override
+  public void visit(XorExpression xorExpression) {
+    CompiledPredicate left = compile(xorExpression.getLeftExpression());
+    CompiledPredicate right = compile(xorExpression.getRightExpression());
+    result = new XorPredicate(left, right);
+  }
+
+  @Override
+  public void visit(EqualsTo equalsTo) {
+    visitComparison(equalsTo, Comparison.EQ);
+  }
+
+  @Override
+  public void visit(NotEqualsTo notEqualsTo) {
+    visitComparison(notEqualsTo, Comparison.NE);
+  }
+
+  @Override
+  public void visit(GreaterThan greaterThan) {
+    visitComparison(greaterThan, Comparison.GT);
+  }
+
+  @Override
+  public void visit(GreaterThanEquals greaterThanEquals) {
+    visitComparison(greaterThanEquals, Comparison.GE);
+  }
+
+  @Override
+  public void visit(MinorThan minorThan) {
+    visitComparison(minorThan, Comparison.LT);
+  }
+
+  @Override
+  public void visit(MinorThanEquals minorThanEquals) {
+    visitComparison(minorThanEquals, Comparison.LE);
+  }
+
+  /**
+   * Build the node for a comparison. A constant on the left is moved to the right by flipping the
+   * comparison, so column-constant comparisons need a single node type.
+   *
+   * @param comparison comparison expression
+   * @param op comparison operator
+   */
+  private void visitComparison(ComparisonOperator comparison, Comparison op) {
+    Expression left = comparison.getLeftExpression();
+    Expression right = comparison.getRightExpression();
+
+    if (left instanceof Column leftColumn && right instanceof Column rightColumn) {
+      result = new ColumnColumnPredicate(indexOf(leftColumn), op, indexOf(rightColumn));
+    } else if (left instanceof Column leftColumn && right instanceof LongValue rightValue) {
+      result = new ColumnValuePredicate(indexOf(leftColumn), op, (int) rightValue.getValue());
+    } else if (left instanceof LongValue leftValue && right instanceof Column rightColumn) {
+      result =
+          new ColumnValuePredicate(indexOf(rightColumn), op.flip(), (int) leftValue.getValue());
+    } else if (left instanceof LongValue leftValue && right instanceof LongValue rightValue) {
+      boolean value = op.test((int) leftValue.getValue(), (int) rightValue.getValue());
+      result = new ConstantPredicate(value);
+    }
+  }
+
+  /**
+   * @param column column of the expression
+   * @return index of the column in the schema
+   */
+  private int indexOf(Column column) {
+    return columnIndexMap.get(column.getName(true));
+  }
+
+  /** Integer comparison operators. */
+  private enum Comparison {
+    EQ,
+    NE,
+    GT,
+    GE,
+    LT,
+    LE;
+
+    /**
+     * @return the operator that gives the same result with its operands swapped
+     */
+    Comparison flip() {
+      return switch (this) {
+        case EQ, NE -> this;
+        case GT -> LT;
+        case GE -> LE;
+        case LT -> GT;
+        case LE -> GE;
+      };
+    }
+
+    boolean test(int left, int right) {
+      return switch (this) {
+        case EQ -> left == right;
+        case NE -> left != right;
+        case GT -> left > right;
+        case GE -> left >= right;
+        case LT -> left < right;
+        case LE -> left <= right;
+      };
+    }
+  }
+
+  /** Comparison between two columns of the row, such as S.A < R.B. */
+  private record ColumnColumnPredicate(int leftIndex, Comparison op, int rightIndex)
+      implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      return op.test(tuple.getElementAtIndex(leftIndex), tuple.getElementAtIndex(rightIndex));
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      return op.test(batch.getValue(leftIndex, row), batch.getValue(rightIndex, row));
+    }
+  }
+
+  /** Comparison between a column of the row and a constant, such as S.A < 42. */
+  private record ColumnValuePredicate(int index, Comparison op, int value)
+      implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      return op.test(tuple.getElementAtIndex(index), value);
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      return op.test(batch.getValue(index, row), value);
+    }
+  }
+
+  /** Comparison between two constants, evaluated at compile time. */
+  private record ConstantPredicate(boolean value) implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      return value;
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      return value;
+    }
+  }
+
+  private record AndPredicate(CompiledPredicate left, CompiledPredicate right)
+      implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      return left.test(tuple) && right.test(tuple);
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      return left.test(batch, row) && right.test(batch, row);
+    }
+  }
+
+  private record OrPredicate(CompiledPredicate left, CompiledPredicate right)
+      implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      return left.test(tuple) || right.test(tuple);
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      return left.test(batch, row) || right.test(batch, row);
+    }
+  }
+
+  private record XorPredicate(CompiledPredicate left, CompiledPredicate right)
+      implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      return left.test(tuple) ^ right.test(tuple);
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      return left.test(batch, row) ^ right.test(batch, row);
+    }
+  }
+
+  /** Any other expression, evaluated by walking it with ExpressionEvaluator. */
+  private record InterpretedPredicate(Expression expression, Map<String, Integer> columnIndexMap)
+      implements CompiledPredicate {
+    @Override
+    public boolean test(Tuple tuple) {
+      ExpressionEvaluator evaluator = new ExpressionEvaluator(tuple, columnIndexMap);
+      expression.accept(evaluator);
+      return evaluator.getResult();
+    }
+
+    @Override
+    public boolean test(TupleBatch batch, int row) {
+      ExpressionEvaluator evaluator = new ExpressionEvaluator(batch, row, columnIndexMap);
+      expression.accept(evaluator);
+      return evaluator.getResult();
+    }
+  }
+}
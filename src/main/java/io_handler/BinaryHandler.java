@@ -2,14 +2,15 @@ package io_handler;
 
 import common.pair.Pair;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
 import common.tuple.TupleReader;
 import common.tuple.TupleWriter;
 import compiler.DBCatalog;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import org.apache.logging.log4j.LogManager;
@@ -25,10 +26,15 @@ public class BinaryHandler implements TupleWriter, TupleReader {
   private int pageIndex = -1;
 
   private File file;
-  private FileInputStream fileInputStream;
   private FileOutputStream fileOutputStream;
   private FileChannel fileChannel;
   private ByteBuffer byteBuffer;
+  private IntBuffer intBuffer;
+
+  // page being read, pinned in the buffer pool and read in place
+  private BufferPool bufferPool;
+  private int frameId = -1;
+  private IntBuffer page;
 
   /**
    * Use BinaryHandler to read/write tuples to a file according to tableName
@@ -37,7 +43,6 @@ public class BinaryHandler implements TupleWriter, TupleReader {
    */
   public BinaryHandler(String tableName) {
     this.file = DBCatalog.getInstance().getFileForTable(tableName);
-    this.byteBuffer = ByteBuffer.allocate(bufferCapacity);
   }
 
   /**
@@ -47,7 +52,6 @@ public class BinaryHandler implements TupleWriter, TupleReader {
    */
   public BinaryHandler(File file) {
     this.file = file;
-    this.byteBuffer = ByteBuffer.allocate(bufferCapacity);
   }
 
   /**
@@ -70,19 +74,9 @@ public class BinaryHandler implements TupleWriter, TupleReader {
    * And it will handle the file reading process.
    *
    * @return the row in this file
-   * @throws IOException caused by file reading for writing
    */
   @Override
   public Tuple readNextTuple() {
-    if (this.fileInputStream == null) {
-      try {
-        this.fileInputStream = new FileInputStream(file);
-        this.fileChannel = this.fileInputStream.getChannel();
-      } catch (Exception e) {
-        logger.error(e.getMessage());
-      }
-    }
-
     if (this.offset == 0 || this.offset == this.tupleNum * this.attributeNum + 2) {
       if (!loadNextPage()) {
         return null;
@@ -90,11 +84,41 @@ public class BinaryHandler implements TupleWriter, TupleReader {
     }
 
     int[] tupleBuffer = new int[this.attributeNum];
-    this.byteBuffer.asIntBuffer().get(this.offset, tupleBuffer);
+    this.page.get(this.offset, tupleBuffer);
     this.offset += this.attributeNum;
     return new Tuple(tupleBuffer);
   }
 
+  /**
+   * Read up to maxSize tuples at a time, decoding the pages straight into column vectors. It will
+   * return null if there is no more tuple to read.
+   *
+   * @param maxSize maximum number of tuples in the batch
+   * @return the rows in this file as a batch
+   */
+  @Override
+  public TupleBatch readNextBatch(int maxSize) {
+    if (this.offset == 0 || this.offset == this.tupleNum * this.attributeNum + 2) {
+      if (!loadNextPage()) {
+        return null;
+      }
+    }
+
+    int[][] columns = new int[this.attributeNum][maxSize];
+    int size = 0;
+    while (size < maxSize) {
+      if (this.offset == this.tupleNum * this.attributeNum + 2 && !loadNextPage()) {
+        break;
+      }
+      for (int i = 0; i < this.attributeNum; i++) {
+        columns[i][size] = this.page.get(this.offset + i);
+      }
+      this.offset += this.attributeNum;
+      size++;
+    }
+    return new TupleBatch(columns, size);
+  }
+
   @Override
   public Pair<Tuple, Pair<Integer, Integer>> readNextTupleAndRid() {
     Tuple tuple = readNextTuple();
@@ -111,26 +135,55 @@ public class BinaryHandler implements TupleWriter, TupleReader {
    * Load the next page of the file for reading, update the attributeNum, tupleNum, and offset
    *
    * @return true if the next page is loaded successfully, false otherwise
-   * @throws IOException caused by file reading for writing or byte buffer
    */
   private boolean loadNextPage() {
-    this.byteBuffer.clear();
-    try {
-      int fileReadLength = fileChannel.read(byteBuffer);
-      if (fileReadLength == -1) {
-        return false;
-      }
-      this.byteBuffer.flip();
-      this.attributeNum = this.byteBuffer.asIntBuffer().get(0);
-      this.tupleNum = this.byteBuffer.asIntBuffer().get(1);
+    return loadPage(this.pageIndex + 1);
+  }
 
-      this.pageIndex++;
-      this.offset = 2;
-      return true;
+  /**
+   * Pin a page of the file in the buffer pool for reading, in place of the page read before, update
+   * the attributeNum, tupleNum, and offset
+   *
+   * @param index index of the page
+   * @return true if the page is loaded successfully, false otherwise
+   */
+  private boolean loadPage(int index) {
+    releasePage();
+    this.bufferPool = BufferPool.getInstance();
+    this.frameId = this.bufferPool.pin(file, index);
+    if (this.frameId == -1) {
+      return false;
+    }
+    this.page = this.bufferPool.getPage(this.frameId).asIntBuffer();
+    this.attributeNum = this.page.get(0);
+    this.tupleNum = this.page.get(1);
+
+    this.pageIndex = index;
+    this.offset = 2;
+    return true;
+  }
+
+  /** Unpin the page being read, if any. */
+  private void releasePage() {
+    if (this.frameId != -1) {
+      this.bufferPool.unpin(this.frameId);
+      this.frameId = -1;
+      this.page = null;
+    }
+  }
+
+  /** Open the file for writing, and allocate the page written to. */
+  private void openOutput() {
+    try {
+      BufferPool.getInstance().invalidate(file);
+      file.createNewFile();
+      this.fileOutputStream = new FileOutputStream(file);
+      this.fileChannel = fileOutputStream.getChannel();
     } catch (Exception e) {
       logger.error(e.getMessage());
     }
-    return false;
+    this.byteBuffer = ByteBuffer.allocate(bufferCapacity);
+    this.intBuffer = this.byteBuffer.asIntBuffer();
   }
 
   /**
@@ -142,26 +195,20 @@ public class BinaryHandler implements TupleWriter, TupleReader {
   @Override
   public void writeNextTuple(Tuple tuple) {
     if (this.fileOutputStream == null) {
-      try {
-        file.createNewFile();
-        this.fileOutputStream = new FileOutputStream(file);
-        this.fileChannel = fileOutputStream.getChannel();
-      } catch (Exception e) {
-        logger.error(e.getMessage());
-      }
+      openOutput();
     }
 
     if (this.offset == 0) {
       this.attributeNum = tuple.getSize();
-      this.byteBuffer.asIntBuffer().put(0, this.attributeNum);
-      this.byteBuffer.asIntBuffer().put(1, -1); // placeholder for tuple number
+      this.intBuffer.put(0, this.attributeNum);
+      this.intBuffer.put(1, -1); // placeholder for tuple number
       this.offset = 2;
       this.tupleNum = 0;
     }
 
-    int[] tupleBuffer = tuple.getAllElementsAsArray();
-
-    this.byteBuffer.asIntBuffer().put(this.offset, tupleBuffer);
+    for (int i = 0; i < this.attributeNum; i++) {
+      this.intBuffer.put(this.offset + i, tuple.getElementAtIndex(i));
+    }
     this.offset += this.attributeNum;
     this.tupleNum++;
 
@@ -171,6 +218,39 @@ public class BinaryHandler implements TupleWriter, TupleReader {
     }
   }
 
+  /**
+   * Write every row of a batch to the file, reading the values straight from the column vectors.
+   *
+   * @param batch TupleBatch to write to the file
+   */
+  @Override
+  public void writeNextBatch(TupleBatch batch) {
+    if (this.fileOutputStream == null) {
+      openOutput();
+    }
+
+    for (int row = 0; row < batch.getSize(); row++) {
+      if (this.offset == 0) {
+        this.attributeNum = batch.getColumnNum();
+        this.intBuffer.put(0, this.attributeNum);
+        this.intBuffer.put(1, -1); // placeholder for tuple number
+        this.offset = 2;
+        this.tupleNum = 0;
+      }
+
+      for (int i = 0; i < this.attributeNum; i++) {
+        this.intBuffer.put(this.offset + i, batch.getValue(i, row));
+      }
+      this.offset += this.attributeNum;
+      this.tupleNum++;
+
+      // if next tuple will overflow this page, add a new page.
+      if (this.offset + this.attributeNum >= this.bufferCapacity / 4) {
+        writePage();
+      }
+    }
+  }
+
   /**
    * Write the current page to the file, Load the next page by
    *
@@ -180,11 +260,11 @@ public class BinaryHandler implements TupleWriter, TupleReader {
   private void writePage() {
     try {
       // set tuple number
-      this.byteBuffer.asIntBuffer().put(1, this.tupleNum);
+      this.intBuffer.put(1, this.tupleNum);
 
       // Fill the rest of the page with 0
       for (int i = offset; i < this.bufferCapacity / 4; i++) {
-        this.byteBuffer.asIntBuffer().put(i, 0);
+        this.intBuffer.put(i, 0);
       }
 
       fileChannel.write(this.byteBuffer);
@@ -198,13 +278,15 @@ public class BinaryHandler implements TupleWriter, TupleReader {
   }
 
   /**
-   * Write potential tuples, Close the file input stream and file output stream
+   * Write potential tuples, Close the file output stream. Pages are read through the buffer pool,
+   * so there is no input stream to close, only the page being read to unpin.
    *
    * @return void
    * @throws IOException caused by file writing / reading / closing
    */
   @Override
   public void close() {
+    releasePage();
     try {
       if (this.offset != 0 && this.fileOutputStream != null) {
         writePage();
@@ -213,98 +295,46 @@ public class BinaryHandler implements TupleWriter, TupleReader {
       if (this.fileOutputStream != null) {
         this.fileOutputStream.close();
       }
-
-      if (this.fileInputStream != null) {
-        this.fileInputStream.close();
-      }
     } catch (Exception e) {
       logger.error(e.getMessage());
     }
   }
 
-  /**
-   * Reset the file to the beginning
-   *
-   * @return void
-   * @throws IOException caused by file reading or byte buffer
-   */
+  /** Reset the reader to the beginning of the file */
   @Override
   public void reset() {
-    try {
-      // Reset the file position to the start of the file
-      fileChannel.position(0);
-
-      // Clear the byteBuffer to make it ready for new data
-      this.byteBuffer.clear();
-
-      // Reset the offset
-      this.offset = 0;
-
-      // Reset the pageIndex
-      this.pageIndex = -1;
+    // Reset the offset
+    this.offset = 0;
 
-    } catch (IOException e) {
-      logger.error(e.getMessage());
-    }
+    // Reset the pageIndex
+    this.pageIndex = -1;
   }
 
   /**
    * Reset the file to the beginning of the tuple at page index i
    *
    * @param i the index of the tuple to reset to
-   * @return void
-   * @throws IOException caused by file reading or byte buffer
    */
   @Override
   public void reset(int i) {
-    try {
-      fileChannel.position(0);
-      // get tuple number from page
-      ByteBuffer tupleNumBuffer = ByteBuffer.allocate(8);
-      fileChannel.read(tupleNumBuffer);
-      tupleNumBuffer.flip();
-      int tupleNum = tupleNumBuffer.asIntBuffer().get(1);
-
-      int pageIndex = i / tupleNum;
-      int tupleIndex = i % tupleNum;
-
-      fileChannel.position(bufferCapacity * pageIndex);
-      loadNextPage();
-      this.offset = 2 + tupleIndex * this.attributeNum;
-      this.pageIndex = pageIndex;
-
-    } catch (IOException e) {
-      logger.error(e.getMessage());
+    // get tuple number from the first page, every page but the last is full
+    if (!loadPage(0)) {
+      return;
     }
+    reset(i / this.tupleNum, i % this.tupleNum);
   }
 
   /**
-   * Reset the file to the beginning of the tuple at page index i and tuple index j
+   * Reset the file to the beginning of the tuple at page index i and tuple index j. The page is not
+   * read again if it is the one already loaded, so rids sorted by page read each page once.
    *
    * @param pageIndex the index of the page to reset to
    * @param tupleIndex the index of the tuple to reset to
-   * @return void
-   * @throws IOException caused by file reading or byte buffer
    */
   @Override
   public void reset(int pageIndex, int tupleIndex) {
-    try {
-      if (this.fileInputStream == null) {
-        try {
-          this.fileInputStream = new FileInputStream(file);
-          this.fileChannel = this.fileInputStream.getChannel();
-        } catch (Exception e) {
-          logger.error(e.getMessage());
-        }
-      }
-
-      fileChannel.position(bufferCapacity * pageIndex);
-      loadNextPage();
-      this.pageIndex = pageIndex;
+    if ((pageIndex == this.pageIndex && this.frameId != -1) || loadPage(pageIndex)) {
       this.offset = 2 + tupleIndex * this.attributeNum;
-
-    } catch (IOException e) {
-      logger.error(e.getMessage());
     }
   }
 }
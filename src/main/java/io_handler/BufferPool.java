@@ -0,0 +1,269 @@
+package io_handler;
+
+import compiler.DBCatalog;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Page-level buffer pool shared by every page reader. Pages are keyed by file and page number and
+ * stay cached across operators and queries until they are evicted with the CLOCK policy or their
+ * file is written again.
+ *
+ * <p>Readers pin a page, read it in place through getPage(), and unpin it when they move on, so
+ * pages are never copied out of the pool. Pinned frames are never evicted, and every reader pins at
+ * most a couple of pages at a time, so the pool must hold more frames than there are files read at
+ * once.
+ */
+public class BufferPool {
+  private static final int MAX_OPEN_FILES = 64;
+  private static BufferPool instance;
+
+  private final Logger logger = LogManager.getLogger();
+  private final int bufferCapacity;
+  private final ByteBuffer[] frames;
+  private final PageId[] pageIds;
+  private final int[] pinCounts;
+  private final boolean[] referenced;
+  private final Map<PageId, Integer> pageTable;
+  private final Map<String, FileChannel> openFiles;
+  private int clockHand;
+  private long hitCount;
+  private long missCount;
+
+  /** A page of a file */
+  private record PageId(String path, int pageIndex) {}
+
+  /**
+   * BufferPool constructor
+   *
+   * @param frameNumber number of pages the pool can hold
+   * @param bufferCapacity size of a page in bytes
+   */
+  private BufferPool(int frameNumber, int bufferCapacity) {
+    this.bufferCapacity = bufferCapacity;
+    this.frames = new ByteBuffer[frameNumber];
+    this.pageIds = new PageId[frameNumber];
+    this.pinCounts = new int[frameNumber];
+    this.referenced = new boolean[frameNumber];
+    this.pageTable = new HashMap<>();
+    // Channels are kept open in LRU order, the least recently used one is closed when too many
+    this.openFiles =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, FileChannel> eldest) {
+            if (size() <= MAX_OPEN_FILES) {
+              return false;
+            }
+            closeChannel(eldest.getValue());
+            return true;
+          }
+        };
+  }
+
+  /**
+   * Instance getter for singleton pattern, lazy initialization on first invocation
+   *
+   * @return unique buffer pool instance
+   */
+  public static synchronized BufferPool getInstance() {
+    DBCatalog catalog = DBCatalog.getInstance();
+    // A new pool is created when the configured number of frames changes. Readers unpin their pages
+    // in the pool they pinned them in.
+    if (instance == null || instance.frames.length != catalog.getBufferPoolFrameNumber()) {
+      instance = new BufferPool(catalog.getBufferPoolFrameNumber(), catalog.getBufferCapacity());
+    }
+    return instance;
+  }
+
+  /**
+   * Pin a page in the pool, reading it from disk on a miss. The page stays in its frame until it is
+   * unpinned.
+   *
+   * @param file file of the page
+   * @param pageIndex index of the page in the file
+   * @return id of the frame holding the page, or -1 if the page is past the end of the file
+   */
+  public synchronized int pin(File file, int pageIndex) {
+    PageId pageId = new PageId(file.getAbsolutePath(), pageIndex);
+    Integer frameId = pageTable.get(pageId);
+    if (frameId != null) {
+      hitCount++;
+    } else {
+      missCount++;
+      frameId = findVictim();
+      if (frames[frameId] == null) {
+        frames[frameId] = ByteBuffer.allocate(bufferCapacity);
+      }
+      if (!readFromDisk(file, pageIndex, frames[frameId])) {
+        return -1;
+      }
+      pageIds[frameId] = pageId;
+      pageTable.put(pageId, frameId);
+    }
+    pinCounts[frameId]++;
+    referenced[frameId] = true;
+    return frameId;
+  }
+
+  /**
+   * Release a page pinned with pin(). The buffers returned by getPage() for it must not be read
+   * afterwards.
+   *
+   * @param frameId id of the frame returned by pin()
+   */
+  public synchronized void unpin(int frameId) {
+    if (pinCounts[frameId] > 0) {
+      pinCounts[frameId]--;
+    }
+  }
+
+  /**
+   * Get a pinned page, to read it in place. The buffer is a read-only view of the frame with its
+   * own position, so readers of the same page do not move each other.
+   *
+   * @param frameId id of the frame returned by pin()
+   * @return the page, of bufferCapacity bytes
+   */
+  public ByteBuffer getPage(int frameId) {
+    return frames[frameId].asReadOnlyBuffer().clear();
+  }
+
+  /**
+   * Drop every cached page of a file. Must be called before a file is written, so readers never see
+   * stale pages.
+   *
+   * @param file file that changes
+   */
+  public synchronized void invalidate(File file) {
+    String path = file.getAbsolutePath();
+    Iterator<Map.Entry<PageId, Integer>> iterator = pageTable.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<PageId, Integer> entry = iterator.next();
+      if (entry.getKey().path().equals(path)) {
+        pageIds[entry.getValue()] = null;
+        referenced[entry.getValue()] = false;
+        iterator.remove();
+      }
+    }
+    FileChannel channel = openFiles.remove(path);
+    if (channel != null) {
+      closeChannel(channel);
+    }
+  }
+
+  /**
+   * Drop every cached page and the open channel of a temporary file, then delete it. A channel left
+   * open would keep the disk space of the deleted file.
+   *
+   * @param file file to delete
+   */
+  public void delete(File file) {
+    invalidate(file);
+    file.delete();
+  }
+
+  /**
+   * @return number of pins served from the pool
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return number of pins that read the page from disk
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** Reset the hit and miss counters. */
+  public synchronized void resetCounters() {
+    hitCount = 0;
+    missCount = 0;
+  }
+
+  /**
+   * Choose a frame for a new page with the CLOCK policy: sweep the frames, giving referenced pages
+   * a second chance, and take the first unpinned frame that is not referenced.
+   *
+   * @return id of a free frame
+   */
+  private int findVictim() {
+    // Two full sweeps clear every reference bit, so a third one finds an unpinned frame if any
+    for (int i = 0; i < frames.length * 3; i++) {
+      int frameId = clockHand;
+      clockHand = (clockHand + 1) % frames.length;
+      if (pinCounts[frameId] > 0) {
+        continue;
+      }
+      if (referenced[frameId]) {
+        referenced[frameId] = false;
+        continue;
+      }
+      if (pageIds[frameId] != null) {
+        pageTable.remove(pageIds[frameId]);
+        pageIds[frameId] = null;
+      }
+      return frameId;
+    }
+    throw new IllegalStateException("Every frame of the buffer pool is pinned");
+  }
+
+  /**
+   * Read a page from disk into a frame.
+   *
+   * @param file file of the page
+   * @param pageIndex index of the page in the file
+   * @param frame buffer to fill
+   * @return true if the page exists, false otherwise
+   * @throws IOException caused by file reading
+   */
+  private boolean readFromDisk(File file, int pageIndex, ByteBuffer frame) {
+    try {
+      FileChannel channel = openFiles.get(file.getAbsolutePath());
+      if (channel == null) {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        openFiles.put(file.getAbsolutePath(), channel);
+      }
+
+      long position = (long) pageIndex * bufferCapacity;
+      frame.clear();
+      while (frame.hasRemaining()) {
+        int length = channel.read(frame, position + frame.position());
+        if (length == -1) {
+          break;
+        }
+      }
+      if (frame.position() == 0) {
+        return false;
+      }
+      while (frame.hasRemaining()) {
+        frame.put((byte) 0);
+      }
+      return true;
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+    return false;
+  }
+
+  /**
+   * @param channel channel to close
+   */
+  private void closeChannel(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package operator_node;
+
+import common.AggregateFunction;
+import common.HelperMethods;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+/**
+ * AggregateOperatorNode is a class to represent GROUP BY and aggregate functions in the logical
+ * query plan. Its output has one column per select item, in order: a GROUP BY column, or the result
+ * of an aggregate function. It replaces the project operator of the query.
+ */
+public class AggregateOperatorNode extends OperatorNode {
+
+  private List<Column> groupByColumns;
+  private List<AggregateFunction> aggregates;
+  // for each output column, the index of its GROUP BY column, or -1 - the index of its aggregate
+  private int[] outputSources;
+
+  /**
+   * Set the node as the child to aggregate operator
+   *
+   * @param childNode the child node of the aggregate operator
+   * @param groupByColumns the GROUP BY columns, empty to aggregate the whole input
+   * @param selectItems the items of the select statement
+   * @throws IllegalArgumentException if a select item is neither a GROUP BY column nor an aggregate
+   */
+  public AggregateOperatorNode(
+      OperatorNode childNode, List<Column> groupByColumns, List<SelectItem> selectItems) {
+    this.childNode = childNode;
+    this.childNode.parentNode = this;
+    this.aggregates = new ArrayList<>();
+    this.outputSources = new int[selectItems.size()];
+
+    // Resolve the GROUP BY columns against the child, so they keep their table and alias
+    Map<String, Integer> columnIndexMap = HelperMethods.mapColumnIndex(childNode.getOutputSchema());
+    this.groupByColumns = new ArrayList<>();
+    for (Column column : groupByColumns) {
+      this.groupByColumns.add(
+          childNode.getOutputSchema().get(columnIndexMap.get(column.getName(true))));
+    }
+
+    ArrayList<Column> outputSchema = new ArrayList<>();
+    for (int i = 0; i < selectItems.size(); i++) {
+      if (!(selectItems.get(i) instanceof SelectExpressionItem item)) {
+        throw new IllegalArgumentException("SELECT * cannot be aggregated");
+      }
+      Expression expression = item.getExpression();
+      if (expression instanceof Function function) {
+        AggregateFunction aggregate = AggregateFunction.fromFunction(function);
+        outputSources[i] = -1 - aggregates.size();
+        aggregates.add(aggregate);
+        outputSchema.add(new Column(aggregate.name()));
+      } else {
+        int index = indexOfGroupByColumn((Column) expression);
+        if (index == -1) {
+          throw new IllegalArgumentException(expression + " must appear in the GROUP BY clause");
+        }
+        outputSources[i] = index;
+        outputSchema.add(this.groupByColumns.get(index));
+      }
+    }
+    this.outputSchema = outputSchema;
+  }
+
+  /**
+   * @param column a column of the select items
+   * @return index of the column in the GROUP BY columns, -1 if it is not one of them
+   */
+  private int indexOfGroupByColumn(Column column) {
+    for (int i = 0; i < groupByColumns.size(); i++) {
+      if (groupByColumns.get(i).getName(true).equals(column.getName(true))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the GROUP BY columns
+   *
+   * @return the GROUP BY columns, empty to aggregate the whole input
+   */
+  public List<Column> getGroupByColumns() {
+    return groupByColumns;
+  }
+
+  /**
+   * Get the aggregate functions, in the order of the select items
+   *
+   * @return the aggregate functions
+   */
+  public List<AggregateFunction> getAggregates() {
+    return aggregates;
+  }
+
+  /**
+   * Get where each output column comes from: i for the i-th GROUP BY column, -1 - j for the j-th
+   * aggregate.
+   *
+   * @return the source of each output column
+   */
+  public int[] getOutputSources() {
+    return outputSources;
+  }
+
+  @Override
+  public void accept(OperatorNodeVisitor operatorNodeVisitor) {
+    operatorNodeVisitor.visit(this);
+  }
+}
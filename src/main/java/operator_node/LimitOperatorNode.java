@@ -0,0 +1,48 @@
+package operator_node;
+
+/**
+ * LimitOperatorNode is a class to represent the LIMIT / OFFSET operator in the logical query plan.
+ */
+public class LimitOperatorNode extends OperatorNode {
+
+  private long limit;
+  private long offset;
+
+  /**
+   * Set the node as the child to limit operator
+   *
+   * @param childNode the child node of the limit operator
+   * @param limit maximum number of tuples to output, Long.MAX_VALUE for no limit
+   * @param offset number of tuples to skip before the first output tuple
+   */
+  public LimitOperatorNode(OperatorNode childNode, long limit, long offset) {
+    this.childNode = childNode;
+    this.childNode.parentNode = this;
+    this.limit = limit;
+    this.offset = offset;
+    this.outputSchema = childNode.getOutputSchema();
+  }
+
+  /**
+   * Get the maximum number of tuples to output
+   *
+   * @return the limit, Long.MAX_VALUE for no limit
+   */
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * Get the number of tuples to skip
+   *
+   * @return the offset
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public void accept(OperatorNodeVisitor operatorNodeVisitor) {
+    operatorNodeVisitor.visit(this);
+  }
+}
@@ -97,6 +97,11 @@ public abstract class OperatorNode {
 
     if (cur instanceof EmptyOperatorNode) {
       tree.append("Leaf[null]\n");
+    } else if (cur instanceof LimitOperatorNode) {
+      LimitOperatorNode node = (LimitOperatorNode) cur;
+      tree.append("Limit[").append(node.getLimit()).append(", ").append(node.getOffset());
+      tree.append("]\n");
+      dfs(tree, cur.getChildNode(), level + 1);
     } else if (cur instanceof DuplicateEliminationOperatorNode) {
       tree.append("DupElim\n");
       if (cur.getChildNode() != null) {
@@ -107,6 +112,14 @@ public abstract class OperatorNode {
           .append(HelperMethods.convertColumnList(cur.getOutputSchema()))
           .append("]\n");
       dfs(tree, cur.getChildNode(), level + 1);
+    } else if (cur instanceof AggregateOperatorNode) {
+      tree.append("Aggregate[")
+          .append(
+              HelperMethods.convertColumnList(((AggregateOperatorNode) cur).getGroupByColumns()))
+          .append("][")
+          .append(HelperMethods.convertColumnList(cur.getOutputSchema()))
+          .append("]\n");
+      dfs(tree, cur.getChildNode(), level + 1);
     } else if (cur instanceof ProjectOperatorNode) {
       tree.append("Project[")
           .append(HelperMethods.convertColumnList(cur.getOutputSchema()))
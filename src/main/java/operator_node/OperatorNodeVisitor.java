@@ -15,4 +15,8 @@ public interface OperatorNodeVisitor {
   void visit(SelectOperatorNode node);
 
   void visit(EmptyOperatorNode node);
+
+  void visit(LimitOperatorNode node);
+
+  void visit(AggregateOperatorNode node);
 }
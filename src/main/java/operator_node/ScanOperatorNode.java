@@ -10,6 +10,7 @@ public class ScanOperatorNode extends OperatorNode {
   private String indexAttribute = null;
   private int lowerBound;
   private int upperBound;
+  private boolean sortRids;
 
   /**
    * Set the table as the child to scan operator
@@ -28,6 +29,18 @@ public class ScanOperatorNode extends OperatorNode {
     this.upperBound = upperBound;
   }
 
+  /**
+   * Scan a range of an index.
+   *
+   * @param sortRids true to fetch the tuples of an unclustered index in rid order, reading each
+   *     data page once instead of once per rid
+   */
+  public ScanOperatorNode(
+      Table table, String indexAttribute, int lowerBound, int upperBound, boolean sortRids) {
+    this(table, indexAttribute, lowerBound, upperBound);
+    this.sortRids = sortRids;
+  }
+
   public Table getTable() {
     return table;
   }
@@ -44,6 +57,10 @@ public class ScanOperatorNode extends OperatorNode {
     return upperBound;
   }
 
+  public boolean isSortRids() {
+    return sortRids;
+  }
+
   public void setTable(Table table) {
     this.table = table;
   }
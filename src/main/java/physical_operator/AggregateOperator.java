@@ -0,0 +1,93 @@
+package physical_operator;
+
+import common.AggregateFunction;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Base of the operators for GROUP BY and aggregate functions. The GROUP BY columns and the columns
+ * of the aggregates are resolved to their indexes in the child's tuples once, when it is built.
+ */
+public abstract class AggregateOperator extends Operator {
+  protected final Operator childOperator;
+  protected final List<Column> groupByColumns;
+  protected final int[] groupByIndexes;
+  protected final AggregateFunction.Type[] aggregateTypes;
+  protected final int[] aggregateIndexes;
+  protected final int[] outputSources;
+
+  /**
+   * AggregateOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator
+   * @param groupByColumns GROUP BY columns, empty to aggregate the whole input
+   * @param aggregates aggregate functions
+   * @param outputSources for each output column, i for the i-th GROUP BY column or -1 - j for the
+   *     j-th aggregate
+   */
+  protected AggregateOperator(
+      ArrayList<Column> outputSchema,
+      Operator childOperator,
+      List<Column> groupByColumns,
+      List<AggregateFunction> aggregates,
+      int[] outputSources) {
+    super(outputSchema);
+    this.childOperator = childOperator;
+    this.groupByColumns = groupByColumns;
+    this.outputSources = outputSources;
+
+    // Resolve the column indexes in the child's tuples once
+    List<Column> childSchema = childOperator.getOutputSchema();
+    this.groupByIndexes = new int[groupByColumns.size()];
+    for (int i = 0; i < groupByIndexes.length; i++) {
+      this.groupByIndexes[i] = indexOf(childSchema, groupByColumns.get(i));
+    }
+    this.aggregateTypes = new AggregateFunction.Type[aggregates.size()];
+    this.aggregateIndexes = new int[aggregates.size()];
+    for (int i = 0; i < aggregateTypes.length; i++) {
+      AggregateFunction aggregate = aggregates.get(i);
+      this.aggregateTypes[i] = aggregate.type();
+      this.aggregateIndexes[i] =
+          aggregate.column() == null ? -1 : indexOf(childSchema, aggregate.column());
+    }
+  }
+
+  /**
+   * @param schema list of columns
+   * @param column column to look for
+   * @return index of the column in the schema
+   */
+  private static int indexOf(List<Column> schema, Column column) {
+    for (int i = 0; i < schema.size(); i++) {
+      if (schema.get(i).getName(true).equals(column.getName(true))) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown column: " + column);
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /**
+   * Get the child operator.
+   *
+   * @return child operator
+   */
+  public Operator getChildOperator() {
+    return childOperator;
+  }
+
+  /**
+   * Get the GROUP BY columns.
+   *
+   * @return GROUP BY columns, empty if the whole input is one group
+   */
+  public List<Column> getGroupByColumns() {
+    return groupByColumns;
+  }
+}
@@ -35,13 +35,22 @@ public class BNLJOperator extends Operator {
     this.bufferSizeInPage = bufferSizeInPage;
     this.leftChildOperator = leftChildOperator;
     this.rightChildOperator = rightChildOperator;
+    this.reverse = reverse;
+  }
 
-    // Load for the first time
+  /** Load the first right tuple and the first left block. */
+  @Override
+  protected void onOpen() {
     this.rightTuple = rightChildOperator.getNextTuple();
-    this.reverse = reverse;
     loadLeftChildBlock();
   }
 
+  /** Drop the left block. */
+  @Override
+  protected void onClose() {
+    this.tupleBuffer = null;
+  }
+
   /**
    * Load left child block into memory
    *
@@ -94,6 +103,11 @@ public class BNLJOperator extends Operator {
     rightChildOperator.reset();
   }
 
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(leftChildOperator, rightChildOperator);
+  }
+
   /**
    * Get the left operator.
    *
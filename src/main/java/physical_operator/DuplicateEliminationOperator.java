@@ -37,6 +37,17 @@ public class DuplicateEliminationOperator extends Operator {
     return tuple;
   }
 
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The duplicate elimination keeps the order of the child. */
+  @Override
+  public List<Column> getSortOrder() {
+    return childOperator.getSortOrder();
+  }
+
   /**
    * Get the child operator.
    *
@@ -1,27 +1,53 @@
 package physical_operator;
 
 import common.HelperMethods;
-import common.pair.Pair;
+import common.tuple.LoserTree;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
 import common.tuple.TupleReader;
 import common.tuple.TupleWriter;
 import compiler.DBCatalog;
 import io_handler.BinaryHandler;
+import io_handler.BufferPool;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import net.sf.jsqlparser.schema.Column;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * An operator for ORDER BY. Create intermediate files to keep the partial sorted runs which are
- * pending a merge in the next pass. Will clean up the intermediate files after the query is done.
+ * pending a merge in the next pass. Runs are merged B - 1 at a time, over as many passes as needed.
+ * The last pass is not written to disk: it merges the remaining runs on demand as the parent reads
+ * tuples. The output is only materialized into one file the first time reset(i) needs random
+ * access. The sort runs in open(), and close() deletes the intermediate files.
  *
  * <p>Intermediate files are binary for production, human-readable for debugging.
  */
 public class ExternalSortOperator extends Operator {
+  // Blocks smaller than this are sorted on one thread, as Arrays.parallelSort() would do anyway
+  private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+  private static final Logger logger = LogManager.getLogger();
+  // Workers of the parallel sorts, shared by every sort
+  private static ExecutorService sortExecutor;
+  private static int sortExecutorThreadNum;
+
   private Operator childOperator;
   private List<Column> orders;
   private Tuple[] tupleBuffer;
   private TupleReader tupleReader;
+  private int numPagePerBlock;
+  private List<Long> spilledBytesPerPass;
+  // Runs of the final pass and their readers, until the output is materialized
+  private List<File> finalRuns;
+  private List<TupleReader> runReaders;
+  private LoserTree loserTree;
 
   /**
    * External Sort constructor, sort the tuples from the child operator by more than one column.
@@ -41,15 +67,51 @@ public class ExternalSortOperator extends Operator {
 
     this.childOperator = childOperator;
     this.orders = orders;
+    this.numPagePerBlock = numPagePerBlock;
+    this.spilledBytesPerPass = new ArrayList<>();
+  }
 
+  /** Generate the sorted runs and merge them down to the runs of the final pass. */
+  @Override
+  protected void onOpen() {
     int maxTupleNum = numPagePerBlock * 4096 / 4 / childOperator.getOutputSchema().size();
     this.tupleBuffer = new Tuple[maxTupleNum];
+    this.spilledBytesPerPass.clear();
 
     // Divide to files and sort the tuples inside files
     List<File> files = divideAndSort();
-    File mergedFile = mergeSortedFiles(files);
+    this.finalRuns = mergeSortedFiles(files);
     // prepare for reading the sorted tuples
-    this.tupleReader = new BinaryHandler(mergedFile);
+    if (finalRuns.size() == 1) {
+      this.tupleReader = new BinaryHandler(finalRuns.getFirst());
+    } else {
+      this.runReaders = new ArrayList<>();
+      for (File run : finalRuns) {
+        runReaders.add(new BinaryHandler(run));
+      }
+      this.loserTree =
+          new LoserTree(runReaders, HelperMethods.getTupleComparator(orders, outputSchema));
+    }
+  }
+
+  /** Close the readers and delete the temporary files. */
+  @Override
+  protected void onClose() {
+    if (this.tupleReader != null) {
+      this.tupleReader.close();
+    }
+    if (this.runReaders != null) {
+      for (TupleReader reader : runReaders) {
+        reader.close();
+      }
+    }
+    for (File run : finalRuns) {
+      BufferPool.getInstance().delete(run);
+    }
+    this.tupleBuffer = null;
+    this.tupleReader = null;
+    this.runReaders = null;
+    this.loserTree = null;
   }
 
   /**
@@ -58,64 +120,254 @@ public class ExternalSortOperator extends Operator {
    * @return
    */
   private List<File> divideAndSort() {
+    int threadNum = DBCatalog.getInstance().getSortThreadNumber();
+    if (threadNum > 1) {
+      return divideAndSortParallel(threadNum);
+    }
+
     List<File> externalFileList = new ArrayList<>();
 
     while (Operator.loadTupleBlock(childOperator, tupleBuffer)) {
       // sort the tuples
       Arrays.sort(tupleBuffer, HelperMethods.getTupleComparator(orders, outputSchema));
-      File file = writeTupleBlock();
+      File file = writeTupleBlock(tupleBuffer);
       externalFileList.add(file);
     }
     return externalFileList;
   }
 
   /**
-   * Merge the sorted files. Delete the files on exit.
+   * Parallel version of divideAndSort(): this thread loads the blocks while the shared sort workers
+   * sort and write them. Every block in flight has the full B pages, so the runs are as long as
+   * with one thread and the merge passes are the same, at the cost of threadNum times B pages of
+   * memory. A block is reused once its run is written.
    *
-   * @param externalFileList list of sorted files
-   * @return
+   * @param threadNum number of worker threads and of in-flight blocks
+   * @return the runs, in the order of their blocks
+   * @throws IllegalStateException if a worker fails or the thread is interrupted, as the runs would
+   *     miss tuples
    */
-  private File mergeSortedFiles(List<File> externalFileList) {
-    PriorityQueue<Pair<TupleReader, Tuple>> pq =
-        new PriorityQueue<>(HelperMethods.getTupleComparator(orders, outputSchema));
+  private List<File> divideAndSortParallel(int threadNum) {
+    ExecutorService executor = getSortExecutor(threadNum);
+    Comparator<Tuple> comparator = HelperMethods.getTupleComparator(orders, outputSchema);
 
-    File mergedFile =
-        new File(DBCatalog.getInstance().getTempDir() + "/" + UUID.randomUUID() + "sorted.temp");
-    mergedFile.deleteOnExit();
-    TupleWriter writer = new BinaryHandler(mergedFile);
+    BlockingQueue<Tuple[]> freeBlocks = new ArrayBlockingQueue<>(threadNum);
+    freeBlocks.add(tupleBuffer);
+    for (int i = 1; i < threadNum; i++) {
+      freeBlocks.add(new Tuple[tupleBuffer.length]);
+    }
 
-    // Load top tuple from each file
-    for (File file : externalFileList) {
-      TupleReader reader = new BinaryHandler(file);
-      Tuple tuple = reader.readNextTuple();
-      if (tuple != null) {
-        pq.offer(new Pair<>(reader, tuple));
+    List<Future<File>> runs = new ArrayList<>();
+    List<File> externalFileList = new ArrayList<>();
+    try {
+      while (true) {
+        Tuple[] block = freeBlocks.take();
+        if (!Operator.loadTupleBlock(childOperator, block)) {
+          break;
+        }
+        runs.add(
+            executor.submit(
+                () -> {
+                  try {
+                    sortTupleBlock(block, comparator);
+                    return writeTupleBlock(block);
+                  } finally {
+                    freeBlocks.add(block);
+                  }
+                }));
       }
+      for (Future<File> run : runs) {
+        externalFileList.add(run.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("External sort interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("External sort worker failed", e.getCause());
+    } finally {
+      // the workers are shared, only stop the blocks of this sort
+      for (Future<File> run : runs) {
+        run.cancel(true);
+      }
+    }
+    return externalFileList;
+  }
+
+  /**
+   * Get the workers shared by the parallel sorts, and start them on first use or when the number of
+   * sort threads changes.
+   *
+   * @param threadNum number of sort threads
+   * @return executor of the sort workers
+   */
+  private static synchronized ExecutorService getSortExecutor(int threadNum) {
+    if (sortExecutor == null || sortExecutorThreadNum != threadNum) {
+      shutdownSortExecutor();
+      sortExecutor =
+          Executors.newFixedThreadPool(
+              threadNum,
+              runnable -> {
+                Thread thread = new Thread(runnable, "external-sort-worker");
+                thread.setDaemon(true);
+                return thread;
+              });
+      sortExecutorThreadNum = threadNum;
+    }
+    return sortExecutor;
+  }
+
+  /** Stop the workers of the parallel sorts, they are started again by the next one. */
+  public static synchronized void shutdownSortExecutor() {
+    if (sortExecutor != null) {
+      sortExecutor.shutdown();
+      sortExecutor = null;
+    }
+  }
+
+  /**
+   * Sort the tuples of a block, which is filled up to its first null. Large blocks are sorted with
+   * Arrays.parallelSort().
+   *
+   * @param block block of tuples
+   * @param comparator comparator of the sort orders
+   */
+  private static void sortTupleBlock(Tuple[] block, Comparator<Tuple> comparator) {
+    int size = 0;
+    while (size < block.length && block[size] != null) {
+      size++;
+    }
+    if (size >= PARALLEL_SORT_THRESHOLD) {
+      Arrays.parallelSort(block, 0, size, comparator);
+    } else {
+      Arrays.sort(block, 0, size, comparator);
     }
+  }
 
-    // Get the smallest tuple and write it to the merged file
-    // Offer the next tuple from the file to PQ
-    while (!pq.isEmpty()) {
-      Pair<TupleReader, Tuple> pair = pq.poll();
-      writer.writeNextTuple(pair.getRight());
+  /**
+   * Merge the sorted runs with a fan-in of B - 1: every pass merges groups of B - 1 runs into one
+   * run, until at most B - 1 runs are left for the final pass. Runs are deleted as soon as they are
+   * merged.
+   *
+   * @param externalFileList list of sorted files
+   * @return the runs of the final pass
+   */
+  private List<File> mergeSortedFiles(List<File> externalFileList) {
+    Comparator<Tuple> comparator = HelperMethods.getTupleComparator(orders, outputSchema);
+    int fanIn = Math.max(2, numPagePerBlock - 1);
+    List<File> runs = externalFileList;
+    spilledBytesPerPass.add(getTotalLength(runs));
 
-      TupleReader reader = pair.getLeft();
-      Tuple tuple = reader.readNextTuple();
-      if (tuple != null) {
-        pq.offer(new Pair<>(reader, tuple));
+    while (runs.size() > fanIn) {
+      List<File> mergedRuns = new ArrayList<>();
+      for (int i = 0; i < runs.size(); i += fanIn) {
+        mergedRuns.add(mergeRuns(runs.subList(i, Math.min(i + fanIn, runs.size())), comparator));
       }
+      runs = mergedRuns;
+      spilledBytesPerPass.add(getTotalLength(runs));
+    }
+    if (runs.size() > 1) {
+      // The final pass is streamed, it spills nothing unless it is materialized
+      spilledBytesPerPass.add(0L);
+    }
+    logger.debug(
+        "External sort on " + orders + ": " + getPassNumber() + " passes, " + spilledBytesPerPass);
+    return runs;
+  }
+
+  /**
+   * Write the output of the final pass to one file and read from it from now on, so the output can
+   * be accessed at random. The final runs are merged again from their beginning.
+   */
+  private void materialize() {
+    for (TupleReader reader : runReaders) {
+      reader.close();
+    }
+    File mergedFile;
+    if (finalRuns.isEmpty()) {
+      mergedFile = SpillPartitions.createTempFile("sorted.temp");
+    } else {
+      mergedFile = mergeRuns(finalRuns, HelperMethods.getTupleComparator(orders, outputSchema));
+      spilledBytesPerPass.set(spilledBytesPerPass.size() - 1, mergedFile.length());
+    }
+    this.tupleReader = new BinaryHandler(mergedFile);
+    this.finalRuns = List.of(mergedFile);
+    this.runReaders = null;
+    this.loserTree = null;
+  }
+
+  /**
+   * Merge up to B - 1 sorted runs into one run with a loser tree, then delete them.
+   *
+   * @param runs sorted runs
+   * @param comparator order of the runs
+   * @return the merged run
+   */
+  private File mergeRuns(List<File> runs, Comparator<Tuple> comparator) {
+    if (runs.size() == 1) {
+      return runs.getFirst();
+    }
+
+    List<TupleReader> readers = new ArrayList<>();
+    for (File run : runs) {
+      readers.add(new BinaryHandler(run));
+    }
+    LoserTree loserTree = new LoserTree(readers, comparator);
+
+    File mergedFile = SpillPartitions.createTempFile("sorted.temp");
+    TupleWriter writer = new BinaryHandler(mergedFile);
+    Tuple tuple;
+    while ((tuple = loserTree.next()) != null) {
+      writer.writeNextTuple(tuple);
     }
     writer.close();
 
+    for (int i = 0; i < runs.size(); i++) {
+      readers.get(i).close();
+      BufferPool.getInstance().delete(runs.get(i));
+    }
     return mergedFile;
   }
 
-  /** Write the sorted tuples to temporary file. Delete the file on exit. */
-  private File writeTupleBlock() {
+  /**
+   * @param files list of files
+   * @return total size of the files in bytes
+   */
+  private static long getTotalLength(List<File> files) {
+    long length = 0;
+    for (File file : files) {
+      length += file.length();
+    }
+    return length;
+  }
+
+  /**
+   * Get the number of passes of the sort, including the pass that generates the runs.
+   *
+   * @return number of passes
+   */
+  public int getPassNumber() {
+    return spilledBytesPerPass.size();
+  }
+
+  /**
+   * Get the number of bytes written to temporary files by each pass. The first element is the pass
+   * that generates the runs.
+   *
+   * @return bytes spilled per pass
+   */
+  public List<Long> getSpilledBytesPerPass() {
+    return spilledBytesPerPass;
+  }
+
+  /**
+   * Write the sorted tuples to temporary file. Delete the file on exit.
+   *
+   * @param tupleBuffer block of sorted tuples, filled up to its first null
+   */
+  private File writeTupleBlock(Tuple[] tupleBuffer) {
     // write the data block to a file
 
-    File file = new File(DBCatalog.getInstance().getTempDir() + "/_" + UUID.randomUUID() + ".temp");
-    file.deleteOnExit();
+    File file = SpillPartitions.createTempFile(".temp");
     TupleWriter tupleWriter = new BinaryHandler(file);
     for (Tuple tuple : tupleBuffer) {
       if (tuple == null) break;
@@ -125,14 +377,30 @@ public class ExternalSortOperator extends Operator {
     return file;
   }
 
-  /** Reset the TupleReader */
+  /** Reset the TupleReader, or restart the final merge pass if it is streamed */
   @Override
   public void reset() {
-    this.tupleReader.reset();
+    if (this.tupleReader != null) {
+      this.tupleReader.reset();
+      return;
+    }
+    for (TupleReader reader : runReaders) {
+      reader.reset();
+    }
+    this.loserTree =
+        new LoserTree(runReaders, HelperMethods.getTupleComparator(orders, outputSchema));
   }
 
+  /**
+   * Reset to the i-th sorted tuple. Materializes the output on first use.
+   *
+   * @param i index of the tuple
+   */
   @Override
   public void reset(int i) {
+    if (this.tupleReader == null) {
+      materialize();
+    }
     this.tupleReader.reset(i);
   }
 
@@ -143,9 +411,43 @@ public class ExternalSortOperator extends Operator {
    */
   @Override
   public Tuple getNextTuple() {
+    if (this.tupleReader == null) {
+      return this.loserTree.next();
+    }
     return this.tupleReader.readNextTuple();
   }
 
+  /**
+   * Read the sorted tuples a batch at a time.
+   *
+   * @return up to DBCatalog.getBatchSize() sorted tuples as a batch
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    int batchSize = DBCatalog.getInstance().getBatchSize();
+    if (this.tupleReader != null) {
+      return this.tupleReader.readNextBatch(batchSize);
+    }
+
+    TupleBatch batch = new TupleBatch(outputSchema.size(), batchSize);
+    Tuple tuple;
+    while (!batch.isFull() && (tuple = this.loserTree.next()) != null) {
+      batch.append(tuple);
+    }
+    return batch.getSize() == 0 ? null : batch;
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The tuples are sorted on the ORDER BY columns, then on the other columns. */
+  @Override
+  public List<Column> getSortOrder() {
+    return HelperMethods.getSortOrder(orders, outputSchema);
+  }
+
   /**
    * Get the child operator.
    *
@@ -0,0 +1,446 @@
+package physical_operator;
+
+import common.HelperMethods;
+import common.tuple.Tuple;
+import common.tuple.TupleHashTable;
+import common.tuple.TupleReader;
+import common.tuple.TupleWriter;
+import compiler.DBCatalog;
+import io_handler.BinaryHandler;
+import io_handler.BufferPool;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Hybrid Hash Join Operator for an equi-join whose inputs do not fit in memory.
+ *
+ * <p>The build child is hash-partitioned into B - 1 partitions. Partitions stay resident in memory
+ * until the buffer is full, then the largest resident partition is spilled to a temporary file. The
+ * probe child is joined against the resident partitions right away, and its tuples that belong to a
+ * spilled partition are written to the matching probe file. Each pair of spilled files is then
+ * joined the same way with a new hash seed. A partition that does not get smaller when it is
+ * partitioned again (a skewed key) is joined chunk by chunk instead, rescanning its probe file for
+ * every chunk.
+ *
+ * <p>Intermediate files are deleted as soon as their partition is joined.
+ */
+public class GraceHashJoinOperator extends Operator {
+  public String leftColumnName;
+  public String rightColumnName;
+
+  private Operator leftChildOperator;
+  private Operator rightChildOperator;
+  private Operator buildOperator;
+  private Operator probeOperator;
+  private int buildColumnIndex;
+  private int probeColumnIndex;
+  private boolean buildLeft;
+  private boolean reverse;
+  private int bufferSizeInPage;
+  private int partitionNum;
+  private int tuplesPerPage;
+
+  // spilled partitions waiting to be joined
+  private Deque<Partition> pendingPartitions;
+
+  // state of the partition being joined
+  private boolean started;
+  private TupleHashTable hashTable;
+  private TupleWriter[] probeWriters;
+  private Partition partition;
+  private TupleReader buildReader;
+  private TupleReader probeReader;
+  private Tuple probeTuple;
+  private int entry;
+
+  /** A pair of spilled build and probe files that still need to be joined. */
+  private static class Partition {
+    private final File buildFile;
+    private final File probeFile;
+    private final int depth;
+    private final long buildTupleNum;
+    private boolean chunked;
+
+    private Partition(File buildFile, File probeFile, int depth, long buildTupleNum) {
+      this.buildFile = buildFile;
+      this.probeFile = probeFile;
+      this.depth = depth;
+      this.buildTupleNum = buildTupleNum;
+    }
+  }
+
+  /**
+   * GraceHashJoinOperator Constructor
+   *
+   * @param outputSchema output schema
+   * @param leftChildOperator leftChildOperator that needs to perform to join
+   * @param rightChildOperator rightChildOperator that needs to perform to join
+   * @param leftColumn left column to join
+   * @param rightColumn right column to join
+   * @param reverse true if the right tuple comes first in the output
+   * @param buildLeft true to partition the left child as the build side, false the right child
+   * @param bufferSizeInPage buffer size in page unit, each page is 4096 bytes
+   */
+  public GraceHashJoinOperator(
+      ArrayList<Column> outputSchema,
+      Operator leftChildOperator,
+      Operator rightChildOperator,
+      Column leftColumn,
+      Column rightColumn,
+      boolean reverse,
+      boolean buildLeft,
+      int bufferSizeInPage) {
+    super(outputSchema);
+
+    this.leftColumnName = leftColumn.getName(true);
+    this.rightColumnName = rightColumn.getName(true);
+
+    this.leftChildOperator = leftChildOperator;
+    this.rightChildOperator = rightChildOperator;
+    this.reverse = reverse;
+    this.buildLeft = buildLeft;
+    this.bufferSizeInPage = bufferSizeInPage;
+
+    int leftColumnIndex =
+        HelperMethods.mapColumnIndex(leftChildOperator.getOutputSchema()).get(leftColumnName);
+    int rightColumnIndex =
+        HelperMethods.mapColumnIndex(rightChildOperator.getOutputSchema()).get(rightColumnName);
+
+    this.buildOperator = buildLeft ? leftChildOperator : rightChildOperator;
+    this.probeOperator = buildLeft ? rightChildOperator : leftChildOperator;
+    this.buildColumnIndex = buildLeft ? leftColumnIndex : rightColumnIndex;
+    this.probeColumnIndex = buildLeft ? rightColumnIndex : leftColumnIndex;
+
+    this.partitionNum = SpillPartitions.getPartitionNum(bufferSizeInPage);
+    int bufferCapacity = DBCatalog.getInstance().getBufferCapacity();
+    this.tuplesPerPage = (bufferCapacity / 4 - 2) / buildOperator.getOutputSchema().size();
+    this.pendingPartitions = new ArrayDeque<>();
+    this.entry = -1;
+  }
+
+  /**
+   * Partition the build child. Partitions are kept in memory as long as they fit, the others are
+   * spilled to build files. Then prepare the probe files of the spilled partitions.
+   */
+  private void partitionBuildChild() {
+    List<List<Tuple>> residentPartitions = new ArrayList<>();
+    for (int i = 0; i < partitionNum; i++) {
+      residentPartitions.add(new ArrayList<>());
+    }
+    TupleWriter[] buildWriters = new TupleWriter[partitionNum];
+    File[] buildFiles = new File[partitionNum];
+    long[] buildTupleNums = new long[partitionNum];
+    int residentTupleNum = 0;
+    int spilledNum = 0;
+
+    Tuple tuple;
+    while ((tuple = buildOperator.getNextTuple()) != null) {
+      int p = partitionOf(tuple.getElementAtIndex(buildColumnIndex), 0);
+      buildTupleNums[p]++;
+      if (buildWriters[p] != null) {
+        buildWriters[p].writeNextTuple(tuple);
+        continue;
+      }
+      residentPartitions.get(p).add(tuple);
+      residentTupleNum++;
+
+      // Every spilled partition holds one page as its output buffer
+      int maxResidentTupleNum = (bufferSizeInPage - spilledNum) * tuplesPerPage;
+      while (residentTupleNum > maxResidentTupleNum && spilledNum < partitionNum) {
+        int largest = 0;
+        for (int i = 1; i < partitionNum; i++) {
+          if (residentPartitions.get(i).size() > residentPartitions.get(largest).size()) {
+            largest = i;
+          }
+        }
+        buildFiles[largest] = SpillPartitions.createTempFile("hash.temp");
+        buildWriters[largest] = new BinaryHandler(buildFiles[largest]);
+        for (Tuple residentTuple : residentPartitions.get(largest)) {
+          buildWriters[largest].writeNextTuple(residentTuple);
+        }
+        residentTupleNum -= residentPartitions.get(largest).size();
+        residentPartitions.set(largest, new ArrayList<>());
+        spilledNum++;
+        maxResidentTupleNum = (bufferSizeInPage - spilledNum) * tuplesPerPage;
+      }
+    }
+
+    hashTable = new TupleHashTable(residentTupleNum);
+    probeWriters = new TupleWriter[partitionNum];
+    for (int i = 0; i < partitionNum; i++) {
+      for (Tuple residentTuple : residentPartitions.get(i)) {
+        hashTable.put(residentTuple.getElementAtIndex(buildColumnIndex), residentTuple);
+      }
+      if (buildWriters[i] != null) {
+        buildWriters[i].close();
+        File probeFile = SpillPartitions.createTempFile("hash.temp");
+        probeWriters[i] = new BinaryHandler(probeFile);
+        pendingPartitions.add(new Partition(buildFiles[i], probeFile, 1, buildTupleNums[i]));
+      }
+    }
+  }
+
+  /**
+   * Start joining the next spilled partition: load its build file, or partition it again when it
+   * does not fit in memory.
+   *
+   * @return false if there are no more partitions
+   */
+  private boolean loadNextPartition() {
+    closePartition();
+    while (!pendingPartitions.isEmpty()) {
+      partition = pendingPartitions.poll();
+      if (!partition.probeFile.exists() || partition.probeFile.length() == 0) {
+        closePartition();
+        continue;
+      }
+
+      long maxTupleNum = (long) bufferSizeInPage * tuplesPerPage;
+      if (partition.buildTupleNum > maxTupleNum
+          && !partition.chunked
+          && partition.depth < SpillPartitions.MAX_DEPTH) {
+        repartition(partition);
+        closePartition();
+        continue;
+      }
+
+      buildReader = new BinaryHandler(partition.buildFile);
+      probeReader = new BinaryHandler(partition.probeFile);
+      loadNextChunk();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Load as many build tuples of the current partition as fit in memory into the hash table.
+   *
+   * @return false if the build file has no more tuples
+   */
+  private boolean loadNextChunk() {
+    int maxTupleNum = bufferSizeInPage * tuplesPerPage;
+    hashTable = new TupleHashTable((int) Math.min(partition.buildTupleNum, maxTupleNum));
+    Tuple tuple;
+    while (hashTable.getSize() < maxTupleNum && (tuple = buildReader.readNextTuple()) != null) {
+      hashTable.put(tuple.getElementAtIndex(buildColumnIndex), tuple);
+    }
+    return hashTable.getSize() > 0;
+  }
+
+  /**
+   * Partition a pair of spilled files again with the hash seed of the next level. Sub-partitions
+   * that keep every tuple of the parent hold a single skewed key, so they are joined in chunks.
+   *
+   * @param parent partition to split
+   */
+  private void repartition(Partition parent) {
+    int seed = parent.depth;
+    File[] buildFiles = new File[partitionNum];
+    File[] probeFiles = new File[partitionNum];
+    long[] buildTupleNums = new long[partitionNum];
+
+    TupleWriter[] writers = new TupleWriter[partitionNum];
+    TupleReader reader = new BinaryHandler(parent.buildFile);
+    Tuple tuple;
+    while ((tuple = reader.readNextTuple()) != null) {
+      int p = partitionOf(tuple.getElementAtIndex(buildColumnIndex), seed);
+      if (writers[p] == null) {
+        buildFiles[p] = SpillPartitions.createTempFile("hash.temp");
+        writers[p] = new BinaryHandler(buildFiles[p]);
+      }
+      writers[p].writeNextTuple(tuple);
+      buildTupleNums[p]++;
+    }
+    reader.close();
+    for (TupleWriter writer : writers) {
+      if (writer != null) writer.close();
+    }
+
+    writers = new TupleWriter[partitionNum];
+    reader = new BinaryHandler(parent.probeFile);
+    while ((tuple = reader.readNextTuple()) != null) {
+      int p = partitionOf(tuple.getElementAtIndex(probeColumnIndex), seed);
+      // No build tuple can match
+      if (buildFiles[p] == null) continue;
+      if (writers[p] == null) {
+        probeFiles[p] = SpillPartitions.createTempFile("hash.temp");
+        writers[p] = new BinaryHandler(probeFiles[p]);
+      }
+      writers[p].writeNextTuple(tuple);
+    }
+    reader.close();
+    for (TupleWriter writer : writers) {
+      if (writer != null) writer.close();
+    }
+
+    for (int i = 0; i < partitionNum; i++) {
+      if (buildFiles[i] == null) continue;
+      if (probeFiles[i] == null) {
+        BufferPool.getInstance().delete(buildFiles[i]);
+        continue;
+      }
+      Partition child = new Partition(buildFiles[i], probeFiles[i], seed + 1, buildTupleNums[i]);
+      child.chunked = buildTupleNums[i] == parent.buildTupleNum;
+      pendingPartitions.push(child);
+    }
+  }
+
+  /** Close the readers of the current partition and delete its files. */
+  private void closePartition() {
+    if (buildReader != null) buildReader.close();
+    if (probeReader != null) probeReader.close();
+    buildReader = null;
+    probeReader = null;
+    if (partition != null) {
+      BufferPool.getInstance().delete(partition.buildFile);
+      BufferPool.getInstance().delete(partition.probeFile);
+      partition = null;
+    }
+  }
+
+  /**
+   * Read the next probe tuple. In the first pass, probe tuples of spilled partitions are written to
+   * their probe file instead of being returned.
+   *
+   * @return the next probe tuple to look up in the hash table, or null if there are no more
+   */
+  private Tuple readProbeTuple() {
+    if (probeWriters != null) {
+      Tuple tuple;
+      while ((tuple = probeOperator.getNextTuple()) != null) {
+        int p = partitionOf(tuple.getElementAtIndex(probeColumnIndex), 0);
+        if (probeWriters[p] == null) {
+          return tuple;
+        }
+        probeWriters[p].writeNextTuple(tuple);
+      }
+      for (TupleWriter writer : probeWriters) {
+        if (writer != null) writer.close();
+      }
+      probeWriters = null;
+      return loadNextPartition() ? readProbeTuple() : null;
+    }
+
+    while (probeReader != null) {
+      Tuple tuple = probeReader.readNextTuple();
+      if (tuple != null) {
+        return tuple;
+      }
+      // Rescan the probe file for the next chunk of a skewed partition
+      if (loadNextChunk()) {
+        probeReader.close();
+        probeReader = new BinaryHandler(partition.probeFile);
+      } else if (!loadNextPartition()) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Advance to the next build tuple matching the current probe tuple, pulling probe tuples as the
+   * matches run out.
+   *
+   * @return the matching build tuple, the probe tuple is kept in probeTuple; null if there are no
+   *     more matches
+   */
+  private Tuple nextMatch() {
+    if (!started) {
+      started = true;
+      partitionBuildChild();
+    }
+
+    if (probeTuple != null) {
+      entry = hashTable.next(entry, probeTuple.getElementAtIndex(probeColumnIndex));
+    }
+    while (entry == -1) {
+      probeTuple = readProbeTuple();
+      if (probeTuple == null) {
+        return null;
+      }
+      entry = hashTable.first(probeTuple.getElementAtIndex(probeColumnIndex));
+    }
+    return hashTable.getTuple(entry);
+  }
+
+  /**
+   * @param key join key
+   * @param seed hash seed of the partitioning level
+   * @return index of the partition of the key
+   */
+  private int partitionOf(int key, int seed) {
+    return SpillPartitions.partitionOf(key, seed, partitionNum);
+  }
+
+  /** Drop every partition and start the join over. */
+  @Override
+  public void reset() {
+    dropPartitions();
+    leftChildOperator.reset();
+    rightChildOperator.reset();
+  }
+
+  /** Drop every partition and delete their files. */
+  @Override
+  protected void onClose() {
+    dropPartitions();
+  }
+
+  /** Close the partition being joined and delete the files of every pending partition. */
+  private void dropPartitions() {
+    closePartition();
+    for (Partition pending : pendingPartitions) {
+      BufferPool.getInstance().delete(pending.buildFile);
+      BufferPool.getInstance().delete(pending.probeFile);
+    }
+    pendingPartitions.clear();
+    if (probeWriters != null) {
+      for (TupleWriter writer : probeWriters) {
+        if (writer != null) writer.close();
+      }
+      probeWriters = null;
+    }
+    started = false;
+    hashTable = null;
+    probeTuple = null;
+    entry = -1;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    Tuple buildTuple = nextMatch();
+    if (buildTuple == null) {
+      return null;
+    }
+    Tuple leftTuple = buildLeft ? buildTuple : probeTuple;
+    Tuple rightTuple = buildLeft ? probeTuple : buildTuple;
+    return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(leftChildOperator, rightChildOperator);
+  }
+
+  /**
+   * Get the left operator.
+   *
+   * @return left operator
+   */
+  public Operator getLeftOperator() {
+    return leftChildOperator;
+  }
+
+  /**
+   * Get the right operator.
+   *
+   * @return right operator
+   */
+  public Operator getRightOperator() {
+    return rightChildOperator;
+  }
+}
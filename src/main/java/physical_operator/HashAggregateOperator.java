@@ -0,0 +1,201 @@
+package physical_operator;
+
+import common.AggregateFunction;
+import common.tuple.Tuple;
+import common.tuple.TupleHashTable;
+import compiler.DBCatalog;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Hash-based operator for GROUP BY and aggregate functions. Every group has a slot in a hash table
+ * keyed by its GROUP BY values, and its aggregates are accumulated in primitive long arrays indexed
+ * by the slot, so updating a group allocates nothing. Groups are output once their input is read.
+ *
+ * <p>When the table holds as many groups as fit in the buffer, it stops growing: rows of new groups
+ * are hash-partitioned into B - 1 temp files instead. Every row of a spilled group lands in the
+ * same partition, so each partition is aggregated on its own after the groups in memory are output,
+ * partitioning again with a new seed if it is still too large. Partitions that are still too large
+ * after MAX_DEPTH levels are aggregated in memory.
+ *
+ * <p>Without GROUP BY the whole input is one group, output even if the input is empty. SUM and AVG
+ * are accumulated as longs and output as ints, AVG as the floor of the average.
+ */
+public class HashAggregateOperator extends AggregateOperator {
+  private int maxGroupNum;
+
+  // spilled partitions, and the groups of the input being aggregated, the child or a partition
+  private SpillPartitions partitions;
+  private TupleHashTable groups;
+  private long[] counts;
+  private long[][] accumulators;
+  private int outputSlot;
+
+  /**
+   * HashAggregateOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator
+   * @param groupByColumns GROUP BY columns, empty to aggregate the whole input
+   * @param aggregates aggregate functions
+   * @param outputSources for each output column, i for the i-th GROUP BY column or -1 - j for the
+   *     j-th aggregate
+   * @param bufferSizeInPage buffer size in page unit, each page is 4096 bytes
+   */
+  public HashAggregateOperator(
+      ArrayList<Column> outputSchema,
+      Operator childOperator,
+      List<Column> groupByColumns,
+      List<AggregateFunction> aggregates,
+      int[] outputSources,
+      int bufferSizeInPage) {
+    super(outputSchema, childOperator, groupByColumns, aggregates, outputSources);
+
+    // A group holds its key, its count and one accumulator per aggregate
+    int groupSize = groupByIndexes.length + 2 + 2 * aggregateTypes.length;
+    this.maxGroupNum =
+        bufferSizeInPage * DBCatalog.getInstance().getBufferCapacity() / 4 / groupSize;
+    this.partitions = new SpillPartitions(bufferSizeInPage, "group.temp");
+    this.outputSlot = -1;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    while (true) {
+      if (outputSlot == -1) {
+        aggregateInput();
+        outputSlot = 0;
+      }
+      if (outputSlot < groups.getSize()) {
+        return buildOutputTuple(outputSlot++);
+      }
+      if (!partitions.loadNextPartition()) {
+        return null;
+      }
+      outputSlot = -1;
+    }
+  }
+
+  /**
+   * Read the whole input being aggregated, accumulating the groups that fit and spilling others.
+   */
+  private void aggregateInput() {
+    groups = new TupleHashTable(Math.min(maxGroupNum, 1024));
+    counts = new long[16];
+    accumulators = new long[aggregateTypes.length][counts.length];
+    Tuple tuple;
+    while ((tuple = readInputTuple()) != null) {
+      Tuple key = tuple.project(groupByIndexes);
+      int hash = key.hashCode();
+      int slot = groups.first(hash);
+      while (slot != -1 && !groups.getTuple(slot).equals(key)) {
+        slot = groups.next(slot, hash);
+      }
+
+      if (slot == -1) {
+        if (groups.getSize() >= maxGroupNum && partitions.canSpill()) {
+          // Every row of the group lands in the same partition
+          partitions.spill(tuple, hash);
+          continue;
+        }
+        slot = groups.getSize();
+        groups.put(hash, key);
+        initializeSlot(slot);
+      }
+      accumulate(slot, tuple);
+    }
+
+    // The whole input is one group, which exists even if the input is empty
+    if (groupByIndexes.length == 0 && groups.getSize() == 0) {
+      groups.put(0, new Tuple(new int[0]));
+      initializeSlot(0);
+    }
+  }
+
+  /**
+   * Reset the accumulators of a new group, growing the arrays if needed.
+   *
+   * @param slot slot of the group
+   */
+  private void initializeSlot(int slot) {
+    if (slot == counts.length) {
+      counts = Arrays.copyOf(counts, slot * 2);
+      for (int i = 0; i < accumulators.length; i++) {
+        accumulators[i] = Arrays.copyOf(accumulators[i], slot * 2);
+      }
+    }
+    counts[slot] = 0;
+    for (int i = 0; i < aggregateTypes.length; i++) {
+      accumulators[i][slot] = aggregateTypes[i].initialValue();
+    }
+  }
+
+  /**
+   * Add a row to the accumulators of its group.
+   *
+   * @param slot slot of the group
+   * @param tuple row of the child
+   */
+  private void accumulate(int slot, Tuple tuple) {
+    counts[slot]++;
+    for (int i = 0; i < aggregateTypes.length; i++) {
+      if (aggregateIndexes[i] == -1) {
+        continue;
+      }
+      accumulators[i][slot] =
+          aggregateTypes[i].accumulate(
+              accumulators[i][slot], tuple.getElementAtIndex(aggregateIndexes[i]));
+    }
+  }
+
+  /**
+   * @param slot slot of the group
+   * @return the output tuple of the group
+   */
+  private Tuple buildOutputTuple(int slot) {
+    Tuple key = groups.getTuple(slot);
+    int[] elements = new int[outputSources.length];
+    for (int i = 0; i < outputSources.length; i++) {
+      if (outputSources[i] >= 0) {
+        elements[i] = key.getElementAtIndex(outputSources[i]);
+        continue;
+      }
+      int aggregate = -1 - outputSources[i];
+      elements[i] = aggregateTypes[aggregate].result(accumulators[aggregate][slot], counts[slot]);
+    }
+    return new Tuple(elements);
+  }
+
+  /**
+   * @return the next row of the input being aggregated, or null at its end
+   */
+  private Tuple readInputTuple() {
+    return partitions.isReadingPartition()
+        ? partitions.readNextTuple()
+        : childOperator.getNextTuple();
+  }
+
+  /** Drop the groups and every partition and delete their files. */
+  private void dropPartitions() {
+    partitions.dropPartitions();
+    groups = null;
+    counts = null;
+    accumulators = null;
+    outputSlot = -1;
+  }
+
+  /** Drop every group and partition and start over. */
+  @Override
+  public void reset() {
+    dropPartitions();
+    childOperator.reset();
+  }
+
+  /** Drop every group and partition and delete their files. */
+  @Override
+  protected void onClose() {
+    dropPartitions();
+  }
+}
@@ -0,0 +1,108 @@
+package physical_operator;
+
+import common.tuple.Tuple;
+import compiler.DBCatalog;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Hash-based operator for DISTINCT. A tuple is output as soon as it is seen for the first time, its
+ * later copies are found in an in-memory hash set. The input does not need to be sorted, and the
+ * output is in input order.
+ *
+ * <p>Once the set holds as many tuples as fit in the buffer, it stops growing: tuples that are not
+ * in it are hash-partitioned into B - 1 temp files instead. Every copy of a spilled tuple lands in
+ * the same partition, so each partition is deduplicated on its own afterwards, partitioning again
+ * with a new seed if it is still too large. Partitions that are still too large after MAX_DEPTH
+ * levels (many copies of a few tuples hashing together) are deduplicated in memory.
+ */
+public class HashDuplicateEliminationOperator extends Operator {
+  private Operator childOperator;
+  private int maxTupleNum;
+
+  // spilled partitions, and the set of the input being deduplicated, the child or a partition
+  private SpillPartitions partitions;
+  private Set<Tuple> seen;
+
+  /**
+   * HashDuplicateEliminationOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator
+   * @param bufferSizeInPage buffer size in page unit, each page is 4096 bytes
+   */
+  public HashDuplicateEliminationOperator(
+      ArrayList<Column> outputSchema, Operator childOperator, int bufferSizeInPage) {
+    super(outputSchema);
+    this.childOperator = childOperator;
+    this.maxTupleNum =
+        bufferSizeInPage * DBCatalog.getInstance().getBufferCapacity() / 4 / outputSchema.size();
+    this.partitions = new SpillPartitions(bufferSizeInPage, "distinct.temp");
+    this.seen = new HashSet<>();
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    while (true) {
+      Tuple tuple = readInputTuple();
+      if (tuple == null) {
+        // Start on the next pending partition with an empty set
+        if (!partitions.loadNextPartition()) {
+          return null;
+        }
+        seen = new HashSet<>();
+        continue;
+      }
+      if (seen.contains(tuple)) {
+        continue;
+      }
+
+      if (seen.size() < maxTupleNum || !partitions.canSpill()) {
+        seen.add(tuple);
+        return tuple;
+      }
+      partitions.spill(tuple, tuple.hashCode());
+    }
+  }
+
+  /**
+   * @return the next tuple of the input being deduplicated, or null at its end
+   */
+  private Tuple readInputTuple() {
+    return partitions.isReadingPartition()
+        ? partitions.readNextTuple()
+        : childOperator.getNextTuple();
+  }
+
+  /** Drop the set and every partition and start over. */
+  @Override
+  public void reset() {
+    partitions.dropPartitions();
+    seen = new HashSet<>();
+    childOperator.reset();
+  }
+
+  /** Drop the set and every partition and delete their files. */
+  @Override
+  protected void onClose() {
+    partitions.dropPartitions();
+    seen = new HashSet<>();
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /**
+   * Get the child operator.
+   *
+   * @return child operator
+   */
+  public Operator getChildOperator() {
+    return childOperator;
+  }
+}
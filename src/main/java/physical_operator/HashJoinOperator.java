@@ -0,0 +1,167 @@
+package physical_operator;
+
+import common.HelperMethods;
+import common.tuple.Tuple;
+import common.tuple.TupleHashTable;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * In-memory Hash Join Operator for an equi-join. The build child is loaded into a hash table on the
+ * first call, then every tuple of the probe child is matched against it. The planner only picks it
+ * when the build child is estimated to fit in the join buffer.
+ */
+public class HashJoinOperator extends Operator {
+  public String leftColumnName;
+  public String rightColumnName;
+
+  private Operator leftChildOperator;
+  private Operator rightChildOperator;
+  private Operator buildOperator;
+  private Operator probeOperator;
+  private int buildColumnIndex;
+  private int probeColumnIndex;
+  private boolean buildLeft;
+  private boolean reverse;
+  private int expectedBuildSize;
+
+  private TupleHashTable hashTable;
+  private Tuple probeTuple;
+  private int entry;
+
+  /**
+   * HashJoinOperator Constructor
+   *
+   * @param outputSchema output schema
+   * @param leftChildOperator leftChildOperator that needs to perform to join
+   * @param rightChildOperator rightChildOperator that needs to perform to join
+   * @param leftColumn left column to join
+   * @param rightColumn right column to join
+   * @param reverse true if the right tuple comes first in the output
+   * @param buildLeft true to build the hash table on the left child, false on the right child
+   * @param expectedBuildSize estimated number of tuples of the build child
+   */
+  public HashJoinOperator(
+      ArrayList<Column> outputSchema,
+      Operator leftChildOperator,
+      Operator rightChildOperator,
+      Column leftColumn,
+      Column rightColumn,
+      boolean reverse,
+      boolean buildLeft,
+      int expectedBuildSize) {
+    super(outputSchema);
+
+    this.leftColumnName = leftColumn.getName(true);
+    this.rightColumnName = rightColumn.getName(true);
+
+    this.leftChildOperator = leftChildOperator;
+    this.rightChildOperator = rightChildOperator;
+    this.reverse = reverse;
+    this.buildLeft = buildLeft;
+    this.expectedBuildSize = expectedBuildSize;
+
+    int leftColumnIndex =
+        HelperMethods.mapColumnIndex(leftChildOperator.getOutputSchema()).get(leftColumnName);
+    int rightColumnIndex =
+        HelperMethods.mapColumnIndex(rightChildOperator.getOutputSchema()).get(rightColumnName);
+
+    this.buildOperator = buildLeft ? leftChildOperator : rightChildOperator;
+    this.probeOperator = buildLeft ? rightChildOperator : leftChildOperator;
+    this.buildColumnIndex = buildLeft ? leftColumnIndex : rightColumnIndex;
+    this.probeColumnIndex = buildLeft ? rightColumnIndex : leftColumnIndex;
+    this.entry = -1;
+  }
+
+  /** Load every tuple of the build child into the hash table. */
+  private void build() {
+    hashTable = new TupleHashTable(expectedBuildSize);
+    Tuple tuple;
+    while ((tuple = buildOperator.getNextTuple()) != null) {
+      hashTable.put(tuple.getElementAtIndex(buildColumnIndex), tuple);
+    }
+  }
+
+  /** Drop the hash table. */
+  @Override
+  protected void onClose() {
+    hashTable = null;
+    probeTuple = null;
+    entry = -1;
+  }
+
+  /** The hash table is kept, only the probe child starts over. */
+  @Override
+  public void reset() {
+    probeOperator.reset();
+    probeTuple = null;
+    entry = -1;
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    Tuple buildTuple = nextMatch();
+    if (buildTuple == null) {
+      return null;
+    }
+    Tuple leftTuple = buildLeft ? buildTuple : probeTuple;
+    Tuple rightTuple = buildLeft ? probeTuple : buildTuple;
+    return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+  }
+
+  /**
+   * Advance to the next build tuple matching the current probe tuple, pulling probe tuples as the
+   * matches run out.
+   *
+   * @return the matching build tuple, the probe tuple is kept in probeTuple; null if there are no
+   *     more matches
+   */
+  private Tuple nextMatch() {
+    if (hashTable == null) {
+      build();
+    }
+
+    if (probeTuple != null) {
+      entry = hashTable.next(entry, probeTuple.getElementAtIndex(probeColumnIndex));
+    }
+    while (entry == -1) {
+      probeTuple = probeOperator.getNextTuple();
+      if (probeTuple == null) {
+        return null;
+      }
+      entry = hashTable.first(probeTuple.getElementAtIndex(probeColumnIndex));
+    }
+    return hashTable.getTuple(entry);
+  }
+
+  /**
+   * @return true if the hash table is built on the left child
+   */
+  public boolean isBuildLeft() {
+    return buildLeft;
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(leftChildOperator, rightChildOperator);
+  }
+
+  /**
+   * Get the left operator.
+   *
+   * @return left operator
+   */
+  public Operator getLeftOperator() {
+    return leftChildOperator;
+  }
+
+  /**
+   * Get the right operator.
+   *
+   * @return right operator
+   */
+  public Operator getRightOperator() {
+    return rightChildOperator;
+  }
+}
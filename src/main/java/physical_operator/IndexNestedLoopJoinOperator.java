@@ -0,0 +1,238 @@
+package physical_operator;
+
+import common.HelperMethods;
+import common.index.IndexDeserializer;
+import common.index.IndexInfo;
+import common.tuple.Tuple;
+import compiler.CompiledPredicate;
+import compiler.DBCatalog;
+import compiler.PredicateCompiler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+
+/**
+ * Index Nested Loop Join Operator for an equi-join whose inner relation is a base table with a B+
+ * tree index on the join column. The inner table is never scanned: a block of outer tuples is
+ * loaded and sorted on the join key, then each distinct key is looked up in the index, so the
+ * lookups of a block walk the leaves in order and outer tuples with the same key share one lookup.
+ * Selections on the inner table are applied to the fetched tuples.
+ */
+public class IndexNestedLoopJoinOperator extends Operator {
+  public String leftColumnName;
+  public String rightColumnName;
+
+  private Operator leftChildOperator;
+  private Table rightTable;
+  private String rightAttributeName;
+  private Expression rightExpression;
+  private CompiledPredicate rightPredicate;
+  private int leftColumnIndex;
+  private int rightColumnIndex;
+  private int bufferSizeInPage;
+  private boolean reverse;
+
+  private IndexDeserializer indexDeserializer;
+  private Tuple[] leftBlock;
+  private int leftBlockSize;
+  private int leftBlockIndex;
+  // inner tuples matching the key of the current left tuple
+  private List<Tuple> matches;
+  private int matchKey;
+  private int matchIndex;
+
+  /**
+   * IndexNestedLoopJoinOperator Constructor
+   *
+   * @param outputSchema output schema
+   * @param leftChildOperator outer child operator
+   * @param rightTable inner table, indexed on the right column
+   * @param rightExpression selection on the inner table, or null
+   * @param leftColumn left column to join
+   * @param rightColumn right column to join, the indexed column of the inner table
+   * @param bufferSizeInPage buffer size in page unit of a block of outer tuples
+   * @param reverse true if the right tuple comes first in the output
+   */
+  public IndexNestedLoopJoinOperator(
+      ArrayList<Column> outputSchema,
+      Operator leftChildOperator,
+      Table rightTable,
+      Expression rightExpression,
+      Column leftColumn,
+      Column rightColumn,
+      int bufferSizeInPage,
+      boolean reverse) {
+    super(outputSchema);
+
+    this.leftColumnName = leftColumn.getName(true);
+    this.rightColumnName = rightColumn.getName(true);
+
+    this.leftChildOperator = leftChildOperator;
+    this.rightTable = rightTable;
+    this.rightAttributeName = rightColumn.getColumnName();
+    this.rightExpression = rightExpression;
+    this.bufferSizeInPage = bufferSizeInPage;
+    this.reverse = reverse;
+
+    ArrayList<Column> rightSchema = DBCatalog.getInstance().getColumnsWithAlias(rightTable);
+    this.leftColumnIndex =
+        HelperMethods.mapColumnIndex(leftChildOperator.getOutputSchema()).get(leftColumnName);
+    this.rightColumnIndex = HelperMethods.mapColumnIndex(rightSchema).get(rightColumnName);
+    if (rightExpression != null) {
+      this.rightPredicate =
+          PredicateCompiler.compile(rightExpression, HelperMethods.mapColumnIndex(rightSchema));
+    }
+  }
+
+  /** Open the index and allocate the block of outer tuples. */
+  @Override
+  protected void onOpen() {
+    IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(rightTable.getName());
+    this.indexDeserializer =
+        new IndexDeserializer(
+            Integer.MIN_VALUE,
+            Integer.MAX_VALUE,
+            indexInfo.relationName,
+            rightAttributeName,
+            indexInfo.attributes.get(rightAttributeName).getLeft(),
+            rightColumnIndex);
+    int maxTupleNum =
+        bufferSizeInPage
+            * DBCatalog.getInstance().getBufferCapacity()
+            / 4
+            / leftChildOperator.getOutputSchema().size();
+    this.leftBlock = new Tuple[Math.max(1, maxTupleNum)];
+    this.leftBlockSize = 0;
+    this.leftBlockIndex = 0;
+    this.matches = null;
+  }
+
+  /** Close the index and drop the block. */
+  @Override
+  protected void onClose() {
+    indexDeserializer.close();
+    indexDeserializer = null;
+    leftBlock = null;
+    matches = null;
+  }
+
+  @Override
+  public void reset() {
+    leftChildOperator.reset();
+    leftBlockSize = 0;
+    leftBlockIndex = 0;
+    matches = null;
+  }
+
+  /**
+   * Load the next block of outer tuples and sort it on the join key.
+   *
+   * @return true if the block has at least one tuple, false at the end of the outer child
+   */
+  private boolean loadLeftBlock() {
+    leftBlockSize = 0;
+    leftBlockIndex = 0;
+    Tuple tuple;
+    while (leftBlockSize < leftBlock.length && (tuple = leftChildOperator.getNextTuple()) != null) {
+      leftBlock[leftBlockSize++] = tuple;
+    }
+    Arrays.sort(
+        leftBlock,
+        0,
+        leftBlockSize,
+        Comparator.comparingInt(t -> t.getElementAtIndex(leftColumnIndex)));
+    return leftBlockSize > 0;
+  }
+
+  /**
+   * Look up the inner tuples with a join key, keeping those that pass the inner selection.
+   *
+   * @param key join key
+   */
+  private void lookup(int key) {
+    matches = new ArrayList<>();
+    matchKey = key;
+    indexDeserializer.seek(key, key);
+    Tuple tuple;
+    while ((tuple = indexDeserializer.next()) != null) {
+      if (rightPredicate == null || rightPredicate.test(tuple)) {
+        matches.add(tuple);
+      }
+    }
+  }
+
+  /**
+   * Advance to the next pair of matching tuples. The left tuple of the pair is
+   * leftBlock[leftBlockIndex].
+   *
+   * @return the right tuple matching the left tuple, or null if there are no more matches
+   */
+  private Tuple nextMatch() {
+    while (true) {
+      if (matches != null && matchIndex < matches.size()) {
+        return matches.get(matchIndex++);
+      }
+      if (matches != null) {
+        leftBlockIndex++;
+      }
+      if (leftBlockIndex >= leftBlockSize) {
+        if (!loadLeftBlock()) {
+          return null;
+        }
+      }
+
+      // The block is sorted, so equal keys are next to each other and share one lookup
+      int key = leftBlock[leftBlockIndex].getElementAtIndex(leftColumnIndex);
+      if (matches == null || key != matchKey) {
+        lookup(key);
+      }
+      matchIndex = 0;
+    }
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    Tuple rightTuple = nextMatch();
+    if (rightTuple == null) {
+      return null;
+    }
+    Tuple leftTuple = leftBlock[leftBlockIndex];
+    return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(leftChildOperator);
+  }
+
+  /**
+   * Get the left operator.
+   *
+   * @return left operator
+   */
+  public Operator getLeftOperator() {
+    return leftChildOperator;
+  }
+
+  /**
+   * Get the inner table.
+   *
+   * @return inner table
+   */
+  public Table getRightTable() {
+    return rightTable;
+  }
+
+  /**
+   * Get the selection on the inner table.
+   *
+   * @return selection on the inner table, or null
+   */
+  public Expression getRightExpression() {
+    return rightExpression;
+  }
+}
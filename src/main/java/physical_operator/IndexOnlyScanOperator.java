@@ -0,0 +1,97 @@
+package physical_operator;
+
+import common.index.IndexDeserializer;
+import common.index.IndexInfo;
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import compiler.DBCatalog;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+
+/**
+ * Index-only scan over a range of a B+ tree index. When a query needs no column of a table but the
+ * indexed one, its values are read from the keys of the leaf entries, each repeated once per rid,
+ * and the data file is never read. The output has the indexed column only, sorted on it.
+ */
+public class IndexOnlyScanOperator extends Operator {
+  private IndexDeserializer indexDeserializer;
+  public int lowKey;
+  public int highKey;
+  public String attributeName;
+  public Table table;
+
+  /**
+   * IndexOnlyScanOperator constructor
+   *
+   * @param lowKey low key of the range
+   * @param highKey high key of the range
+   * @param table relation
+   * @param attributeName name of the indexed column
+   */
+  public IndexOnlyScanOperator(int lowKey, int highKey, Table table, String attributeName) {
+    super(new ArrayList<>());
+    this.lowKey = lowKey;
+    this.highKey = highKey;
+    this.attributeName = attributeName;
+    this.table = table;
+
+    for (Column column : DBCatalog.getInstance().getColumnsWithAlias(table)) {
+      if (column.getColumnName().equals(attributeName)) {
+        this.outputSchema.add(column);
+      }
+    }
+  }
+
+  /** Search the index for the first leaf of the range. */
+  @Override
+  protected void onOpen() {
+    IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(table.getName());
+    this.indexDeserializer =
+        new IndexDeserializer(
+            lowKey,
+            highKey,
+            indexInfo.relationName,
+            attributeName,
+            indexInfo.attributes.get(attributeName).getLeft(),
+            0);
+  }
+
+  /** Close the index. */
+  @Override
+  protected void onClose() {
+    indexDeserializer.close();
+  }
+
+  @Override
+  public void reset() {
+    this.indexDeserializer.seek(lowKey, highKey);
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    Integer key = indexDeserializer.nextKey();
+    return key == null ? null : new Tuple(new int[] {key});
+  }
+
+  /**
+   * @return up to DBCatalog.getBatchSize() keys as a batch, written straight into its column
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    int[] keys = new int[DBCatalog.getInstance().getBatchSize()];
+    int size = 0;
+    Integer key;
+    while (size < keys.length && (key = indexDeserializer.nextKey()) != null) {
+      keys[size++] = key;
+    }
+    return size == 0 ? null : new TupleBatch(new int[][] {keys}, size);
+  }
+
+  /** The leaves are read in key order. */
+  @Override
+  public List<Column> getSortOrder() {
+    return List.of(outputSchema.get(0));
+  }
+}
@@ -1,20 +1,29 @@
 package physical_operator;
 
+import builder.IndexBuilder;
 import common.HelperMethods;
 import common.index.IndexDeserializer;
 import common.index.IndexInfo;
 import common.tuple.Tuple;
 import compiler.DBCatalog;
 import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 
-/** file scan with retrieving a range of tuples from the table by using B+ tree index */
+/**
+ * file scan with retrieving a range of tuples from the table by using B+ tree index. With an
+ * unclustered index, the tuples are either fetched in key order, one data page read per rid, or in
+ * rid order, where the rids are sorted by page first so that each page is read once.
+ */
 public class IndexScanOperator extends Operator {
   private IndexDeserializer indexDeserializer;
+  private int attributeIndex;
   public int lowKey;
   public int highKey;
   public String attributeName;
   public Table table;
+  public boolean sortRids;
 
   /**
    * * IndexScanOperator constructor
@@ -25,7 +34,22 @@ public class IndexScanOperator extends Operator {
    * @param attributeName name of the indexed column
    */
   public IndexScanOperator(int lowKey, int highKey, Table table, String attributeName) {
+    this(lowKey, highKey, table, attributeName, false);
+  }
+
+  /**
+   * * IndexScanOperator constructor
+   *
+   * @param lowKey low key of the range
+   * @param highKey high key of the range
+   * @param table relation
+   * @param attributeName name of the indexed column
+   * @param sortRids true to fetch the tuples of an unclustered index in rid order
+   */
+  public IndexScanOperator(
+      int lowKey, int highKey, Table table, String attributeName, boolean sortRids) {
     super(new ArrayList<>());
+    this.sortRids = sortRids;
     this.lowKey = lowKey;
     this.highKey = highKey;
     this.attributeName = attributeName;
@@ -33,9 +57,15 @@ public class IndexScanOperator extends Operator {
 
     this.outputSchema = DBCatalog.getInstance().getColumnsWithAlias(table);
     IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(table.getName());
-    int attributeIndex =
+    this.attributeIndex =
         HelperMethods.mapColumnIndex(outputSchema, false)
             .get(indexInfo.relationName + "." + attributeName);
+  }
+
+  /** Search the index for the first leaf of the range. */
+  @Override
+  protected void onOpen() {
+    IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(table.getName());
     this.indexDeserializer =
         new IndexDeserializer(
             lowKey,
@@ -43,7 +73,14 @@ public class IndexScanOperator extends Operator {
             indexInfo.relationName,
             attributeName,
             indexInfo.attributes.get(attributeName).getLeft(),
-            attributeIndex);
+            attributeIndex,
+            sortRids);
+  }
+
+  /** Close the data file. */
+  @Override
+  protected void onClose() {
+    indexDeserializer.close();
   }
 
   @Override
@@ -56,6 +93,31 @@ public class IndexScanOperator extends Operator {
     return indexDeserializer.next();
   }
 
+  /**
+   * Reset to the i-th tuple of the range. Only a clustered index can, as the range is a run of the
+   * sorted data file.
+   *
+   * @param i index of the tuple in the range
+   */
+  @Override
+  public void reset(int i) {
+    this.indexDeserializer.reset(i);
+  }
+
+  /**
+   * A clustered index scan reads a range of the sorted data file, so its tuples are in the order of
+   * the file: on the indexed column, then on the other columns. An unclustered one may fetch its
+   * tuples in rid order, so no order is claimed. Neither is one for a clustered index that is not
+   * up to date, as the data file may not be sorted.
+   */
+  @Override
+  public List<Column> getSortOrder() {
+    if (!IndexBuilder.isSortedOnClusteredIndex(table.getName(), attributeName)) {
+      return List.of();
+    }
+    return HelperMethods.getSortOrder(List.of(outputSchema.get(attributeIndex)), outputSchema);
+  }
+
   /**
    * Get the index deserializer
    *
@@ -33,6 +33,11 @@ public class JoinOperator extends Operator {
     this.leftChildOperator = leftChildOperator;
     this.rightChildOperator = rightChildOperator;
     this.reverse = reverse;
+  }
+
+  /** Load the first left tuple. */
+  @Override
+  protected void onOpen() {
     leftTuple = leftChildOperator.getNextTuple();
   }
 
@@ -67,6 +72,11 @@ public class JoinOperator extends Operator {
     return reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
   }
 
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(leftChildOperator, rightChildOperator);
+  }
+
   /**
    * Get the left operator.
    *
@@ -0,0 +1,153 @@
+package physical_operator;
+
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import compiler.DBCatalog;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * An operator for LIMIT and OFFSET. It skips the first offset tuples of the child operator, then
+ * outputs at most limit tuples. Once the limit is reached the child operator is not pulled any
+ * more.
+ */
+public class LimitOperator extends Operator {
+  private Operator childOperator;
+  private long limit;
+  private long offset;
+  // number of tuples pulled from the child, skipped ones included
+  private long position;
+  // batch of the child that getNextBatch() has not fully consumed
+  private TupleBatch pendingBatch;
+  private int pendingRow;
+
+  /**
+   * LimitOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator
+   * @param limit maximum number of tuples to output, Long.MAX_VALUE for no limit
+   * @param offset number of tuples to skip before the first output tuple
+   */
+  public LimitOperator(
+      ArrayList<Column> outputSchema, Operator childOperator, long limit, long offset) {
+    super(outputSchema);
+    this.childOperator = childOperator;
+    this.limit = limit;
+    this.offset = offset;
+  }
+
+  @Override
+  public void reset() {
+    childOperator.reset();
+    position = 0;
+    pendingBatch = null;
+  }
+
+  /**
+   * @return the next tuple within the limit, or null once the limit is reached
+   */
+  @Override
+  public Tuple getNextTuple() {
+    Tuple tuple;
+    while ((tuple = nextChildTuple()) != null && position <= offset)
+      ;
+    return tuple;
+  }
+
+  /**
+   * Output the tuples within the limit a batch at a time, copying only the rows of the child's
+   * batches that fall inside the limit.
+   *
+   * @return a batch of tuples, or null once the limit is reached
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    TupleBatch batch = null;
+    while (getRemaining() > 0) {
+      if (pendingBatch == null || pendingRow == pendingBatch.getSize()) {
+        pendingBatch = childOperator.getNextBatch();
+        if (pendingBatch == null) {
+          break;
+        }
+        // skip the rows before the offset without copying them
+        pendingRow = (int) Math.min(pendingBatch.getSize(), Math.max(0, offset - position));
+        position += pendingRow;
+        continue;
+      }
+
+      if (batch == null) {
+        batch = new TupleBatch(pendingBatch.getColumnNum(), DBCatalog.getInstance().getBatchSize());
+      } else if (batch.isFull()) {
+        break;
+      }
+      batch.appendRow(pendingBatch, pendingRow++);
+      position++;
+    }
+    return batch;
+  }
+
+  /**
+   * Pull the next tuple from the child, unless the limit is reached. Rows left in a child batch by
+   * getNextBatch() come first.
+   *
+   * @return the next tuple of the child, or null once the limit is reached
+   */
+  private Tuple nextChildTuple() {
+    if (getRemaining() <= 0) {
+      return null;
+    }
+    Tuple tuple;
+    if (pendingBatch != null && pendingRow < pendingBatch.getSize()) {
+      tuple = pendingBatch.getTuple(pendingRow++);
+    } else {
+      tuple = childOperator.getNextTuple();
+    }
+    if (tuple != null) {
+      position++;
+    }
+    return tuple;
+  }
+
+  /**
+   * @return number of tuples that can still be output
+   */
+  private long getRemaining() {
+    return limit - Math.max(0, position - offset);
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The limit keeps the order of the child. */
+  @Override
+  public List<Column> getSortOrder() {
+    return childOperator.getSortOrder();
+  }
+
+  /**
+   * Get the child operator.
+   *
+   * @return child operator
+   */
+  public Operator getChildOperator() {
+    return childOperator;
+  }
+
+  /**
+   * @return maximum number of tuples to output
+   */
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return number of tuples to skip
+   */
+  public long getOffset() {
+    return offset;
+  }
+}
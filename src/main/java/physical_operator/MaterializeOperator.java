@@ -0,0 +1,106 @@
+package physical_operator;
+
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import common.tuple.TupleReader;
+import common.tuple.TupleWriter;
+import compiler.DBCatalog;
+import io_handler.BinaryHandler;
+import io_handler.BufferPool;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * An operator that writes the tuples of its child to a temporary file once, in the child's order,
+ * and reads them back from it, so that an input without random access can be reset to its i-th
+ * tuple. The right input of a sort merge join that is already sorted, but not a scan of the data
+ * file, is read through it instead of being sorted again.
+ */
+public class MaterializeOperator extends Operator {
+  private Operator childOperator;
+  private File file;
+  private TupleReader tupleReader;
+
+  /**
+   * MaterializeOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator
+   */
+  public MaterializeOperator(ArrayList<Column> outputSchema, Operator childOperator) {
+    super(outputSchema);
+    this.childOperator = childOperator;
+  }
+
+  /** Write every tuple of the child to the temporary file. */
+  @Override
+  protected void onOpen() {
+    this.file = SpillPartitions.createTempFile(".temp");
+
+    TupleWriter tupleWriter = new BinaryHandler(file);
+    TupleBatch batch;
+    while ((batch = childOperator.getNextBatch()) != null) {
+      tupleWriter.writeNextBatch(batch);
+    }
+    tupleWriter.close();
+    this.tupleReader = new BinaryHandler(file);
+  }
+
+  /** Delete the temporary file. */
+  @Override
+  protected void onClose() {
+    this.tupleReader.close();
+    BufferPool.getInstance().delete(this.file);
+    this.tupleReader = null;
+  }
+
+  @Override
+  public void reset() {
+    this.tupleReader.reset();
+  }
+
+  /**
+   * Reset to the i-th tuple of the child
+   *
+   * @param i index of the tuple
+   */
+  @Override
+  public void reset(int i) {
+    this.tupleReader.reset(i);
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    return this.tupleReader.readNextTuple();
+  }
+
+  /**
+   * @return up to DBCatalog.getBatchSize() tuples as a batch
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    return this.tupleReader.readNextBatch(DBCatalog.getInstance().getBatchSize());
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The tuples are read back in the order they were written. */
+  @Override
+  public List<Column> getSortOrder() {
+    return childOperator.getSortOrder();
+  }
+
+  /**
+   * Get the child operator
+   *
+   * @return child operator
+   */
+  public Operator getChildOperator() {
+    return childOperator;
+  }
+}
@@ -3,6 +3,7 @@ package physical_operator;
 import common.HelperMethods;
 import common.stats.StatsInfo;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
 import common.tuple.TupleWriter;
 import compiler.DBCatalog;
 import java.io.PrintStream;
@@ -18,11 +19,17 @@ import org.apache.logging.log4j.Logger;
  * reference to an outputSchema which represents the schema of the output tuples from the operator.
  * This is a list of Column objects. Each Column has an embedded Table object with the name and
  * alias (if required) fields set appropriately.
+ *
+ * <p>Operators follow an open/next/close lifecycle. Constructors only build the plan and never read
+ * data: the work that must happen before the first tuple (sorting, loading the first block of a
+ * join) is done by open(), and close() releases buffers and temporary files. A plan must be opened
+ * before it is read or reset.
  */
 public abstract class Operator {
 
   protected final Logger logger = LogManager.getLogger();
   protected ArrayList<Column> outputSchema;
+  private boolean isOpen;
 
   /**
    * Constructor for Operator
@@ -42,6 +49,58 @@ public abstract class Operator {
     return outputSchema;
   }
 
+  /**
+   * Open the children, then prepare this operator to produce tuples. Opening an open operator has
+   * no effect.
+   */
+  public void open() {
+    if (isOpen) {
+      return;
+    }
+    isOpen = true;
+    for (Operator child : getChildren()) {
+      child.open();
+    }
+    onOpen();
+  }
+
+  /** Release the resources of this operator, then close the children. */
+  public void close() {
+    if (!isOpen) {
+      return;
+    }
+    isOpen = false;
+    onClose();
+    for (Operator child : getChildren()) {
+      child.close();
+    }
+  }
+
+  /** Work done by open() once the children are open. */
+  protected void onOpen() {}
+
+  /** Work done by close() before the children are closed. */
+  protected void onClose() {}
+
+  /**
+   * Get the children of the operator, in order.
+   *
+   * @return child operators, empty for a leaf
+   */
+  protected List<Operator> getChildren() {
+    return List.of();
+  }
+
+  /**
+   * Get the order the output tuples are known to be sorted in, most significant column first.
+   * Tuples are compared on the first column, then on the second for ties, and so on.
+   *
+   * @return columns of the sort order, empty if the output order is unknown
+   */
+  public List<Column> getSortOrder() {
+    return List.of();
+  }
+
   /** Resets cursor on the operator to the beginning */
   public abstract void reset();
 
@@ -55,6 +114,25 @@ public abstract class Operator {
    */
   public abstract Tuple getNextTuple();
 
+  /**
+   * Get the next batch of tuples from operator. Operators that can produce column vectors directly
+   * should override this; the default is a row-at-a-time adapter over getNextTuple().
+   *
+   * @return next batch of at most DBCatalog.getBatchSize() tuples, or null if we are at the end
+   */
+  public TupleBatch getNextBatch() {
+    Tuple tuple = getNextTuple();
+    if (tuple == null) {
+      return null;
+    }
+    TupleBatch batch = new TupleBatch(tuple.getSize(), DBCatalog.getInstance().getBatchSize());
+    batch.append(tuple);
+    while (!batch.isFull() && (tuple = getNextTuple()) != null) {
+      batch.append(tuple);
+    }
+    return batch;
+  }
+
   /**
    * Collects all tuples of this operator.
    *
@@ -88,9 +166,9 @@ public abstract class Operator {
    * @param tupleWriter TupleWriter to receive output
    */
   public void dump(TupleWriter tupleWriter) {
-    Tuple t;
-    while ((t = this.getNextTuple()) != null) {
-      tupleWriter.writeNextTuple(t);
+    TupleBatch batch;
+    while ((batch = this.getNextBatch()) != null) {
+      tupleWriter.writeNextBatch(batch);
     }
     tupleWriter.close();
   }
@@ -152,6 +230,22 @@ public abstract class Operator {
 
     if (cur instanceof EmptyOperator) {
       tree.append("EmptyScan[null]\n");
+    } else if (cur instanceof LimitOperator) {
+      LimitOperator operator = (LimitOperator) cur;
+      tree.append("Limit[").append(operator.getLimit()).append(", ").append(operator.getOffset());
+      tree.append("]\n");
+      dfs(tree, operator.getChildOperator(), level + 1);
+    } else if (cur instanceof TopNSortOperator) {
+      TopNSortOperator operator = (TopNSortOperator) cur;
+      tree.append("TopNSort[")
+          .append(HelperMethods.convertColumnList(operator.getOrders()))
+          .append(", ")
+          .append(operator.getN())
+          .append("]\n");
+      dfs(tree, operator.getChildOperator(), level + 1);
+    } else if (cur instanceof HashDuplicateEliminationOperator) {
+      tree.append("HashDupElim\n");
+      dfs(tree, ((HashDuplicateEliminationOperator) (cur)).getChildOperator(), level + 1);
     } else if (cur instanceof DuplicateEliminationOperator) {
       tree.append("DupElim\n");
       dfs(tree, ((DuplicateEliminationOperator) (cur)).getChildOperator(), level + 1);
@@ -160,6 +254,25 @@ public abstract class Operator {
       tree.append(HelperMethods.convertColumnList(((ExternalSortOperator) cur).getOrders()))
           .append("]\n");
       dfs(tree, ((ExternalSortOperator) (cur)).getChildOperator(), level + 1);
+    } else if (cur instanceof MaterializeOperator) {
+      tree.append("Materialize\n");
+      dfs(tree, ((MaterializeOperator) (cur)).getChildOperator(), level + 1);
+    } else if (cur instanceof HashAggregateOperator) {
+      HashAggregateOperator operator = (HashAggregateOperator) cur;
+      tree.append("HashAggregate[")
+          .append(HelperMethods.convertColumnList(operator.getGroupByColumns()))
+          .append("][")
+          .append(HelperMethods.convertColumnList(operator.getOutputSchema()))
+          .append("]\n");
+      dfs(tree, operator.getChildOperator(), level + 1);
+    } else if (cur instanceof SortAggregateOperator) {
+      SortAggregateOperator operator = (SortAggregateOperator) cur;
+      tree.append("SortAggregate[")
+          .append(HelperMethods.convertColumnList(operator.getGroupByColumns()))
+          .append("][")
+          .append(HelperMethods.convertColumnList(operator.getOutputSchema()))
+          .append("]\n");
+      dfs(tree, operator.getChildOperator(), level + 1);
     } else if (cur instanceof ProjectOperator) {
       tree.append("Project[")
           .append(HelperMethods.convertColumnList(cur.getOutputSchema()))
@@ -202,6 +315,40 @@ public abstract class Operator {
           .append("]\n");
       dfs(tree, ((SMJOperator) (cur)).getLeftOperator(), level + 1);
       dfs(tree, ((SMJOperator) (cur)).getRightOperator(), level + 1);
+    } else if (cur instanceof HashJoinOperator) {
+      HashJoinOperator operator = ((HashJoinOperator) cur);
+      tree.append("HashJoin[")
+          .append(operator.leftColumnName)
+          .append(" = ")
+          .append(operator.rightColumnName)
+          .append("]\n");
+      dfs(tree, operator.getLeftOperator(), level + 1);
+      dfs(tree, operator.getRightOperator(), level + 1);
+    } else if (cur instanceof IndexNestedLoopJoinOperator) {
+      IndexNestedLoopJoinOperator operator = ((IndexNestedLoopJoinOperator) cur);
+      tree.append("IndexNLJ[")
+          .append(operator.leftColumnName)
+          .append(" = ")
+          .append(operator.rightColumnName)
+          .append("]\n");
+      dfs(tree, operator.getLeftOperator(), level + 1);
+      for (int i = 0; i <= level; i++) {
+        tree.append("-");
+      }
+      tree.append("IndexLookup[")
+          .append(operator.getRightTable().getName())
+          .append(", ")
+          .append(operator.getRightExpression())
+          .append("]\n");
+    } else if (cur instanceof GraceHashJoinOperator) {
+      GraceHashJoinOperator operator = ((GraceHashJoinOperator) cur);
+      tree.append("GraceHashJoin[")
+          .append(operator.leftColumnName)
+          .append(" = ")
+          .append(operator.rightColumnName)
+          .append("]\n");
+      dfs(tree, operator.getLeftOperator(), level + 1);
+      dfs(tree, operator.getRightOperator(), level + 1);
     } else if (cur instanceof ScanOperator) {
       tree.append("TableScan[" + cur.getOutputSchema().get(0).getTable().getName() + "]\n");
     } else if (cur instanceof IndexScanOperator) {
@@ -223,6 +370,22 @@ public abstract class Operator {
               + ", "
               + high
               + "]\n");
+    } else if (cur instanceof IndexOnlyScanOperator) {
+      IndexOnlyScanOperator operator = (IndexOnlyScanOperator) cur;
+      StatsInfo statsInfo = DBCatalog.getInstance().getStatsInfo(operator.table.getName());
+      int low =
+          Math.max(statsInfo.columnStats.get(operator.attributeName).getLeft(), operator.lowKey);
+      int high =
+          Math.min(statsInfo.columnStats.get(operator.attributeName).getRight(), operator.highKey);
+      tree.append("IndexOnlyScan[")
+          .append(operator.table.getName())
+          .append(", ")
+          .append(operator.attributeName)
+          .append(", ")
+          .append(low)
+          .append(", ")
+          .append(high)
+          .append("]\n");
     } else if (cur instanceof SortOperator) {
       tree.append("Sort[")
           .append(HelperMethods.convertColumnList(((SortOperator) cur).getOrders()))
@@ -2,6 +2,7 @@ package physical_operator;
 
 import common.HelperMethods;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
 import java.util.*;
 import net.sf.jsqlparser.schema.Column;
 
@@ -11,7 +12,7 @@ import net.sf.jsqlparser.schema.Column;
  */
 public class ProjectOperator extends Operator {
   private Operator childOperator;
-  private Map<String, Integer> columnIndexMap;
+  private int[] columnIndexes;
 
   /**
    * ProjectOperator Constructor
@@ -21,7 +22,14 @@ public class ProjectOperator extends Operator {
   public ProjectOperator(ArrayList<Column> outputSchema, Operator childOperator) {
     super(outputSchema);
     this.childOperator = childOperator;
-    this.columnIndexMap = HelperMethods.mapColumnIndex(childOperator.getOutputSchema());
+
+    // Find the index of each output column in the child's output schema once
+    Map<String, Integer> columnIndexMap =
+        HelperMethods.mapColumnIndex(childOperator.getOutputSchema());
+    this.columnIndexes = new int[outputSchema.size()];
+    for (int i = 0; i < outputSchema.size(); i++) {
+      this.columnIndexes[i] = columnIndexMap.get(outputSchema.get(i).getName(true));
+    }
   }
 
   @Override
@@ -33,18 +41,42 @@ public class ProjectOperator extends Operator {
   public Tuple getNextTuple() {
     Tuple tuple;
     if ((tuple = childOperator.getNextTuple()) != null) {
-      ArrayList<Integer> tupleArray = new ArrayList<>();
+      return tuple.project(columnIndexes);
+    }
+    return null;
+  }
 
-      for (Column column : outputSchema) {
-        // Find the index of the column in the output schema
-        int index = columnIndexMap.get(column.getName(true));
+  /**
+   * Project the child's batch by picking its column vectors, without copying any value.
+   *
+   * @return projected batch, or null if the child has no more tuples
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    TupleBatch batch;
+    if ((batch = childOperator.getNextBatch()) != null) {
+      return batch.project(columnIndexes);
+    }
+    return null;
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
 
-        // Add the value from the child tuple's data to the new tuple's data array
-        tupleArray.add(tuple.getElementAtIndex(index));
+  /** The order of the child, up to its first column that is projected out. */
+  @Override
+  public List<Column> getSortOrder() {
+    Map<String, Integer> columnIndexMap = HelperMethods.mapColumnIndex(outputSchema);
+    List<Column> sortOrder = new ArrayList<>();
+    for (Column column : childOperator.getSortOrder()) {
+      if (!columnIndexMap.containsKey(column.getName(true))) {
+        break;
       }
-      return new Tuple(tupleArray);
+      sortOrder.add(column);
     }
-    return null;
+    return sortOrder;
   }
 
   /**
@@ -4,6 +4,7 @@ import common.HelperMethods;
 import common.tuple.Tuple;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import net.sf.jsqlparser.schema.Column;
 
@@ -55,7 +56,6 @@ public class SMJOperator extends Operator {
     leftColumnIndex = leftColumnMap.get(leftColumnName);
     rightColumnIndex = rightColumnMap.get(rightColumnName);
 
-    leftTuple = leftChildOperator.getNextTuple();
     rightCurrentIndex = -1;
     rightResetIndexMap = new HashMap<>();
   }
@@ -71,6 +71,20 @@ public class SMJOperator extends Operator {
 
   @Override
   public Tuple getNextTuple() {
+    Tuple rightTuple = nextMatch();
+    if (rightTuple == null) {
+      return null;
+    }
+    return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+  }
+
+  /**
+   * Advance the merge to the next pair of matching tuples. The left tuple of the pair is kept in
+   * leftTuple.
+   *
+   * @return the right tuple matching leftTuple, or null if there are no more matches
+   */
+  private Tuple nextMatch() {
     // Initialize leftTuple if it's the first call or has been reset
     if (leftTuple == null) {
       leftTuple = leftChildOperator.getNextTuple();
@@ -92,7 +106,7 @@ public class SMJOperator extends Operator {
         rightResetIndexMap.putIfAbsent(rightVal, rightCurrentIndex);
 
         // Concatenate tuples based on the reverse flag
-        return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+        return rightTuple;
       }
 
       if (leftVal < rightVal) {
@@ -107,7 +121,7 @@ public class SMJOperator extends Operator {
           rightTuple = rightChildOperator.getNextTuple();
           if (rightTuple != null) {
             rightCurrentIndex++;
-            return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+            return rightTuple;
           } else {
             return null;
           }
@@ -135,7 +149,7 @@ public class SMJOperator extends Operator {
           rightTuple = rightChildOperator.getNextTuple();
           if (rightTuple != null) {
             rightCurrentIndex++;
-            return this.reverse ? rightTuple.concat(leftTuple) : leftTuple.concat(rightTuple);
+            return rightTuple;
           }
         }
       }
@@ -160,11 +174,30 @@ public class SMJOperator extends Operator {
       ((SortOperator) rightChildOperator).reset(index);
     } else if (rightChildOperator instanceof ExternalSortOperator) {
       ((ExternalSortOperator) rightChildOperator).reset(index);
+    } else if (rightChildOperator instanceof MaterializeOperator) {
+      ((MaterializeOperator) rightChildOperator).reset(index);
+    } else if (rightChildOperator instanceof ScanOperator) {
+      ((ScanOperator) rightChildOperator).reset(index);
+    } else if (rightChildOperator instanceof IndexScanOperator) {
+      ((IndexScanOperator) rightChildOperator).reset(index);
     }
     rightCurrentIndex = index - 1;
     return true;
   }
 
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(leftChildOperator, rightChildOperator);
+  }
+
+  /**
+   * The left child is read once in order, and each of its tuples is output with all its matches.
+   */
+  @Override
+  public List<Column> getSortOrder() {
+    return leftChildOperator.getSortOrder();
+  }
+
   /**
    * Get the left operator.
    *
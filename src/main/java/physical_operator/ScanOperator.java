@@ -1,15 +1,22 @@
 package physical_operator;
 
+import builder.IndexBuilder;
+import common.HelperMethods;
+import common.index.IndexInfo;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
 import common.tuple.TupleReader;
 import compiler.DBCatalog;
 import io_handler.BinaryHandler;
 import java.util.ArrayList;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 
 /** An operator for SELECT *. It reads all rows of data from the file using BufferReader */
 public class ScanOperator extends Operator {
   private TupleReader tupleReader;
+  private Table table;
 
   /**
    * ScanOperator constructor
@@ -18,17 +25,34 @@ public class ScanOperator extends Operator {
    */
   public ScanOperator(Table table) {
     super(new ArrayList<>());
+    this.table = table;
     this.tupleReader = new BinaryHandler(table.getName());
     // this.tupleReader = new TextHandler(table.getName());
     this.outputSchema = DBCatalog.getInstance().getColumnsWithAlias(table);
   }
 
+  /** Close the file */
+  @Override
+  protected void onClose() {
+    this.tupleReader.close();
+  }
+
   /** re-initialize buffer reader */
   @Override
   public void reset() {
     this.tupleReader.reset();
   }
 
+  /**
+   * Reset to the i-th tuple of the file
+   *
+   * @param i index of the tuple
+   */
+  @Override
+  public void reset(int i) {
+    this.tupleReader.reset(i);
+  }
+
   /**
    * @return single row as tuple
    */
@@ -36,4 +60,41 @@ public class ScanOperator extends Operator {
   public Tuple getNextTuple() {
     return this.tupleReader.readNextTuple();
   }
+
+  /**
+   * @return up to DBCatalog.getBatchSize() rows as a batch
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    return this.tupleReader.readNextBatch(DBCatalog.getInstance().getBatchSize());
+  }
+
+  /**
+   * Building a clustered index sorts the data file on its key, then on the other columns like an
+   * ORDER BY on the key. The order is only known once the index is built and up to date.
+   */
+  @Override
+  public List<Column> getSortOrder() {
+    IndexInfo indexInfo = DBCatalog.getInstance().getIndexInfo(table.getName());
+    String attributeName = indexInfo == null ? null : indexInfo.getClusteredAttribute();
+    if (attributeName == null
+        || !IndexBuilder.isSortedOnClusteredIndex(table.getName(), attributeName)) {
+      return List.of();
+    }
+    Column column =
+        outputSchema.stream()
+            .filter(c -> c.getColumnName().equals(attributeName))
+            .findFirst()
+            .orElseThrow();
+    return HelperMethods.getSortOrder(List.of(column), outputSchema);
+  }
+
+  /**
+   * Get the scanned table
+   *
+   * @return table
+   */
+  public Table getTable() {
+    return table;
+  }
 }
@@ -2,9 +2,11 @@ package physical_operator;
 
 import common.HelperMethods;
 import common.tuple.Tuple;
-import compiler.ExpressionEvaluator;
+import common.tuple.TupleBatch;
+import compiler.CompiledPredicate;
+import compiler.PredicateCompiler;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.List;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.schema.Column;
 
@@ -16,7 +18,7 @@ public class SelectOperator extends Operator {
 
   private Operator childOperator;
   private Expression whereExpression;
-  private Map<String, Integer> columnIndexMap;
+  private CompiledPredicate predicate;
 
   /**
    * SelectOperator Constructor
@@ -29,7 +31,8 @@ public class SelectOperator extends Operator {
     super(outputSchema);
     this.childOperator = childOperator;
     this.whereExpression = whereExpression;
-    this.columnIndexMap = HelperMethods.mapColumnIndex(outputSchema);
+    this.predicate =
+        PredicateCompiler.compile(whereExpression, HelperMethods.mapColumnIndex(outputSchema));
   }
 
   /** Invoke childOperator's reset method */
@@ -39,23 +42,54 @@ public class SelectOperator extends Operator {
   }
 
   /**
-   * @return satisfied row as tuple based on `ExpressionEvaluator`
+   * @return satisfied row as tuple based on the compiled where expression
    */
   @Override
   public Tuple getNextTuple() {
     Tuple tuple;
 
     while ((tuple = childOperator.getNextTuple()) != null) {
-      ExpressionEvaluator evaluator = new ExpressionEvaluator(tuple, columnIndexMap);
-      whereExpression.accept(evaluator);
-      boolean result = evaluator.getResult();
-      if (result) {
+      if (predicate.test(tuple)) {
         return tuple;
       }
     }
     return null;
   }
 
+  /**
+   * Filter the child's batches, skipping batches where no row satisfies the expression.
+   *
+   * @return satisfied rows as a batch based on the compiled where expression
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    TupleBatch batch;
+
+    while ((batch = childOperator.getNextBatch()) != null) {
+      TupleBatch result = new TupleBatch(batch.getColumnNum(), batch.getSize());
+      for (int row = 0; row < batch.getSize(); row++) {
+        if (predicate.test(batch, row)) {
+          result.appendRow(batch, row);
+        }
+      }
+      if (result.getSize() > 0) {
+        return result;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The selection keeps the order of the child. */
+  @Override
+  public List<Column> getSortOrder() {
+    return childOperator.getSortOrder();
+  }
+
   /**
    * Get the child operator.
    *
@@ -0,0 +1,145 @@
+package physical_operator;
+
+import common.AggregateFunction;
+import common.HelperMethods;
+import common.tuple.Tuple;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * Streaming operator for GROUP BY and aggregate functions over a child sorted on the GROUP BY
+ * columns. The rows of a group are consecutive, so only the group being read is kept: it is output
+ * as soon as the first row of the next group arrives. Memory does not depend on the number of
+ * groups, and the groups are output in the order of the child.
+ */
+public class SortAggregateOperator extends AggregateOperator {
+
+  // the group being read, and the first row of the next group
+  private Tuple groupKey;
+  private long count;
+  private long[] accumulators;
+  private Tuple nextTuple;
+  private boolean isDone;
+
+  /**
+   * SortAggregateOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator, sorted on the GROUP BY columns
+   * @param groupByColumns GROUP BY columns, empty to aggregate the whole input
+   * @param aggregates aggregate functions
+   * @param outputSources for each output column, i for the i-th GROUP BY column or -1 - j for the
+   *     j-th aggregate
+   */
+  public SortAggregateOperator(
+      ArrayList<Column> outputSchema,
+      Operator childOperator,
+      List<Column> groupByColumns,
+      List<AggregateFunction> aggregates,
+      int[] outputSources) {
+    super(outputSchema, childOperator, groupByColumns, aggregates, outputSources);
+    this.accumulators = new long[aggregateTypes.length];
+  }
+
+  @Override
+  public Tuple getNextTuple() {
+    if (isDone) {
+      return null;
+    }
+    if (nextTuple == null) {
+      nextTuple = childOperator.getNextTuple();
+      if (nextTuple == null) {
+        isDone = true;
+        // The whole input is one group, which exists even if the input is empty
+        return groupByIndexes.length == 0 ? startGroup(new Tuple(new int[0])) : null;
+      }
+    }
+
+    // Accumulate the rows until the key changes, the row of the next group is kept for later
+    Tuple key = nextTuple.project(groupByIndexes);
+    startGroup(key);
+    while (nextTuple != null && nextTuple.project(groupByIndexes).equals(key)) {
+      accumulate(nextTuple);
+      nextTuple = childOperator.getNextTuple();
+    }
+    if (nextTuple == null) {
+      isDone = true;
+    }
+    return buildOutputTuple();
+  }
+
+  /**
+   * Reset the accumulators for a new group.
+   *
+   * @param key GROUP BY values of the group
+   * @return the output tuple of the group with no rows
+   */
+  private Tuple startGroup(Tuple key) {
+    groupKey = key;
+    count = 0;
+    for (int i = 0; i < aggregateTypes.length; i++) {
+      accumulators[i] = aggregateTypes[i].initialValue();
+    }
+    return buildOutputTuple();
+  }
+
+  /**
+   * Add a row to the accumulators of the group.
+   *
+   * @param tuple row of the child
+   */
+  private void accumulate(Tuple tuple) {
+    count++;
+    for (int i = 0; i < aggregateTypes.length; i++) {
+      if (aggregateIndexes[i] != -1) {
+        accumulators[i] =
+            aggregateTypes[i].accumulate(
+                accumulators[i], tuple.getElementAtIndex(aggregateIndexes[i]));
+      }
+    }
+  }
+
+  /**
+   * @return the output tuple of the group
+   */
+  private Tuple buildOutputTuple() {
+    int[] elements = new int[outputSources.length];
+    for (int i = 0; i < outputSources.length; i++) {
+      if (outputSources[i] >= 0) {
+        elements[i] = groupKey.getElementAtIndex(outputSources[i]);
+      } else {
+        int aggregate = -1 - outputSources[i];
+        elements[i] = aggregateTypes[aggregate].result(accumulators[aggregate], count);
+      }
+    }
+    return new Tuple(elements);
+  }
+
+  @Override
+  public void reset() {
+    childOperator.reset();
+    groupKey = null;
+    nextTuple = null;
+    isDone = false;
+  }
+
+  /**
+   * The groups are output in the order of the child, which starts with the GROUP BY columns. The
+   * order holds up to the first of them that is not selected.
+   */
+  @Override
+  public List<Column> getSortOrder() {
+    Map<String, Integer> columnIndexMap = HelperMethods.mapColumnIndex(outputSchema);
+    List<Column> sortOrder = new ArrayList<>();
+    for (Column column : childOperator.getSortOrder().subList(0, groupByColumns.size())) {
+      Integer index = columnIndexMap.get(column.getName(true));
+      if (index == null) {
+        break;
+      }
+      sortOrder.add(outputSchema.get(index));
+    }
+    return sortOrder;
+  }
+}
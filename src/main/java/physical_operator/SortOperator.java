@@ -2,6 +2,8 @@ package physical_operator;
 
 import common.HelperMethods;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import compiler.DBCatalog;
 import java.util.*;
 import net.sf.jsqlparser.schema.Column;
 
@@ -13,6 +15,7 @@ import net.sf.jsqlparser.schema.Column;
 public class SortOperator extends Operator {
 
   Iterator<Tuple> it;
+  private Operator childOperator;
   private List<Tuple> tupleList;
   private List<Column> orders;
 
@@ -24,13 +27,25 @@ public class SortOperator extends Operator {
    */
   public SortOperator(ArrayList<Column> outputSchema, Operator childOperator, List<Column> orders) {
     super(outputSchema);
+    this.childOperator = childOperator;
     this.orders = orders;
-    // sort the tuples
+  }
+
+  /** Load and sort every tuple of the child operator. */
+  @Override
+  protected void onOpen() {
     this.tupleList = new ArrayList<>(HelperMethods.getAllTuples(childOperator));
     sort();
     this.it = tupleList.iterator();
   }
 
+  /** Drop the sorted tuples. */
+  @Override
+  protected void onClose() {
+    this.tupleList = null;
+    this.it = null;
+  }
+
   /**
    * Sort the tuples based on the column specified in the ORDER BY clause. Then sort the tuples
    * based on the subsequent columns to break ties.
@@ -61,6 +76,43 @@ public class SortOperator extends Operator {
     return null;
   }
 
+  /**
+   * @return up to DBCatalog.getBatchSize() sorted tuples as a batch
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    if (!it.hasNext()) {
+      return null;
+    }
+    Tuple tuple = it.next();
+    TupleBatch batch = new TupleBatch(tuple.getSize(), DBCatalog.getInstance().getBatchSize());
+    batch.append(tuple);
+    while (!batch.isFull() && it.hasNext()) {
+      batch.append(it.next());
+    }
+    return batch;
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The tuples are sorted on the ORDER BY columns, then on the other columns. */
+  @Override
+  public List<Column> getSortOrder() {
+    return HelperMethods.getSortOrder(orders, outputSchema);
+  }
+
+  /**
+   * Get the child operator.
+   *
+   * @return child operator
+   */
+  public Operator getChildOperator() {
+    return childOperator;
+  }
+
   /**
    * Get the orders of the columns in the ORDER BY clause
    *
@@ -0,0 +1,201 @@
+package physical_operator;
+
+import common.tuple.Tuple;
+import common.tuple.TupleHashTable;
+import common.tuple.TupleReader;
+import common.tuple.TupleWriter;
+import compiler.DBCatalog;
+import io_handler.BinaryHandler;
+import io_handler.BufferPool;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Hash partitions spilled to temporary files by the hash-based operators. The tuples that do not
+ * fit in memory while an input is read are written to the partition of their hash. When the input
+ * is done, its partitions are queued and then read back one at a time, each one level deeper than
+ * the input that spilled it, so that it is partitioned again with a new seed if it still does not
+ * fit. Every file is deleted as soon as it is read or dropped.
+ */
+public class SpillPartitions {
+  private static final Logger logger = LogManager.getLogger();
+
+  /** Partitions still too large after this many levels are processed in memory. */
+  public static final int MAX_DEPTH = 8;
+
+  private final int partitionNum;
+  private final String suffix;
+
+  // spilled partitions waiting to be read
+  private final Deque<Partition> pendingPartitions;
+
+  // the partition being read, and the files the current input spills to
+  private Partition partition;
+  private TupleReader partitionReader;
+  private File[] spillFiles;
+  private TupleWriter[] spillWriters;
+
+  /** A spilled temp file that still needs to be read. */
+  private record Partition(File file, int depth) {}
+
+  /**
+   * SpillPartitions constructor
+   *
+   * @param bufferSizeInPage buffer size in page unit, each page is 4096 bytes
+   * @param suffix suffix of the names of the partition files
+   */
+  public SpillPartitions(int bufferSizeInPage, String suffix) {
+    this.partitionNum = getPartitionNum(bufferSizeInPage);
+    this.suffix = suffix;
+    this.pendingPartitions = new ArrayDeque<>();
+  }
+
+  /**
+   * @param bufferSizeInPage buffer size in page unit
+   * @return number of partitions an input is split into
+   */
+  public static int getPartitionNum(int bufferSizeInPage) {
+    // One page is the input buffer, every other page is an output buffer of a partition
+    return Math.max(2, bufferSizeInPage - 1);
+  }
+
+  /**
+   * @param hash hash code of the tuple or of its key
+   * @param depth partitioning level of the input
+   * @param partitionNum number of partitions
+   * @return index of the partition of the hash
+   */
+  public static int partitionOf(int hash, int depth, int partitionNum) {
+    // Seeds are offset so that partitions never use the hash of the in-memory table
+    return Integer.remainderUnsigned(
+        TupleHashTable.hash(hash, 0x5BD1E995 * (depth + 1)), partitionNum);
+  }
+
+  /**
+   * Create an empty temporary file. Delete the file on exit.
+   *
+   * @param suffix suffix of the file name
+   * @return the temporary file
+   */
+  public static File createTempFile(String suffix) {
+    File file = new File(DBCatalog.getInstance().getTempDir() + "/_" + UUID.randomUUID() + suffix);
+    try {
+      file.createNewFile();
+    } catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+    file.deleteOnExit();
+    return file;
+  }
+
+  /**
+   * @return partitioning level of the input being read, 0 for the child
+   */
+  public int getDepth() {
+    return partition == null ? 0 : partition.depth();
+  }
+
+  /**
+   * @return true if the tuples of the input may still be spilled
+   */
+  public boolean canSpill() {
+    return getDepth() < MAX_DEPTH;
+  }
+
+  /**
+   * @return true if the input being read is a partition, false if it is the child
+   */
+  public boolean isReadingPartition() {
+    return partitionReader != null;
+  }
+
+  /**
+   * @return the next tuple of the partition being read, or null at its end
+   */
+  public Tuple readNextTuple() {
+    return partitionReader.readNextTuple();
+  }
+
+  /**
+   * Write a tuple that does not fit in memory to its partition.
+   *
+   * @param tuple tuple to spill
+   * @param hash hash code that decides the partition, equal for the tuples kept together
+   */
+  public void spill(Tuple tuple, int hash) {
+    if (spillWriters == null) {
+      spillFiles = new File[partitionNum];
+      spillWriters = new TupleWriter[partitionNum];
+    }
+    int index = partitionOf(hash, getDepth(), partitionNum);
+    if (spillWriters[index] == null) {
+      spillFiles[index] = createTempFile(suffix);
+      spillWriters[index] = new BinaryHandler(spillFiles[index]);
+    }
+    spillWriters[index].writeNextTuple(tuple);
+  }
+
+  /**
+   * Finish the current input: queue the partitions it spilled, then open the next pending
+   * partition.
+   *
+   * @return true if there is a partition to read, false if every input is done
+   */
+  public boolean loadNextPartition() {
+    int depth = getDepth();
+    if (spillWriters != null) {
+      for (int i = 0; i < partitionNum; i++) {
+        if (spillWriters[i] != null) {
+          spillWriters[i].close();
+          pendingPartitions.add(new Partition(spillFiles[i], depth + 1));
+        }
+      }
+      spillWriters = null;
+      spillFiles = null;
+    }
+    closePartition();
+
+    partition = pendingPartitions.poll();
+    if (partition == null) {
+      return false;
+    }
+    partitionReader = new BinaryHandler(partition.file());
+    return true;
+  }
+
+  /** Close the partition being read and delete its file. */
+  private void closePartition() {
+    if (partitionReader != null) {
+      partitionReader.close();
+      partitionReader = null;
+    }
+    if (partition != null) {
+      BufferPool.getInstance().delete(partition.file());
+    }
+  }
+
+  /** Drop every partition and delete their files, the next input is the child again. */
+  public void dropPartitions() {
+    closePartition();
+    partition = null;
+    for (Partition pending : pendingPartitions) {
+      BufferPool.getInstance().delete(pending.file());
+    }
+    pendingPartitions.clear();
+    if (spillWriters != null) {
+      for (int i = 0; i < partitionNum; i++) {
+        if (spillWriters[i] != null) {
+          spillWriters[i].close();
+          BufferPool.getInstance().delete(spillFiles[i]);
+        }
+      }
+      spillWriters = null;
+      spillFiles = null;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package physical_operator;
+
+import common.HelperMethods;
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import compiler.DBCatalog;
+import java.util.*;
+import net.sf.jsqlparser.schema.Column;
+
+/**
+ * An operator for ORDER BY ... LIMIT n. Only the first n tuples in sort order are needed, so they
+ * are kept in a max-heap of n tuples while the child is read: a tuple that is larger than the top
+ * of a full heap is dropped at once. The planner only uses it when n tuples fit in the sort buffer,
+ * so it never spills.
+ */
+public class TopNSortOperator extends Operator {
+  private Operator childOperator;
+  private List<Column> orders;
+  private int n;
+  private Tuple[] sortedTuples;
+  private int index;
+
+  /**
+   * TopNSortOperator constructor
+   *
+   * @param outputSchema output schema
+   * @param childOperator child operator
+   * @param orders list of columns in ORDER BY elements
+   * @param n number of tuples to keep
+   */
+  public TopNSortOperator(
+      ArrayList<Column> outputSchema, Operator childOperator, List<Column> orders, int n) {
+    super(outputSchema);
+    this.childOperator = childOperator;
+    this.orders = orders;
+    this.n = n;
+  }
+
+  /** Read the whole child, keeping the n smallest tuples, then sort them. */
+  @Override
+  protected void onOpen() {
+    Comparator<Tuple> comparator = HelperMethods.getTupleComparator(orders, outputSchema);
+    PriorityQueue<Tuple> heap = new PriorityQueue<>(Math.max(1, n), comparator.reversed());
+    if (n > 0) {
+      Tuple tuple;
+      while ((tuple = childOperator.getNextTuple()) != null) {
+        if (heap.size() < n) {
+          heap.offer(tuple);
+        } else if (comparator.compare(tuple, heap.peek()) < 0) {
+          heap.poll();
+          heap.offer(tuple);
+        }
+      }
+    }
+
+    // The heap polls the largest tuple first, fill the array from the end
+    sortedTuples = new Tuple[heap.size()];
+    for (int i = sortedTuples.length - 1; i >= 0; i--) {
+      sortedTuples[i] = heap.poll();
+    }
+    index = 0;
+  }
+
+  /** Drop the sorted tuples. */
+  @Override
+  protected void onClose() {
+    sortedTuples = null;
+  }
+
+  @Override
+  public void reset() {
+    index = 0;
+  }
+
+  @Override
+  public void reset(int i) {
+    index = i;
+  }
+
+  /**
+   * @return the next of the n smallest tuples
+   */
+  @Override
+  public Tuple getNextTuple() {
+    if (index < sortedTuples.length) {
+      return sortedTuples[index++];
+    }
+    return null;
+  }
+
+  /**
+   * @return up to DBCatalog.getBatchSize() sorted tuples as a batch
+   */
+  @Override
+  public TupleBatch getNextBatch() {
+    if (index >= sortedTuples.length) {
+      return null;
+    }
+    TupleBatch batch =
+        new TupleBatch(sortedTuples[index].getSize(), DBCatalog.getInstance().getBatchSize());
+    while (!batch.isFull() && index < sortedTuples.length) {
+      batch.append(sortedTuples[index++]);
+    }
+    return batch;
+  }
+
+  @Override
+  protected List<Operator> getChildren() {
+    return List.of(childOperator);
+  }
+
+  /** The tuples are sorted on the ORDER BY columns, then on the other columns. */
+  @Override
+  public List<Column> getSortOrder() {
+    return HelperMethods.getSortOrder(orders, outputSchema);
+  }
+
+  /**
+   * Get the child operator.
+   *
+   * @return child operator
+   */
+  public Operator getChildOperator() {
+    return childOperator;
+  }
+
+  /**
+   * Get the orders.
+   *
+   * @return orders
+   */
+  public List<Column> getOrders() {
+    return orders;
+  }
+
+  /**
+   * @return number of tuples kept
+   */
+  public int getN() {
+    return n;
+  }
+}
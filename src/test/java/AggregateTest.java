@@ -0,0 +1,166 @@
+import builder.QueryPlanBuilder;
+import common.AggregateFunction;
+import common.tuple.Tuple;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.HashAggregateOperator;
+import physical_operator.Operator;
+import physical_operator.ScanOperator;
+
+public class AggregateTest {
+
+  private static QueryPlanBuilder queryPlanBuilder;
+  private static List<Tuple> sailors;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    HelperMethods.useSampleDatabase();
+    queryPlanBuilder = new QueryPlanBuilder();
+    sailors = HelperMethods.scanTable("Sailors");
+  }
+
+  /**
+   * Group tuples on a column and compute COUNT(*), SUM, MIN, MAX and AVG of another one.
+   *
+   * @param tuples tuples to group
+   * @param groupIndex column to group on
+   * @param valueIndex column to aggregate
+   * @return one tuple per group, in the order of the groups
+   */
+  private static List<Tuple> aggregate(List<Tuple> tuples, int groupIndex, int valueIndex) {
+    Map<Integer, List<Integer>> groups = new TreeMap<>();
+    for (Tuple tuple : tuples) {
+      groups
+          .computeIfAbsent(tuple.getElementAtIndex(groupIndex), key -> new ArrayList<>())
+          .add(tuple.getElementAtIndex(valueIndex));
+    }
+    List<Tuple> groupTuples = new ArrayList<>();
+    for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+      List<Integer> values = group.getValue();
+      long sum = values.stream().mapToLong(Integer::longValue).sum();
+      groupTuples.add(
+          new Tuple(
+              new int[] {
+                group.getKey(),
+                values.size(),
+                (int) sum,
+                values.stream().mapToInt(Integer::intValue).min().getAsInt(),
+                values.stream().mapToInt(Integer::intValue).max().getAsInt(),
+                (int) Math.floorDiv(sum, values.size())
+              }));
+    }
+    return groupTuples;
+  }
+
+  /**
+   * Test GROUP BY the key of a clustered index - the groups stream by in a sort aggregate
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testSortAggregate() throws IOException, URISyntaxException, JSQLParserException {
+    Random random = new Random(42);
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      tuples.add(new Tuple(new int[] {random.nextInt(1000), random.nextInt(1000)}));
+    }
+    Path dir = HelperMethods.createDatabase("R A B\n", Map.of("R", tuples));
+    try {
+      HelperMethods.createIndexes(dir, "R A 1 10");
+      List<Tuple> groups =
+          HelperMethods.runQuery(
+              queryPlanBuilder,
+              "SELECT R.A, COUNT(*), SUM(R.B), MIN(R.B), MAX(R.B), AVG(R.B) FROM R GROUP BY R.A");
+
+      Assertions.assertTrue(
+          queryPlanBuilder.physicalPlanTree.toString().startsWith("SortAggregate[R.A]"),
+          "Expected a sort aggregate.");
+      Assertions.assertEquals(aggregate(tuples, 0, 1), groups);
+    } finally {
+      HelperMethods.deleteDirectory(dir);
+      HelperMethods.useSampleDatabase();
+    }
+  }
+
+  /**
+   * Test GROUP BY a column without order - the groups are hashed
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testHashAggregate() throws JSQLParserException {
+    List<Tuple> tuples =
+        HelperMethods.runQuery(
+            queryPlanBuilder,
+            "SELECT S.B, COUNT(*), SUM(S.C), MIN(S.C), MAX(S.C), AVG(S.C) FROM Sailors S"
+                + " GROUP BY S.B");
+
+    Assertions.assertTrue(
+        queryPlanBuilder.physicalPlanTree.toString().startsWith("HashAggregate[S.B]"),
+        "Expected a hash aggregate.");
+    tuples.sort(Comparator.comparingInt(tuple -> tuple.getElementAtIndex(0)));
+    Assertions.assertEquals(aggregate(sailors, 1, 2), tuples);
+  }
+
+  /**
+   * Test aggregates without GROUP BY over an empty input - one group
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testAggregateEmptyInput() throws JSQLParserException {
+    List<Tuple> tuples =
+        HelperMethods.runQuery(
+            queryPlanBuilder,
+            "SELECT COUNT(*), SUM(S.B), MAX(S.B) FROM Sailors S WHERE S.A > 100000");
+
+    Assertions.assertEquals(List.of(new Tuple(new int[] {0, 0, 0})), tuples);
+  }
+
+  /** Test a hash aggregate whose groups do not fit in one page - the groups are spilled */
+  @Test
+  public void testHashAggregateSpill() {
+    int tempFileNum = HelperMethods.countTempFiles();
+
+    Operator scan = new ScanOperator(new Table("Sailors"));
+    ArrayList<Column> outputSchema = new ArrayList<>(scan.getOutputSchema());
+    outputSchema.add(new Column("COUNT(*)"));
+    Operator aggregate =
+        new HashAggregateOperator(
+            outputSchema,
+            scan,
+            scan.getOutputSchema(),
+            List.of(new AggregateFunction(AggregateFunction.Type.COUNT, null, "COUNT(*)")),
+            new int[] {0, 1, 2, -1},
+            1);
+    List<Tuple> tuples = HelperMethods.collectAllTuples(aggregate);
+    aggregate.close();
+
+    Map<Tuple, Integer> expectedCounts = new HashMap<>();
+    for (Tuple tuple : sailors) {
+      expectedCounts.merge(tuple, 1, Integer::sum);
+    }
+    Map<Tuple, Integer> counts = new HashMap<>();
+    for (Tuple tuple : tuples) {
+      Assertions.assertNull(
+          counts.put(tuple.project(new int[] {0, 1, 2}), tuple.getElementAtIndex(3)),
+          "Duplicate group " + tuple);
+    }
+    Assertions.assertEquals(expectedCounts, counts);
+    Assertions.assertEquals(tempFileNum, HelperMethods.countTempFiles(), "Temp files left behind.");
+  }
+}
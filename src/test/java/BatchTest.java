@@ -0,0 +1,151 @@
+import builder.QueryPlanBuilder;
+import common.tuple.Tuple;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.BNLJOperator;
+import physical_operator.HashJoinOperator;
+import physical_operator.Operator;
+import physical_operator.SMJOperator;
+import physical_operator.ScanOperator;
+import physical_operator.SelectOperator;
+import physical_operator.SortOperator;
+
+public class BatchTest {
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    HelperMethods.useSampleDatabase();
+  }
+
+  /**
+   * Read a plan once through getNextTuple() and once through getNextBatch(), and check both give
+   * the same rows in the same order.
+   *
+   * @param plan builds a new plan for each read
+   */
+  private static void assertBatchesMatchTuples(Supplier<Operator> plan) {
+    Operator operator = plan.get();
+    operator.open();
+    List<Tuple> tuples = HelperMethods.collectAllTuples(operator);
+    operator.close();
+
+    operator = plan.get();
+    operator.open();
+    List<Tuple> batches = HelperMethods.collectAllBatches(operator);
+    operator.close();
+
+    Assertions.assertFalse(tuples.isEmpty());
+    Assertions.assertEquals(tuples, batches);
+  }
+
+  /**
+   * @param tableName table to scan
+   * @param where selection on the table, or null for none
+   * @return a scan of the table, under a selection if given
+   */
+  private static Operator scan(String tableName, String where) {
+    Operator scan = new ScanOperator(new Table(tableName));
+    if (where == null) {
+      return scan;
+    }
+    try {
+      Expression expression = CCJSqlParserUtil.parseCondExpression(where);
+      return new SelectOperator(scan.getOutputSchema(), scan, expression);
+    } catch (JSQLParserException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * @return the output schema of the join of two operators
+   */
+  private static ArrayList<Column> joinSchema(Operator left, Operator right) {
+    ArrayList<Column> outputSchema = new ArrayList<>(left.getOutputSchema());
+    outputSchema.addAll(right.getOutputSchema());
+    return outputSchema;
+  }
+
+  /** Test that the planned scan, select, project and join plans give the same rows per batch */
+  @Test
+  public void testPlannedQueries() {
+    String[] queries = {
+      "SELECT * FROM Sailors",
+      "SELECT * FROM Sailors WHERE Sailors.B < 100",
+      "SELECT Sailors.C, Sailors.A FROM Sailors WHERE Sailors.C >= 50",
+      "SELECT * FROM Sailors, Reserves WHERE Sailors.A = Reserves.G AND Reserves.H < 50",
+    };
+    for (String query : queries) {
+      assertBatchesMatchTuples(
+          () -> {
+            try {
+              return new QueryPlanBuilder().buildPlan(CCJSqlParserUtil.parse(query));
+            } catch (JSQLParserException e) {
+              throw new IllegalArgumentException(e);
+            }
+          });
+    }
+  }
+
+  /** Test that a block nested loop join gives the same rows per batch, reversed or not */
+  @Test
+  public void testBNLJ() {
+    for (boolean reverse : new boolean[] {false, true}) {
+      assertBatchesMatchTuples(
+          () -> {
+            Operator left = scan("Sailors", "Sailors.A < 30");
+            Operator right = scan("Boats", "Boats.D < 30");
+            return new BNLJOperator(joinSchema(left, right), left, right, 1, reverse);
+          });
+    }
+  }
+
+  /** Test that a sort merge join gives the same rows per batch */
+  @Test
+  public void testSMJ() {
+    assertBatchesMatchTuples(
+        () -> {
+          Operator left = scan("Sailors", null);
+          Operator right = scan("Reserves", null);
+          Column leftColumn = left.getOutputSchema().get(0);
+          Column rightColumn = right.getOutputSchema().get(0);
+          return new SMJOperator(
+              joinSchema(left, right),
+              new SortOperator(left.getOutputSchema(), left, List.of(leftColumn)),
+              new SortOperator(right.getOutputSchema(), right, List.of(rightColumn)),
+              leftColumn,
+              rightColumn,
+              false);
+        });
+  }
+
+  /** Test that a hash join gives the same rows per batch, whichever side it builds */
+  @Test
+  public void testHashJoin() {
+    for (boolean buildLeft : new boolean[] {false, true}) {
+      assertBatchesMatchTuples(
+          () -> {
+            Operator left = scan("Sailors", null);
+            Operator right = scan("Reserves", null);
+            return new HashJoinOperator(
+                joinSchema(left, right),
+                left,
+                right,
+                left.getOutputSchema().get(0),
+                right.getOutputSchema().get(0),
+                false,
+                buildLeft,
+                1000);
+          });
+    }
+  }
+}
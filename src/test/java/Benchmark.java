@@ -0,0 +1,311 @@
+import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import common.tuple.TupleWriter;
+import compiler.DBCatalog;
+import io_handler.BinaryHandler;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import physical_operator.HashJoinOperator;
+import physical_operator.Operator;
+import physical_operator.ProjectOperator;
+import physical_operator.ScanOperator;
+import physical_operator.SelectOperator;
+
+/**
+ * Benchmarks over generated tables R(A, B, C) of n rows and S(D, E) of n / 10 rows, where every row
+ * of R joins one row of S on R.A = S.D, and T(G, H) of n rows sorted on both columns, where every
+ * row is repeated 4 times. Run with `gradle benchmark --args="<benchmark> <n> <iterations>"`, where
+ * the benchmark is scan, join, batch, distinct or all. Each benchmark is run once to warm up, then
+ * the given number of times; every run reports its time, the bytes allocated by the thread and the
+ * time spent in GC.
+ *
+ * <p>The boxed runs read the same rows, and also turn each one into an ArrayList of Integer like
+ * tuples were before they were backed by an int array, to compare both. The string DISTINCT runs
+ * compare and hash the rows by their string, like Tuple.equals and Tuple.hashCode used to. The
+ * batch runs read the same plans through getNextTuple() and through getNextBatch().
+ */
+public class Benchmark {
+
+  private static final com.sun.management.ThreadMXBean threadBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private static int keys;
+  private static long sink;
+
+  public static void main(String[] args) throws IOException {
+    String benchmark = args.length > 0 ? args[0] : "all";
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    Path dir = createDatabase(n);
+    try {
+      if (benchmark.equals("all") || benchmark.equals("scan")) {
+        run("scan", iterations, () -> scan(false));
+        run("scan, boxed rows", iterations, () -> scan(true));
+      }
+      if (benchmark.equals("all") || benchmark.equals("join")) {
+        run("hash join", iterations, () -> join(false));
+        run("hash join, boxed rows", iterations, () -> join(true));
+      }
+      if (benchmark.equals("all") || benchmark.equals("batch")) {
+        run("select, tuples", iterations, () -> select(false));
+        run("select, batches", iterations, () -> select(true));
+        run("hash join, tuples", iterations, () -> drain(join(), false));
+        run("hash join, batches", iterations, () -> drainBatches(join()));
+      }
+      if (benchmark.equals("all") || benchmark.equals("distinct")) {
+        run("sorted distinct", iterations, () -> sortedDistinct(false));
+        run("sorted distinct, string", iterations, () -> sortedDistinct(true));
+        run("hash distinct", iterations, () -> hashDistinct(false));
+        run("hash distinct, string", iterations, () -> hashDistinct(true));
+      }
+    } finally {
+      try (Stream<Path> paths = Files.walk(dir)) {
+        paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Write the tables of the benchmarks to a new directory, and point the catalog to it.
+   *
+   * @param n number of rows of R
+   * @return the directory of the database
+   */
+  private static Path createDatabase(int n) throws IOException {
+    Path dir = Files.createTempDirectory("benchmark");
+    Path db = Files.createDirectories(dir.resolve("input/db/data"));
+    Files.createDirectories(dir.resolve("output"));
+    Files.createDirectories(dir.resolve("temp"));
+    Files.writeString(dir.resolve("input/db/schema.txt"), "R A B C\nS D E\nT G H\n");
+    Files.writeString(dir.resolve("input/db/index_info.txt"), "");
+    Path config = dir.resolve("interpreter_config_file.txt");
+    Files.writeString(
+        config,
+        dir.resolve("input") + "\n" + dir.resolve("output") + "\n" + dir.resolve("temp") + "\n");
+    DBCatalog.getInstance().setInterpreterConfig(config.toString());
+
+    Random random = new Random(42);
+    keys = Math.max(1, n / 10);
+    TupleWriter writer = new BinaryHandler(db.resolve("R").toFile());
+    for (int i = 0; i < n; i++) {
+      writer.writeNextTuple(new Tuple(new int[] {random.nextInt(keys), random.nextInt(1000), i}));
+    }
+    writer.close();
+    writer = new BinaryHandler(db.resolve("S").toFile());
+    for (int i = 0; i < keys; i++) {
+      writer.writeNextTuple(new Tuple(new int[] {i, random.nextInt(1000)}));
+    }
+    writer.close();
+    writer = new BinaryHandler(db.resolve("T").toFile());
+    for (int i = 0; i < n; i++) {
+      writer.writeNextTuple(new Tuple(new int[] {i / 4 / 1000, i / 4 % 1000}));
+    }
+    writer.close();
+    return dir;
+  }
+
+  /**
+   * Run a benchmark once to warm up, then the given number of times.
+   *
+   * @param name name of the benchmark
+   * @param iterations number of measured runs
+   * @param benchmark the benchmark, which returns its number of output rows
+   */
+  private static void run(String name, int iterations, Body benchmark) {
+    benchmark.run();
+    for (int i = 0; i < iterations; i++) {
+      long gcTime = getGcTime();
+      long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes();
+      long start = System.nanoTime();
+      long rows = benchmark.run();
+      long time = System.nanoTime() - start;
+      allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - allocatedBytes;
+      gcTime = getGcTime() - gcTime;
+      System.out.printf(
+          "%-24s %9d rows %8.1f ms %9.1f MB allocated %7.1f bytes/row %6d ms GC%n",
+          name,
+          rows,
+          time / 1e6,
+          allocatedBytes / 1e6,
+          (double) allocatedBytes / Math.max(1, rows),
+          gcTime);
+    }
+  }
+
+  /**
+   * @return total time spent in GC by the JVM, in milliseconds
+   */
+  private static long getGcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, bean.getCollectionTime());
+    }
+    return time;
+  }
+
+  /**
+   * Read every row of an operator.
+   *
+   * @param operator operator to read
+   * @param boxed true to also turn every row into an ArrayList of Integer
+   * @return number of rows
+   */
+  private static long drain(Operator operator, boolean boxed) {
+    ToLongFunction<Tuple> value =
+        boxed
+            ? tuple -> tuple.getAllElements().get(tuple.getSize() - 1)
+            : tuple -> tuple.getElementAtIndex(tuple.getSize() - 1);
+    long rows = 0;
+    long sum = 0;
+    operator.open();
+    Tuple tuple;
+    while ((tuple = operator.getNextTuple()) != null) {
+      sum += value.applyAsLong(tuple);
+      rows++;
+    }
+    operator.close();
+    // keep the values read alive
+    sink += sum;
+    return rows;
+  }
+
+  /**
+   * @param boxed true to also box every row
+   * @return number of rows of R
+   */
+  private static long scan(boolean boxed) {
+    return drain(new ScanOperator(new Table("R")), boxed);
+  }
+
+  /**
+   * Read every row of an operator through getNextBatch().
+   *
+   * @param operator operator to read
+   * @return number of rows
+   */
+  private static long drainBatches(Operator operator) {
+    long rows = 0;
+    long sum = 0;
+    operator.open();
+    TupleBatch batch;
+    while ((batch = operator.getNextBatch()) != null) {
+      int[] column = batch.getColumn(batch.getColumnNum() - 1);
+      for (int row = 0; row < batch.getSize(); row++) {
+        sum += column[row];
+      }
+      rows += batch.getSize();
+    }
+    operator.close();
+    sink += sum;
+    return rows;
+  }
+
+  /**
+   * @return a hash join of R and S on R.A = S.D, building S
+   */
+  private static Operator join() {
+    Operator left = new ScanOperator(new Table("R"));
+    Operator right = new ScanOperator(new Table("S"));
+    ArrayList<Column> outputSchema = new ArrayList<>(left.getOutputSchema());
+    outputSchema.addAll(right.getOutputSchema());
+    return new HashJoinOperator(
+        outputSchema,
+        left,
+        right,
+        left.getOutputSchema().get(0),
+        right.getOutputSchema().get(0),
+        false,
+        false,
+        keys);
+  }
+
+  /**
+   * @param boxed true to also box every row
+   * @return number of rows of R join S
+   */
+  private static long join(boolean boxed) {
+    return drain(join(), boxed);
+  }
+
+  /**
+   * Read R.C, R.A of the rows of R where R.B < 500.
+   *
+   * @param batches true to read through getNextBatch()
+   * @return number of rows
+   */
+  private static long select(boolean batches) {
+    Operator scan = new ScanOperator(new Table("R"));
+    ArrayList<Column> schema = scan.getOutputSchema();
+    Operator select =
+        new SelectOperator(
+            schema,
+            scan,
+            new MinorThan()
+                .withLeftExpression(schema.get(1))
+                .withRightExpression(new LongValue(500)));
+    Operator project =
+        new ProjectOperator(new ArrayList<>(List.of(schema.get(2), schema.get(0))), select);
+    return batches ? drainBatches(project) : drain(project, false);
+  }
+
+  /**
+   * Count the distinct rows of T by comparing each row to the previous one.
+   *
+   * @param strings true to compare the strings of the rows
+   * @return number of distinct rows
+   */
+  private static long sortedDistinct(boolean strings) {
+    Operator scan = new ScanOperator(new Table("T"));
+    scan.open();
+    long rows = 0;
+    Object previous = null;
+    Tuple tuple;
+    while ((tuple = scan.getNextTuple()) != null) {
+      Object current = strings ? tuple.toString() : tuple;
+      if (!current.equals(previous)) {
+        rows++;
+      }
+      previous = current;
+    }
+    scan.close();
+    return rows;
+  }
+
+  /**
+   * Count the distinct rows of T by hashing them in memory.
+   *
+   * @param strings true to hash the strings of the rows
+   * @return number of distinct rows
+   */
+  private static long hashDistinct(boolean strings) {
+    Operator scan = new ScanOperator(new Table("T"));
+    scan.open();
+    Set<Object> rows = new HashSet<>();
+    Tuple tuple;
+    while ((tuple = scan.getNextTuple()) != null) {
+      rows.add(strings ? tuple.toString() : tuple);
+    }
+    scan.close();
+    return rows.size();
+  }
+
+  /** A benchmark, which returns its number of output rows. */
+  private interface Body {
+    long run();
+  }
+}
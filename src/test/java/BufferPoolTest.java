@@ -0,0 +1,91 @@
+import common.tuple.Tuple;
+import compiler.DBCatalog;
+import io_handler.BufferPool;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.Operator;
+import physical_operator.ScanOperator;
+
+public class BufferPoolTest {
+
+  private static Path dir;
+  private static List<Tuple> large;
+
+  /** Create R(A, B) of 10 pages and S(C, D) of 2 pages, with a buffer pool of 4 frames */
+  @BeforeAll
+  static void setupBeforeAllTests() throws IOException {
+    large = new ArrayList<>();
+    for (int i = 0; i < 510 * 10; i++) {
+      large.add(new Tuple(new int[] {i, -i}));
+    }
+    dir =
+        HelperMethods.createDatabase(
+            "R A B\nS C D\n", Map.of("R", large, "S", large.subList(0, 510 * 2)), "1", "1", "4");
+  }
+
+  @AfterAll
+  static void cleanupAfterAllTests() throws IOException, URISyntaxException {
+    HelperMethods.deleteDirectory(dir);
+    HelperMethods.useSampleDatabase();
+  }
+
+  /** Test that the number of frames is read from the sixth line of the config file */
+  @Test
+  public void testFrameNumber() {
+    Assertions.assertEquals(4, DBCatalog.getInstance().getBufferPoolFrameNumber());
+    BufferPool bufferPool = BufferPool.getInstance();
+
+    // S fits in the pool, so the second scan finds its pages there. Both scans also probe the page
+    // past the end of the file, which is a miss.
+    HelperMethods.scanTable("S");
+    bufferPool.resetCounters();
+    HelperMethods.scanTable("S");
+    Assertions.assertEquals(2, bufferPool.getHitCount());
+    Assertions.assertEquals(1, bufferPool.getMissCount());
+
+    // R does not, every page is read again
+    HelperMethods.scanTable("R");
+    bufferPool.resetCounters();
+    Assertions.assertEquals(large, HelperMethods.scanTable("R"));
+    Assertions.assertEquals(0, bufferPool.getHitCount());
+    Assertions.assertEquals(11, bufferPool.getMissCount());
+  }
+
+  /**
+   * Test that a reader keeps only its current page pinned: as many readers as frames can read at
+   * once, and their pages are unpinned when they are closed
+   */
+  @Test
+  public void testReadersUnpinPages() {
+    for (int round = 0; round < 2; round++) {
+      List<Operator> scans = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Operator scan = new ScanOperator(new Table("R"));
+        scan.open();
+        for (int j = 0; j < 510 * (i + 1) + 1; j++) {
+          Assertions.assertEquals(large.get(j), scan.getNextTuple());
+        }
+        scans.add(scan);
+      }
+
+      // a fifth reader finds every frame pinned
+      Operator scan = new ScanOperator(new Table("S"));
+      scan.open();
+      Assertions.assertThrows(IllegalStateException.class, scan::getNextTuple);
+      scan.close();
+
+      for (Operator open : scans) {
+        open.close();
+      }
+    }
+  }
+}
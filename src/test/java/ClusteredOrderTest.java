@@ -0,0 +1,119 @@
+import builder.QueryPlanBuilder;
+import common.tuple.Tuple;
+import common.tuple.TupleWriter;
+import compiler.DBCatalog;
+import io_handler.BinaryHandler;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import physical_operator.ScanOperator;
+
+public class ClusteredOrderTest {
+
+  private static List<Tuple> tuples;
+  private Path dir;
+
+  /** Generate 5000 random tuples of R(A, B), with A and B from 0 to 999 */
+  @BeforeAll
+  static void setupBeforeAllTests() {
+    Random random = new Random(42);
+    tuples = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      tuples.add(new Tuple(new int[] {random.nextInt(1000), random.nextInt(1000)}));
+    }
+  }
+
+  @AfterAll
+  static void cleanupAfterAllTests() throws URISyntaxException {
+    HelperMethods.useSampleDatabase();
+  }
+
+  /** Write R unsorted, with a clustered index on R.A in index_info.txt and the build flag off */
+  @BeforeEach
+  void createDatabase() throws IOException {
+    dir = HelperMethods.createDatabase("R A B\n", Map.of("R", tuples), "0");
+    Files.writeString(dir.resolve("input/db/index_info.txt"), "R A 1 10");
+    DBCatalog.getInstance()
+        .setInterpreterConfig(dir.resolve("interpreter_config_file.txt").toString());
+  }
+
+  @AfterEach
+  void deleteDatabase() throws IOException {
+    HelperMethods.deleteDirectory(dir);
+  }
+
+  /**
+   * Run ORDER BY R.A with and without LIMIT, and check the results are sorted.
+   *
+   * @param expectSort true if the plans are expected to sort
+   */
+  private static void assertOrderBy(boolean expectSort) throws JSQLParserException {
+    QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder();
+    List<Tuple> expectedTuples = HelperMethods.sortedOn(tuples, 0, 1);
+
+    List<Tuple> sorted = HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM R ORDER BY R.A");
+    String plan = queryPlanBuilder.physicalPlanTree.toString();
+    Assertions.assertEquals(expectSort, plan.contains("Sort"), plan);
+    Assertions.assertEquals(expectedTuples, sorted);
+
+    sorted =
+        HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM R ORDER BY R.A LIMIT 5 OFFSET 3");
+    plan = queryPlanBuilder.physicalPlanTree.toString();
+    Assertions.assertEquals(expectSort, plan.contains("Sort"), plan);
+    Assertions.assertEquals(expectedTuples.subList(3, 8), sorted);
+  }
+
+  /**
+   * Test that a clustered index in the catalog that was never built does not make the unsorted data
+   * file look sorted
+   */
+  @Test
+  public void testIndexNotBuilt() throws JSQLParserException {
+    Assertions.assertEquals(List.of(), new ScanOperator(new Table("R")).getSortOrder());
+    assertOrderBy(true);
+  }
+
+  /** Test that ORDER BY on the key of a built clustered index needs no sort */
+  @Test
+  public void testIndexBuilt() throws IOException, JSQLParserException {
+    HelperMethods.createIndexes(dir, "R A 1 10");
+
+    Assertions.assertEquals(
+        List.of("A", "B"),
+        new ScanOperator(new Table("R"))
+            .getSortOrder().stream().map(Column::getColumnName).toList());
+    assertOrderBy(false);
+  }
+
+  /** Test that the order is not trusted once the data file is written again after the build */
+  @Test
+  public void testDataFileChanged() throws IOException, JSQLParserException {
+    HelperMethods.createIndexes(dir, "R A 1 10");
+    File file = DBCatalog.getInstance().getFileForTable("R");
+    TupleWriter writer = new BinaryHandler(file);
+    for (Tuple tuple : tuples) {
+      writer.writeNextTuple(tuple);
+    }
+    writer.close();
+    // the file keeps its size, make sure its time differs from the build even on a fast machine
+    file.setLastModified(file.lastModified() + 1000);
+
+    Assertions.assertEquals(List.of(), new ScanOperator(new Table("R")).getSortOrder());
+    assertOrderBy(true);
+  }
+}
@@ -1,6 +1,7 @@
 import builder.QueryPlanBuilder;
 import common.tuple.Tuple;
 import compiler.DBCatalog;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -9,17 +10,22 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import jdk.jshell.spi.ExecutionControl;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.Statements;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import physical_operator.HashDuplicateEliminationOperator;
 import physical_operator.Operator;
+import physical_operator.ScanOperator;
 
 public class DuplicateEliminationTest {
 
@@ -40,6 +46,7 @@ public class DuplicateEliminationTest {
         Objects.requireNonNull(classLoader.getResource("samples/input/customized_queries.sql"))
             .toURI();
 
+    new File(DBCatalog.getInstance().getTempDir()).mkdirs();
     statements = CCJSqlParserUtil.parseStatements(Files.readString(Paths.get(queriesFile)));
     queryPlanBuilder = new QueryPlanBuilder();
     statementList = statements.getStatements();
@@ -74,4 +81,23 @@ public class DuplicateEliminationTest {
       Assertions.assertEquals(expectedTuple, actualTuple, "Unexpected tuple at index " + i);
     }
   }
+
+  /**
+   * Test hash DISTINCT whose tuples do not fit in one page - the tuples are spilled and every
+   * partition is deduplicated on its own
+   */
+  @Test
+  public void testHashDistinctSpill() {
+    int tempFileNum = HelperMethods.countTempFiles();
+
+    Operator scan = new ScanOperator(new Table("Reserves"));
+    Operator distinct = new HashDuplicateEliminationOperator(scan.getOutputSchema(), scan, 1);
+    List<Tuple> tuples = HelperMethods.collectAllTuples(distinct);
+    distinct.close();
+
+    Set<Tuple> expectedTuples = new HashSet<>(HelperMethods.scanTable("Reserves"));
+    Assertions.assertEquals(expectedTuples.size(), tuples.size(), "Unexpected number of rows.");
+    Assertions.assertEquals(expectedTuples, new HashSet<>(tuples));
+    Assertions.assertEquals(tempFileNum, HelperMethods.countTempFiles(), "Temp files left behind.");
+  }
 }
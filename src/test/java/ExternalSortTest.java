@@ -0,0 +1,200 @@
+import common.tuple.LoserTree;
+import common.tuple.Tuple;
+import common.tuple.TupleReader;
+import common.tuple.TupleWriter;
+import io_handler.BinaryHandler;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import jdk.jshell.spi.ExecutionControl;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.ExternalSortOperator;
+import physical_operator.MaterializeOperator;
+import physical_operator.Operator;
+import physical_operator.ScanOperator;
+import physical_operator.SpillPartitions;
+
+public class ExternalSortTest {
+
+  private static Path dir;
+  private static List<Tuple> tuples;
+
+  /** Create R(A, B) of 5000 random tuples, sorted by 4 threads */
+  @BeforeAll
+  static void setupBeforeAllTests() throws IOException {
+    Random random = new Random(42);
+    tuples = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      tuples.add(new Tuple(new int[] {random.nextInt(100), random.nextInt(100)}));
+    }
+    dir = HelperMethods.createDatabase("R A B\n", Map.of("R", tuples), "1", "1", "1024", "4");
+  }
+
+  @AfterAll
+  static void cleanupAfterAllTests() throws IOException, URISyntaxException {
+    ExternalSortOperator.shutdownSortExecutor();
+    HelperMethods.deleteDirectory(dir);
+    HelperMethods.useSampleDatabase();
+  }
+
+  /**
+   * Test that runs generated by several threads are as long as the runs of one thread: a page of
+   * the sort buffer holds 512 tuples, so 10 runs of 1 page take 3 merge passes down to a fan-in of
+   * 2, and 5 runs of 2 pages take 2.
+   */
+  @Test
+  public void testParallelRunGeneration() {
+    for (int numPagePerBlock : new int[] {1, 2}) {
+      int tempFileNum = HelperMethods.countTempFiles();
+
+      Operator scan = new ScanOperator(new Table("R"));
+      List<Column> orders = List.of(scan.getOutputSchema().get(1));
+      ExternalSortOperator sort =
+          new ExternalSortOperator(scan.getOutputSchema(), scan, orders, numPagePerBlock);
+      sort.open();
+      Assertions.assertEquals(
+          HelperMethods.sortedOn(tuples, 1, 0),
+          HelperMethods.collectAllTuples(sort),
+          "numPagePerBlock " + numPagePerBlock);
+      Assertions.assertEquals(numPagePerBlock == 1 ? 5 : 4, sort.getPassNumber());
+      sort.close();
+
+      Assertions.assertEquals(
+          tempFileNum, HelperMethods.countTempFiles(), "Temp files left behind.");
+    }
+  }
+
+  /**
+   * Test that runs are merged at most B - 1 at a time: with 3 pages per block, the 4 runs of 1536
+   * tuples are merged 2 at a time by one pass, then streamed by the final pass.
+   */
+  @Test
+  public void testMultiPassExternalSort() {
+    Operator scan = new ScanOperator(new Table("R"));
+    List<Column> orders = List.of(scan.getOutputSchema().get(0));
+    ExternalSortOperator sort = new ExternalSortOperator(scan.getOutputSchema(), scan, orders, 3);
+    sort.open();
+    Assertions.assertEquals(
+        HelperMethods.sortedOn(tuples, 0, 1), HelperMethods.collectAllTuples(sort));
+
+    List<Long> spilledBytes = sort.getSpilledBytesPerPass();
+    Assertions.assertEquals(3, spilledBytes.size());
+    // the runs and the merged runs hold every tuple, the final pass writes nothing
+    Assertions.assertTrue(spilledBytes.get(0) >= 5000 * 8);
+    Assertions.assertTrue(spilledBytes.get(1) >= 5000 * 8);
+    Assertions.assertEquals(0, spilledBytes.get(2));
+    sort.close();
+  }
+
+  /**
+   * Test that the final merge pass is streamed, and that the sort can still be reset: reset()
+   * restarts the merge, and reset(i) writes the output to one file the first time.
+   */
+  @Test
+  public void testStreamedFinalPass() {
+    int tempFileNum = HelperMethods.countTempFiles();
+
+    Operator scan = new ScanOperator(new Table("R"));
+    List<Column> orders = List.of(scan.getOutputSchema().get(1));
+    ExternalSortOperator sort = new ExternalSortOperator(scan.getOutputSchema(), scan, orders, 4);
+    sort.open();
+    List<Tuple> expectedTuples = HelperMethods.sortedOn(tuples, 1, 0);
+    Assertions.assertEquals(expectedTuples, HelperMethods.collectAllTuples(sort));
+    Assertions.assertEquals(0, sort.getSpilledBytesPerPass().getLast());
+
+    sort.reset();
+    Assertions.assertEquals(expectedTuples, HelperMethods.collectAllTuples(sort));
+    sort.reset(4321);
+    Assertions.assertEquals(expectedTuples.get(4321), sort.getNextTuple());
+    Assertions.assertTrue(sort.getSpilledBytesPerPass().getLast() >= 5000 * 8);
+    sort.reset();
+    Assertions.assertEquals(expectedTuples, HelperMethods.collectAllTuples(sort));
+
+    sort.close();
+    Assertions.assertEquals(tempFileNum, HelperMethods.countTempFiles(), "Temp files left behind.");
+  }
+
+  /** Test loser trees over a number of runs that is not a power of two, with an empty run */
+  @Test
+  public void testLoserTree() {
+    Random random = new Random(42);
+    Comparator<Tuple> comparator = Comparator.comparingInt(tuple -> tuple.getElementAtIndex(0));
+    for (int k : new int[] {1, 2, 3, 5}) {
+      List<Tuple> expectedTuples = new ArrayList<>();
+      List<File> runs = new ArrayList<>();
+      List<TupleReader> readers = new ArrayList<>();
+      for (int i = 0; i < k; i++) {
+        List<Tuple> run = new ArrayList<>();
+        // the last run is empty
+        int size = i == k - 1 && k > 1 ? 0 : 1 + random.nextInt(500);
+        for (int j = 0; j < size; j++) {
+          run.add(new Tuple(new int[] {random.nextInt(100), i}));
+        }
+        run.sort(comparator);
+        expectedTuples.addAll(run);
+
+        File file = SpillPartitions.createTempFile(".temp");
+        TupleWriter writer = new BinaryHandler(file);
+        for (Tuple tuple : run) {
+          writer.writeNextTuple(tuple);
+        }
+        writer.close();
+        runs.add(file);
+        readers.add(new BinaryHandler(file));
+      }
+
+      LoserTree loserTree = new LoserTree(readers, comparator);
+      List<Tuple> merged = new ArrayList<>();
+      Tuple tuple;
+      while ((tuple = loserTree.next()) != null) {
+        merged.add(tuple);
+      }
+      for (int i = 0; i < k; i++) {
+        readers.get(i).close();
+        runs.get(i).delete();
+      }
+
+      // ties may be merged in any order, so only compare the keys
+      expectedTuples.sort(comparator);
+      Assertions.assertEquals(expectedTuples.size(), merged.size(), "Unexpected number of rows.");
+      for (int i = 0; i < merged.size(); i++) {
+        Assertions.assertEquals(
+            expectedTuples.get(i).getElementAtIndex(0),
+            merged.get(i).getElementAtIndex(0),
+            "Unexpected tuple at index " + i + " of " + k + " runs");
+      }
+    }
+  }
+
+  /** Test that a materialized child can be reset to its i-th tuple */
+  @Test
+  public void testMaterialize() throws ExecutionControl.NotImplementedException {
+    int tempFileNum = HelperMethods.countTempFiles();
+    List<Tuple> expectedTuples = HelperMethods.scanTable("R");
+
+    Operator scan = new ScanOperator(new Table("R"));
+    Operator materialize = new MaterializeOperator(scan.getOutputSchema(), scan);
+    Assertions.assertEquals(expectedTuples, HelperMethods.collectAllTuples(materialize));
+
+    materialize.reset(4321);
+    Assertions.assertEquals(expectedTuples.get(4321), materialize.getNextTuple());
+    materialize.reset(0);
+    Assertions.assertEquals(expectedTuples.getFirst(), materialize.getNextTuple());
+    materialize.reset();
+    Assertions.assertEquals(expectedTuples, HelperMethods.collectAllTuples(materialize));
+
+    materialize.close();
+    Assertions.assertEquals(tempFileNum, HelperMethods.countTempFiles(), "Temp files left behind.");
+  }
+}
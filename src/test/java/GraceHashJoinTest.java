@@ -0,0 +1,110 @@
+import common.tuple.Tuple;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.GraceHashJoinOperator;
+import physical_operator.Operator;
+import physical_operator.ScanOperator;
+
+public class GraceHashJoinTest {
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    HelperMethods.useSampleDatabase();
+  }
+
+  /**
+   * Join two relations with a nested loop.
+   *
+   * @param left left relation
+   * @param leftIndex join column of the left relation
+   * @param right right relation
+   * @param rightIndex join column of the right relation
+   * @return the joined tuples, sorted
+   */
+  private static List<Tuple> nestedLoopJoin(
+      String left, int leftIndex, String right, int rightIndex) {
+    List<Tuple> rightTuples = HelperMethods.scanTable(right);
+    List<Tuple> tuples = new ArrayList<>();
+    for (Tuple leftTuple : HelperMethods.scanTable(left)) {
+      for (Tuple rightTuple : rightTuples) {
+        if (leftTuple.getElementAtIndex(leftIndex) == rightTuple.getElementAtIndex(rightIndex)) {
+          tuples.add(leftTuple.concat(rightTuple));
+        }
+      }
+    }
+    tuples.sort(Comparator.comparing(Tuple::toString));
+    return tuples;
+  }
+
+  /**
+   * Join two relations with a grace hash join.
+   *
+   * @param left left relation
+   * @param leftIndex join column of the left relation
+   * @param right right relation
+   * @param rightIndex join column of the right relation
+   * @param buildLeft true to partition the left relation as the build side
+   * @param bufferSizeInPage buffer size in page unit
+   * @return the joined tuples, sorted
+   */
+  private static List<Tuple> graceHashJoin(
+      String left,
+      int leftIndex,
+      String right,
+      int rightIndex,
+      boolean buildLeft,
+      int bufferSizeInPage) {
+    int tempFileNum = HelperMethods.countTempFiles();
+
+    Operator leftScan = new ScanOperator(new Table(left));
+    Operator rightScan = new ScanOperator(new Table(right));
+    ArrayList<Column> outputSchema = new ArrayList<>(leftScan.getOutputSchema());
+    outputSchema.addAll(rightScan.getOutputSchema());
+    Operator join =
+        new GraceHashJoinOperator(
+            outputSchema,
+            leftScan,
+            rightScan,
+            leftScan.getOutputSchema().get(leftIndex),
+            rightScan.getOutputSchema().get(rightIndex),
+            false,
+            buildLeft,
+            bufferSizeInPage);
+    join.open();
+    List<Tuple> tuples = HelperMethods.collectAllTuples(join);
+    join.close();
+
+    Assertions.assertEquals(tempFileNum, HelperMethods.countTempFiles(), "Temp files left behind.");
+    tuples.sort(Comparator.comparing(Tuple::toString));
+    return tuples;
+  }
+
+  /**
+   * Test a build side that does not fit in the buffer - its partitions are spilled, and partitioned
+   * again when they do not fit either
+   */
+  @Test
+  public void testGraceHashJoinSpill() {
+    Assertions.assertEquals(
+        nestedLoopJoin("Sailors", 0, "Reserves", 0),
+        graceHashJoin("Sailors", 0, "Reserves", 0, true, 1));
+    Assertions.assertEquals(
+        nestedLoopJoin("Sailors", 0, "Reserves", 0),
+        graceHashJoin("Sailors", 0, "Reserves", 0, false, 2));
+  }
+
+  /** Test a build side that fits in the buffer - no partition is spilled */
+  @Test
+  public void testGraceHashJoinInMemory() {
+    Assertions.assertEquals(
+        nestedLoopJoin("Boats", 0, "Reserves", 1),
+        graceHashJoin("Boats", 0, "Reserves", 1, true, 50));
+  }
+}
@@ -1,10 +1,37 @@
+import builder.IndexBuilder;
+import builder.QueryPlanBuilder;
+import builder.StatsBuilder;
 import common.tuple.Tuple;
+import common.tuple.TupleBatch;
+import common.tuple.TupleWriter;
+import compiler.DBCatalog;
+import io_handler.BinaryHandler;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Table;
 import physical_operator.Operator;
+import physical_operator.ScanOperator;
 
 public class HelperMethods {
+  /**
+   * @param operator operator to open if needed, then read through getNextTuple()
+   * @return every tuple left in the operator
+   */
   public static List<Tuple> collectAllTuples(Operator operator) {
+    operator.open();
     Tuple tuple;
     List<Tuple> tuples = new ArrayList<>();
     while ((tuple = operator.getNextTuple()) != null) {
@@ -13,4 +40,170 @@ public class HelperMethods {
 
     return tuples;
   }
+
+  /**
+   * @param operator operator to open if needed, then read through getNextBatch()
+   * @return every row of the batches, as tuples
+   */
+  public static List<Tuple> collectAllBatches(Operator operator) {
+    operator.open();
+    TupleBatch batch;
+    List<Tuple> tuples = new ArrayList<>();
+    while ((batch = operator.getNextBatch()) != null) {
+      for (int row = 0; row < batch.getSize(); row++) {
+        tuples.add(batch.getTuple(row));
+      }
+    }
+
+    return tuples;
+  }
+
+  /**
+   * Point the catalog to the sample database, and create its temp directory, which is not checked
+   * in.
+   *
+   * @return the samples directory
+   */
+  public static Path useSampleDatabase() throws URISyntaxException {
+    URI path =
+        Objects.requireNonNull(HelperMethods.class.getClassLoader().getResource("samples")).toURI();
+    Path resourcePath = Paths.get(path);
+
+    DBCatalog.getInstance()
+        .setInterpreterConfig(resourcePath.resolve("interpreter_config_file.txt").toString());
+    new File(DBCatalog.getInstance().getTempDir()).mkdirs();
+    return resourcePath;
+  }
+
+  /**
+   * Write a database of the given tables to a new directory, with their stats and no index, and
+   * point the catalog to it.
+   *
+   * @param schema content of schema.txt: a line per table, its name then the names of its columns
+   * @param tables tuples of each table of the schema
+   * @param configLines lines of the interpreter config file after the three directories
+   * @return the directory of the database, to remove with deleteDirectory()
+   */
+  public static Path createDatabase(
+      String schema, Map<String, List<Tuple>> tables, String... configLines) throws IOException {
+    Path dir = Files.createTempDirectory("db");
+    Path db = Files.createDirectories(dir.resolve("input/db/data"));
+    Files.createDirectories(dir.resolve("output"));
+    Files.createDirectories(dir.resolve("temp"));
+    Files.writeString(dir.resolve("input/db/schema.txt"), schema);
+    Files.writeString(dir.resolve("input/db/index_info.txt"), "");
+    for (Map.Entry<String, List<Tuple>> table : tables.entrySet()) {
+      TupleWriter writer = new BinaryHandler(db.resolve(table.getKey()).toFile());
+      for (Tuple tuple : table.getValue()) {
+        writer.writeNextTuple(tuple);
+      }
+      writer.close();
+    }
+
+    Path config = dir.resolve("interpreter_config_file.txt");
+    List<String> lines = new ArrayList<>();
+    lines.add(dir.resolve("input").toString());
+    lines.add(dir.resolve("output").toString());
+    lines.add(dir.resolve("temp").toString());
+    lines.addAll(List.of(configLines));
+    Files.write(config, lines);
+    DBCatalog catalog = DBCatalog.getInstance();
+    catalog.setInterpreterConfig(config.toString());
+
+    StringBuilder stats = new StringBuilder();
+    StatsBuilder statsBuilder = new StatsBuilder(stats);
+    for (String tableName : tables.keySet()) {
+      statsBuilder.processTable(tableName, catalog.getTables().get(tableName));
+    }
+    Files.writeString(dir.resolve("input/db/stats.txt"), stats);
+    return dir;
+  }
+
+  /**
+   * Write the index_info.txt of a database made by createDatabase(), point the catalog to it again
+   * and build its indexes. The clustered indexes are built first, as they sort the relation file.
+   *
+   * @param dir directory of the database
+   * @param indexInfo content of index_info.txt: a line per index, its relation, its attribute, 1 if
+   *     it is clustered and its order
+   */
+  public static void createIndexes(Path dir, String indexInfo) throws IOException {
+    Files.writeString(dir.resolve("input/db/index_info.txt"), indexInfo);
+    Files.createDirectories(dir.resolve("input/db/indexes"));
+    DBCatalog catalog = DBCatalog.getInstance();
+    catalog.setInterpreterConfig(dir.resolve("interpreter_config_file.txt").toString());
+
+    List<String[]> indexes = new ArrayList<>();
+    for (String line : indexInfo.split("\n")) {
+      indexes.add(line.split("\\s"));
+    }
+    indexes.sort(Comparator.comparing(index -> !index[2].equals("1")));
+    for (String[] index : indexes) {
+      new IndexBuilder(index[0], index[1], index[2].equals("1"), Integer.parseInt(index[3]))
+          .build(catalog.getFileForIndex(index[0], index[1]));
+    }
+  }
+
+  /**
+   * Remove a directory and everything in it.
+   *
+   * @param dir directory to remove
+   */
+  public static void deleteDirectory(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /**
+   * @return number of files in the temp directory
+   */
+  public static int countTempFiles() {
+    return Objects.requireNonNull(new File(DBCatalog.getInstance().getTempDir()).list()).length;
+  }
+
+  /**
+   * @param tableName table to scan
+   * @return every tuple of the table, in file order
+   */
+  public static List<Tuple> scanTable(String tableName) {
+    Operator scan = new ScanOperator(new Table(tableName));
+    scan.open();
+    List<Tuple> tuples = collectAllTuples(scan);
+    scan.close();
+    return tuples;
+  }
+
+  /**
+   * Plan, open, read and close a query.
+   *
+   * @param queryPlanBuilder builder of the plan, which keeps the plan trees of the query
+   * @param query query to run
+   * @return output tuples of the query
+   */
+  public static List<Tuple> runQuery(QueryPlanBuilder queryPlanBuilder, String query)
+      throws JSQLParserException {
+    Operator plan = queryPlanBuilder.buildPlan(CCJSqlParserUtil.parse(query));
+    plan.open();
+    try {
+      return collectAllTuples(plan);
+    } finally {
+      plan.close();
+    }
+  }
+
+  /**
+   * @param tuples tuples to sort
+   * @param indexes columns to sort on, most significant first
+   * @return a sorted copy of the tuples
+   */
+  public static List<Tuple> sortedOn(List<Tuple> tuples, int... indexes) {
+    Comparator<Tuple> comparator = (a, b) -> 0;
+    for (int index : indexes) {
+      comparator = comparator.thenComparingInt(tuple -> tuple.getElementAtIndex(index));
+    }
+    List<Tuple> sorted = new ArrayList<>(tuples);
+    sorted.sort(comparator);
+    return sorted;
+  }
 }
@@ -0,0 +1,267 @@
+import builder.IndexBuilder;
+import builder.QueryPlanBuilder;
+import common.tree.OverflowPage;
+import common.tree.RidListCodec;
+import common.tuple.Tuple;
+import compiler.DBCatalog;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.IndexScanOperator;
+import physical_operator.Operator;
+
+public class IndexTest {
+
+  private static Path dir;
+  private static QueryPlanBuilder queryPlanBuilder;
+  private static List<Tuple> tuples;
+
+  /**
+   * Create R(A, B, C) of 10000 random tuples, about 30 pages, with a clustered index on A and an
+   * unclustered index on B. A and B take the values 0 to 999.
+   */
+  @BeforeAll
+  static void setupBeforeAllTests() throws IOException {
+    Random random = new Random(42);
+    List<Tuple> data = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      data.add(new Tuple(new int[] {random.nextInt(1000), random.nextInt(1000), i}));
+    }
+    dir = HelperMethods.createDatabase("R A B C\n", Map.of("R", data));
+    HelperMethods.createIndexes(dir, "R A 1 10\nR B 0 10");
+    queryPlanBuilder = new QueryPlanBuilder();
+    // the clustered index sorted the relation file
+    tuples = HelperMethods.scanTable("R");
+  }
+
+  @AfterAll
+  static void cleanupAfterAllTests() throws IOException, URISyntaxException {
+    HelperMethods.deleteDirectory(dir);
+    HelperMethods.useSampleDatabase();
+  }
+
+  /**
+   * @param index column of R
+   * @param lowKey low key of the range
+   * @param highKey high key of the range
+   * @return the tuples of R whose column is in the range, sorted
+   */
+  private static List<Tuple> selectRange(int index, int lowKey, int highKey) {
+    List<Tuple> selected = new ArrayList<>();
+    for (Tuple tuple : tuples) {
+      int value = tuple.getElementAtIndex(index);
+      if (value >= lowKey && value <= highKey) {
+        selected.add(tuple);
+      }
+    }
+    return HelperMethods.sortedOn(selected, 0, 1, 2);
+  }
+
+  /**
+   * Test a range of the only selected column - the leaves of its index answer the query alone
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testIndexOnlyScan() throws JSQLParserException {
+    List<Tuple> selected =
+        HelperMethods.runQuery(queryPlanBuilder, "SELECT R.B FROM R WHERE R.B >= 10 AND R.B < 60");
+
+    Assertions.assertTrue(
+        queryPlanBuilder.physicalPlanTree.toString().contains("IndexOnlyScan[R, B, 10, 59]"),
+        queryPlanBuilder.physicalPlanTree.toString());
+    List<Tuple> expectedTuples = new ArrayList<>();
+    for (Tuple tuple : selectRange(1, 10, 59)) {
+      expectedTuples.add(tuple.project(new int[] {1}));
+    }
+    expectedTuples.sort(Comparator.comparingInt(tuple -> tuple.getElementAtIndex(0)));
+    Assertions.assertEquals(expectedTuples, selected);
+  }
+
+  /**
+   * Test a range of the clustered column in a single-table query - an index scan
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testClusteredIndexScan() throws JSQLParserException {
+    List<Tuple> selected =
+        HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM R WHERE R.A >= 10 AND R.A < 20");
+
+    Assertions.assertTrue(
+        queryPlanBuilder.physicalPlanTree.toString().startsWith("IndexScan[R, A, 10, 19]"),
+        queryPlanBuilder.physicalPlanTree.toString());
+    Assertions.assertEquals(selectRange(0, 10, 19), HelperMethods.sortedOn(selected, 0, 1, 2));
+  }
+
+  /** Test a range of an unclustered index, fetched in index order and in rid order */
+  @Test
+  public void testUnclusteredIndexScan() {
+    for (boolean sortRids : new boolean[] {false, true}) {
+      Operator indexScan = new IndexScanOperator(10, 59, new Table("R"), "B", sortRids);
+      List<Tuple> selected = HelperMethods.collectAllTuples(indexScan);
+      indexScan.close();
+
+      Assertions.assertEquals(
+          selectRange(1, 10, 59),
+          HelperMethods.sortedOn(selected, 0, 1, 2),
+          "sortRids " + sortRids);
+    }
+  }
+
+  /**
+   * Test indexes of the compressed format set in the config: keys of 4000 rids spill to overflow
+   * pages, and are read back by unclustered and clustered index scans. The format is part of the
+   * fingerprint, so the indexes are out of date for a config of version 1.
+   */
+  @Test
+  public void testCompressedIndexWithOverflowPages() throws IOException {
+    List<Tuple> data = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      data.add(new Tuple(new int[] {i % 5, i}));
+    }
+    Path compressedDir =
+        HelperMethods.createDatabase(
+            "T A B\nU C D\n", Map.of("T", data, "U", data), "1", "1", "1024", "1", "2");
+    try {
+      HelperMethods.createIndexes(compressedDir, "T A 0 10\nU C 1 10");
+      DBCatalog catalog = DBCatalog.getInstance();
+      for (String table : new String[] {"T", "U"}) {
+        String attribute = table.equals("T") ? "A" : "C";
+        File indexFile = catalog.getFileForIndex(table, attribute);
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        Assertions.assertEquals(2, header.getInt(12), "version of " + indexFile);
+        Assertions.assertTrue(header.getInt(16) > 0, "no overflow page in " + indexFile);
+
+        List<Tuple> expectedTuples = new ArrayList<>();
+        for (Tuple tuple : HelperMethods.scanTable(table)) {
+          if (tuple.getElementAtIndex(0) >= 1 && tuple.getElementAtIndex(0) <= 3) {
+            expectedTuples.add(tuple);
+          }
+        }
+        for (boolean sortRids : new boolean[] {false, true}) {
+          Operator indexScan = new IndexScanOperator(1, 3, new Table(table), attribute, sortRids);
+          List<Tuple> selected = HelperMethods.collectAllTuples(indexScan);
+          indexScan.close();
+          Assertions.assertEquals(
+              HelperMethods.sortedOn(expectedTuples, 0, 1),
+              HelperMethods.sortedOn(selected, 0, 1),
+              table + ", sortRids " + sortRids);
+        }
+      }
+
+      Path config = compressedDir.resolve("interpreter_config_file.txt");
+      List<String> lines = new ArrayList<>(Files.readAllLines(config));
+      IndexBuilder builder = new IndexBuilder("T", "A", false, 10);
+      Assertions.assertTrue(builder.isUpToDate(catalog.getFileForIndex("T", "A")));
+      lines.set(lines.size() - 1, "1");
+      Files.write(config, lines);
+      catalog.setInterpreterConfig(config.toString());
+      builder = new IndexBuilder("T", "A", false, 10);
+      Assertions.assertFalse(builder.isUpToDate(catalog.getFileForIndex("T", "A")));
+    } finally {
+      HelperMethods.deleteDirectory(compressedDir);
+      DBCatalog.getInstance()
+          .setInterpreterConfig(dir.resolve("interpreter_config_file.txt").toString());
+    }
+  }
+
+  /** Test varints and zigzag codes of small, large and negative values */
+  @Test
+  public void testVarIntAndZigzag() {
+    int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    for (int value : values) {
+      buffer.clear();
+      RidListCodec.putVarInt(buffer, value);
+      Assertions.assertEquals(RidListCodec.sizeOf(value), buffer.position(), "size of " + value);
+      buffer.flip();
+      Assertions.assertEquals(value, RidListCodec.getVarInt(buffer), "varint of " + value);
+
+      Assertions.assertEquals(value, RidListCodec.unzigzag(RidListCodec.zigzag(value)));
+    }
+    Assertions.assertEquals(1, RidListCodec.sizeOf(127));
+    Assertions.assertEquals(2, RidListCodec.sizeOf(128));
+    Assertions.assertEquals(5, RidListCodec.sizeOf(-1));
+    Assertions.assertArrayEquals(
+        new int[] {0, 1, 2, 3, 4},
+        new int[] {
+          RidListCodec.zigzag(0),
+          RidListCodec.zigzag(-1),
+          RidListCodec.zigzag(1),
+          RidListCodec.zigzag(-2),
+          RidListCodec.zigzag(2)
+        });
+  }
+
+  /** Test that a rid list reads back the rids it was written, and stops when the buffer is full */
+  @Test
+  public void testRidListCodec() {
+    int[][] rids = {{0, 0}, {0, 1}, {0, 7}, {3, 2}, {3, 200}, {200, 0}, {70000, 5}};
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    RidListCodec codec = new RidListCodec();
+    for (int[] rid : rids) {
+      Assertions.assertTrue(codec.put(buffer, rid[0], rid[1]));
+    }
+
+    buffer.flip();
+    codec.reset();
+    for (int[] rid : rids) {
+      Assertions.assertEquals((long) rid[0] << 32 | rid[1], codec.get(buffer));
+    }
+    Assertions.assertFalse(buffer.hasRemaining(), "Unexpected bytes after the rids.");
+
+    ByteBuffer smallBuffer = ByteBuffer.allocate(2);
+    codec.reset();
+    Assertions.assertTrue(codec.put(smallBuffer, 0, 1));
+    Assertions.assertFalse(codec.put(smallBuffer, 70000, 5), "Rid does not fit.");
+    Assertions.assertEquals(2, smallBuffer.position(), "A rid that does not fit is not written.");
+  }
+
+  /** Test that an overflow page holds the flag, the number of rids, then the coded rids */
+  @Test
+  public void testOverflowPage() {
+    int pageSize = DBCatalog.getInstance().getBufferCapacity();
+    OverflowPage overflowPage = new OverflowPage(pageSize);
+    Assertions.assertTrue(overflowPage.isEmpty());
+
+    List<long[]> rids = new ArrayList<>();
+    for (int i = 0; ; i++) {
+      int pageIndex = i / 3;
+      int tupleIndex = i % 3 * 100;
+      if (!overflowPage.put(pageIndex, tupleIndex)) {
+        break;
+      }
+      rids.add(new long[] {pageIndex, tupleIndex});
+    }
+    Assertions.assertTrue(rids.size() > pageSize / 5, "Too few rids in a page.");
+
+    ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+    overflowPage.serialize(buffer);
+    // the flag of an overflow page
+    Assertions.assertEquals(2, buffer.getInt(0));
+    Assertions.assertEquals(rids.size(), buffer.getInt(4));
+    buffer.position(8);
+    RidListCodec codec = new RidListCodec();
+    for (long[] rid : rids) {
+      Assertions.assertEquals(rid[0] << 32 | rid[1], codec.get(buffer));
+    }
+
+    overflowPage.clear();
+    Assertions.assertTrue(overflowPage.isEmpty());
+  }
+}
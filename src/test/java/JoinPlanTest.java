@@ -0,0 +1,123 @@
+import builder.QueryPlanBuilder;
+import common.tuple.Tuple;
+import compiler.DBCatalog;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.jsqlparser.JSQLParserException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class JoinPlanTest {
+
+  private static Path dir;
+
+  /**
+   * Create R(A, B), S(C, D) and U(E, F) of 100000 rows each, about 200 pages. A, C and E are keys
+   * from 0 to 99999, B, D and F take the values 0 to 999.
+   */
+  @BeforeAll
+  static void setupBeforeAllTests() throws IOException {
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      tuples.add(new Tuple(new int[] {i, i % 1000}));
+    }
+    dir =
+        HelperMethods.createDatabase(
+            "R A B\nS C D\nU E F\n", Map.of("R", tuples, "S", tuples, "U", tuples));
+  }
+
+  @AfterAll
+  static void cleanupAfterAllTests() throws IOException, URISyntaxException {
+    HelperMethods.deleteDirectory(dir);
+    HelperMethods.useSampleDatabase();
+  }
+
+  /** Test that a selection shrinks the estimate of its input, so it is hashed in memory */
+  @Test
+  public void testSelectionSelectivity() throws JSQLParserException {
+    QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder();
+    List<Tuple> tuples =
+        HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM R, S WHERE R.A = S.C AND S.D < 10");
+
+    // Estimated at 1000 tuples of S, 2 pages, against 200 if the selection kept every tuple
+    Assertions.assertTrue(
+        queryPlanBuilder.physicalPlanTree.toString().startsWith("HashJoin[S.C = R.A]"),
+        queryPlanBuilder.physicalPlanTree.toString());
+    Assertions.assertEquals(1000, tuples.size());
+  }
+
+  /** Test that an equi-join is estimated from the values of its columns, not as a cross product */
+  @Test
+  public void testJoinCardinality() throws JSQLParserException {
+    QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder();
+    List<Tuple> tuples =
+        HelperMethods.runQuery(
+            queryPlanBuilder, "SELECT * FROM R, S, U WHERE R.A = S.C AND S.C = U.E AND S.D < 10");
+
+    // R join S is estimated at 1000 tuples, and hashed in memory, where the cross product of R and
+    // S would have been larger than U
+    String plan = queryPlanBuilder.physicalPlanTree.toString();
+    Assertions.assertTrue(plan.startsWith("HashJoin[S.C = U.E]\n-HashJoin[S.C = R.A]"), plan);
+    Assertions.assertEquals(1000, tuples.size());
+  }
+
+  /** Test that a Grace hash join is chosen when neither input fits in memory */
+  @Test
+  public void testGraceHashJoin() throws JSQLParserException {
+    QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder();
+    List<Tuple> tuples =
+        HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM R, S WHERE R.A = S.C");
+
+    // Both inputs are 196 pages. With B = 10, a Grace hash join partitions them twice, 1960 I/Os,
+    // against 2744 to sort and merge them and 4116 for a block nested loop join
+    String plan = queryPlanBuilder.physicalPlanTree.toString();
+    Assertions.assertTrue(plan.startsWith("GraceHashJoin[S.C = R.A]"), plan);
+    Assertions.assertEquals(100000, tuples.size());
+    for (Tuple tuple : tuples) {
+      Assertions.assertEquals(tuple.getElementAtIndex(0), tuple.getElementAtIndex(2));
+    }
+  }
+
+  /**
+   * Test that an index on a column without stats is costed as if every lookup matched the whole
+   * table, instead of failing the plan
+   */
+  @Test
+  public void testIndexWithoutColumnStats() throws IOException, JSQLParserException {
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      tuples.add(new Tuple(new int[] {i, i % 10}));
+    }
+    Path statsDir =
+        HelperMethods.createDatabase("X A B\nY C D\n", Map.of("X", tuples, "Y", tuples));
+    try {
+      HelperMethods.createIndexes(statsDir, "Y C 0 10");
+      // The stats of Y.C are missing, the catalog reads them again with the config
+      Files.writeString(
+          statsDir.resolve("input/db/stats.txt"), "X 2000 A,0,1999 B,0,9\nY 2000 D,0,9\n");
+      DBCatalog.getInstance()
+          .setInterpreterConfig(statsDir.resolve("interpreter_config_file.txt").toString());
+
+      QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder();
+      Assertions.assertEquals(
+          2000,
+          HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM X, Y WHERE X.A = Y.C").size());
+      Assertions.assertFalse(
+          queryPlanBuilder.physicalPlanTree.toString().startsWith("IndexNLJ"),
+          queryPlanBuilder.physicalPlanTree.toString());
+      Assertions.assertEquals(
+          10, HelperMethods.runQuery(queryPlanBuilder, "SELECT Y.C FROM Y WHERE Y.C < 10").size());
+    } finally {
+      HelperMethods.deleteDirectory(statsDir);
+      DBCatalog.getInstance()
+          .setInterpreterConfig(dir.resolve("interpreter_config_file.txt").toString());
+    }
+  }
+}
@@ -0,0 +1,85 @@
+import builder.QueryPlanBuilder;
+import common.tuple.Tuple;
+import java.net.URISyntaxException;
+import java.util.List;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.schema.Table;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import physical_operator.LimitOperator;
+import physical_operator.Operator;
+import physical_operator.ScanOperator;
+
+public class LimitTest {
+
+  private static QueryPlanBuilder queryPlanBuilder;
+  private static List<Tuple> sailors;
+
+  @BeforeAll
+  static void setupBeforeAllTests() throws URISyntaxException {
+    HelperMethods.useSampleDatabase();
+    queryPlanBuilder = new QueryPlanBuilder();
+    sailors = HelperMethods.scanTable("Sailors");
+  }
+
+  /**
+   * Test ORDER BY ... LIMIT / OFFSET on columns without an index - a Top-N sort of LIMIT + OFFSET
+   * tuples
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testTopNSort() throws JSQLParserException {
+    List<Tuple> tuples =
+        HelperMethods.runQuery(
+            queryPlanBuilder, "SELECT * FROM Sailors S ORDER BY S.B, S.C LIMIT 10 OFFSET 3");
+
+    Assertions.assertTrue(
+        queryPlanBuilder.physicalPlanTree.toString().contains("TopNSort[S.B, S.C, 13]"),
+        "Expected a Top-N sort of 13 tuples.");
+    Assertions.assertEquals(HelperMethods.sortedOn(sailors, 1, 2, 0).subList(3, 13), tuples);
+  }
+
+  /**
+   * Test a LIMIT whose sum with the OFFSET does not fit in a long - every tuple after the OFFSET
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testLimitOffsetOverflow() throws JSQLParserException {
+    List<Tuple> tuples =
+        HelperMethods.runQuery(
+            queryPlanBuilder,
+            "SELECT * FROM Sailors S ORDER BY S.B LIMIT 9223372036854775807 OFFSET 5");
+
+    Assertions.assertFalse(
+        queryPlanBuilder.physicalPlanTree.toString().contains("TopNSort"),
+        "Unexpected Top-N sort without a limit.");
+    Assertions.assertEquals(
+        HelperMethods.sortedOn(sailors, 1, 0, 2).subList(5, sailors.size()), tuples);
+  }
+
+  /**
+   * Test an OFFSET past the last tuple
+   *
+   * @throws JSQLParserException
+   */
+  @Test
+  public void testOffsetPastEnd() throws JSQLParserException {
+    Assertions.assertTrue(
+        HelperMethods.runQuery(queryPlanBuilder, "SELECT * FROM Sailors S LIMIT 10 OFFSET 2000")
+            .isEmpty());
+  }
+
+  /** Test that LIMIT / OFFSET in the middle of a batch of the child cut the batches */
+  @Test
+  public void testLimitBatches() {
+    Operator scan = new ScanOperator(new Table("Sailors"));
+    Operator limit = new LimitOperator(scan.getOutputSchema(), scan, 700, 250);
+    List<Tuple> tuples = HelperMethods.collectAllBatches(limit);
+    limit.close();
+
+    Assertions.assertEquals(sailors.subList(250, 950), tuples);
+  }
+}
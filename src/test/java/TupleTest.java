@@ -0,0 +1,77 @@
+import common.tuple.Tuple;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TupleTest {
+
+  /** Test that a tuple reads its values from the array it is built with */
+  @Test
+  public void testAccessors() {
+    Tuple tuple = new Tuple(new int[] {3, -1, Integer.MAX_VALUE});
+
+    Assertions.assertEquals(3, tuple.getSize());
+    Assertions.assertEquals(3, tuple.getElementAtIndex(0));
+    Assertions.assertEquals(-1, tuple.getElementAtIndex(1));
+    Assertions.assertEquals(Integer.MAX_VALUE, tuple.getElementAtIndex(2));
+    Assertions.assertEquals("3,-1,2147483647", tuple.toString());
+    Assertions.assertEquals(
+        new ArrayList<>(List.of(3, -1, Integer.MAX_VALUE)), tuple.getAllElements());
+    Assertions.assertEquals(tuple, new Tuple("3,-1,2147483647"));
+    Assertions.assertEquals(tuple, new Tuple(new ArrayList<>(List.of(3, -1, Integer.MAX_VALUE))));
+  }
+
+  /** Test that the values handed out are copies, so the tuple can not be changed */
+  @Test
+  public void testImmutable() {
+    Tuple tuple = new Tuple(new int[] {1, 2, 3});
+
+    tuple.getAllElementsAsArray()[0] = 10;
+    tuple.getAllElements().set(1, 20);
+    int[] dest = new int[5];
+    tuple.copyTo(dest, 2);
+    dest[2] = 30;
+
+    Assertions.assertArrayEquals(new int[] {0, 0, 30, 2, 3}, dest);
+    Assertions.assertArrayEquals(new int[] {1, 2, 3}, tuple.getAllElementsAsArray());
+  }
+
+  /** Test that tuples are equal and hash alike when their values are, whatever their strings */
+  @Test
+  public void testEqualsAndHashCode() {
+    Tuple tuple = new Tuple(new int[] {1, 23});
+
+    Assertions.assertEquals(tuple, new Tuple(new int[] {1, 23}));
+    Assertions.assertEquals(tuple.hashCode(), new Tuple(new int[] {1, 23}).hashCode());
+    Assertions.assertNotEquals(tuple, new Tuple(new int[] {12, 3}));
+    Assertions.assertNotEquals(tuple, new Tuple(new int[] {1, 23, 0}));
+    Assertions.assertNotEquals(tuple, new Tuple(new int[] {23, 1}));
+    Assertions.assertNotEquals(tuple, null);
+    Assertions.assertNotEquals(tuple, "1,23");
+
+    Set<Tuple> tuples = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      tuples.add(new Tuple(new int[] {i % 100, i % 7}));
+    }
+    Assertions.assertEquals(700, tuples.size());
+    Assertions.assertTrue(tuples.contains(new Tuple(new int[] {99, 1})));
+    Assertions.assertFalse(tuples.contains(new Tuple(new int[] {99, 7})));
+  }
+
+  /** Test that concatenation and projection build new tuples and leave their inputs as they are */
+  @Test
+  public void testConcatAndProject() {
+    Tuple left = new Tuple(new int[] {1, 2});
+    Tuple right = new Tuple(new int[] {3, 4, 5});
+
+    Assertions.assertArrayEquals(
+        new int[] {1, 2, 3, 4, 5}, left.concat(right).getAllElementsAsArray());
+    Assertions.assertArrayEquals(
+        new int[] {5, 3, 5}, right.project(new int[] {2, 0, 2}).getAllElementsAsArray());
+    Assertions.assertArrayEquals(new int[] {1, 2}, left.getAllElementsAsArray());
+    Assertions.assertArrayEquals(new int[] {3, 4, 5}, right.getAllElementsAsArray());
+  }
+}